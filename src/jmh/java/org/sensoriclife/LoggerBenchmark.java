@@ -0,0 +1,46 @@
+package org.sensoriclife;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of debug logging with debug disabled (root logger at INFO).
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LoggerBenchmark {
+	private String table = "electricity_consumption";
+
+	@Setup
+	public void setUp() {
+		Logger.getInstance();
+	}
+
+	@Benchmark
+	public void debug() {
+		Logger.debug("Flushing bash writer for table: " + this.table);
+	}
+
+	@Benchmark
+	public void debugClass() {
+		Logger.debug(LoggerBenchmark.class, "Flushing bash writer for table: " + this.table);
+	}
+
+	@Benchmark
+	public void debugMultiple() {
+		Logger.debug(LoggerBenchmark.class, "Flushing bash writer", this.table);
+	}
+}
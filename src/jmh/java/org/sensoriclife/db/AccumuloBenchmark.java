@@ -0,0 +1,121 @@
+package org.sensoriclife.db;
+
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.MutationsRejectedException;
+import org.apache.accumulo.core.client.TableExistsException;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sensoriclife.Logger;
+import org.sensoriclife.util.Codec;
+
+/**
+ * Write and scan throughput of the Accumulo wrapper against a MockInstance.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AccumuloBenchmark {
+	private static final String WRITE_TABLE = "benchmark_write";
+	private static final String SCAN_TABLE = "benchmark_scan";
+	private static final int ROWS = 10000;
+
+	private Accumulo accumulo;
+
+	@State(Scope.Thread)
+	public static class Writer {
+		long row = 0;
+		byte[] value = Codec.encodeFloat(13.5f);
+		MutationBuilder builder = new MutationBuilder();
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws AccumuloException, AccumuloSecurityException, MutationsRejectedException, TableExistsException, TableNotFoundException {
+		Logger.getInstance();
+		this.accumulo = Accumulo.getInstance();
+		this.accumulo.connect("benchmark");
+		this.accumulo.createTable(SCAN_TABLE);
+
+		for ( int i = 0; i < ROWS; i++ )
+			this.accumulo.addMutation(SCAN_TABLE, String.format("%05d", i), "electricity", "", i, Codec.encodeFloat(i));
+		this.accumulo.closeBashWriter(SCAN_TABLE);
+	}
+
+	/**
+	 * Recreates the write table, so the mock table does not grow over all
+	 * iterations.
+	 */
+	@Setup(Level.Iteration)
+	public void setUpIteration() throws AccumuloException, AccumuloSecurityException, TableExistsException {
+		this.accumulo.createTable(WRITE_TABLE);
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDownIteration() throws AccumuloException, AccumuloSecurityException, MutationsRejectedException, TableNotFoundException {
+		this.accumulo.closeBashWriter(WRITE_TABLE);
+		this.accumulo.deleteTable(WRITE_TABLE);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		this.accumulo.deleteTable(SCAN_TABLE);
+		this.accumulo.disconnect();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public void addMutation(Writer writer) throws MutationsRejectedException, TableNotFoundException {
+		this.accumulo.addMutation(WRITE_TABLE, String.valueOf(writer.row++), "electricity", "", writer.row, writer.value);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void addMutationConcurrent(Writer writer) throws MutationsRejectedException, TableNotFoundException {
+		this.accumulo.addMutation(WRITE_TABLE, String.valueOf(writer.row++), "electricity", "", writer.row, writer.value);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public void addMutationBuilder(Writer writer) throws MutationsRejectedException, TableNotFoundException {
+		this.accumulo.addMutation(WRITE_TABLE, writer.builder.row(String.valueOf(writer.row++)).timestamp(writer.row).put("electricity", "", null, writer.value).build());
+	}
+
+	@Benchmark
+	public void scanAll(Blackhole blackhole) throws TableNotFoundException {
+		try ( ScanIterator entries = this.accumulo.scanAll(SCAN_TABLE) ) {
+			while ( entries.hasNext() )
+				blackhole.consume(entries.next());
+		}
+	}
+
+	@Benchmark
+	public void scanByKey(Blackhole blackhole) throws TableNotFoundException {
+		try ( ScanIterator entries = this.accumulo.scanByKey(SCAN_TABLE, new Range("05000", "05099")) ) {
+			while ( entries.hasNext() ) {
+				Entry<Key, Value> entry = entries.next();
+				blackhole.consume(entry);
+			}
+		}
+	}
+}
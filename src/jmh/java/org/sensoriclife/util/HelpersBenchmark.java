@@ -0,0 +1,87 @@
+package org.sensoriclife.util;
+
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Value serialization and hashing in Helpers compared to Codec.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class HelpersBenchmark {
+	private float value = 13.5f;
+	private byte[] serialized;
+	private byte[] encoded;
+	private byte[] varLong;
+	private String text = "electricity_consumption/meter/4711";
+
+	public HelpersBenchmark() {
+		try {
+			this.serialized = Helpers.toByteArray(this.value);
+		}
+		catch ( IOException e ) {
+			throw new IllegalStateException(e);
+		}
+		this.encoded = Codec.encodeFloat(this.value);
+		this.varLong = Codec.encodeVarLong(123456);
+	}
+
+	@Benchmark
+	public byte[] toByteArray() throws IOException {
+		return Helpers.toByteArray(this.value);
+	}
+
+	@Benchmark
+	public Object toObject() throws IOException, ClassNotFoundException {
+		return Helpers.toObject(this.serialized);
+	}
+
+	@Benchmark
+	public byte[] encodeFloat() {
+		return Codec.encodeFloat(this.value);
+	}
+
+	@Benchmark
+	public float decodeFloat() {
+		return Codec.decodeFloat(this.encoded);
+	}
+
+	@Benchmark
+	public byte[] encodeVarLong() {
+		return Codec.encodeVarLong(123456);
+	}
+
+	@Benchmark
+	public long decodeVarLong() {
+		return Codec.decodeVarLong(this.varLong);
+	}
+
+	@Benchmark
+	public byte[] encodeSortableDouble() {
+		return Codec.encodeSortableDouble(this.value);
+	}
+
+	@Benchmark
+	public String getMD5() throws NoSuchAlgorithmException {
+		return Helpers.getMD5(this.text);
+	}
+
+	@Benchmark
+	public String getSHA512() throws NoSuchAlgorithmException {
+		return Helpers.getSHA512(this.text);
+	}
+}
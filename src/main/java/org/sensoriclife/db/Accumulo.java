@@ -3,44 +3,88 @@ package org.sensoriclife.db;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
-import java.util.Iterator;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import org.apache.accumulo.core.client.AccumuloException;
 import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.BatchScanner;
 import org.apache.accumulo.core.client.BatchWriter;
 import org.apache.accumulo.core.client.BatchWriterConfig;
 import org.apache.accumulo.core.client.Connector;
 import org.apache.accumulo.core.client.Instance;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.client.MultiTableBatchWriter;
 import org.apache.accumulo.core.client.MutationsRejectedException;
 import org.apache.accumulo.core.client.Scanner;
 import org.apache.accumulo.core.client.TableExistsException;
 import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.TimedOutException;
 import org.apache.accumulo.core.client.ZooKeeperInstance;
 import org.apache.accumulo.core.client.mock.MockInstance;
 import org.apache.accumulo.core.client.security.tokens.PasswordToken;
+import org.apache.accumulo.core.conf.Property;
 import org.apache.accumulo.core.data.Key;
 import org.apache.accumulo.core.data.Mutation;
 import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorUtil.IteratorScope;
+import org.apache.accumulo.core.iterators.user.VersioningIterator;
+import org.apache.accumulo.core.iterators.user.WholeRowIterator;
 import org.apache.accumulo.core.security.Authorizations;
 import org.apache.accumulo.core.security.ColumnVisibility;
 import org.apache.accumulo.minicluster.MiniAccumuloCluster;
 import org.apache.hadoop.io.Text;
 import org.sensoriclife.Config;
 import org.sensoriclife.Logger;
+import org.sensoriclife.db.iterators.ValueEncoding;
+import org.sensoriclife.db.metrics.Metrics;
+import org.sensoriclife.db.metrics.TableMetrics;
 
 /**
- *
+ * Accumulo client. Every client holds its own connection, batch writers,
+ * metrics and scan cache and is thread-safe. {@link #getInstance()} returns
+ * the shared default client, {@link AccumuloFactory} shares clients per
+ * instance, ZooKeeper servers and user.
  * @author jnphilipp, marcel
- * @version 1.0.1
+ * @version 1.2.0
  */
 public class Accumulo implements Serializable {
 	/**
 	 * instance accumulo
 	 */
 	private static Accumulo accumolo;
+	/**
+	 * number of created clients, for default names
+	 */
+	private static final AtomicInteger clients = new AtomicInteger();
+	/**
+	 * client name, used in the JMX names
+	 */
+	private final String name;
 	/**
 	 * instance
 	 */
@@ -48,33 +92,137 @@ public class Accumulo implements Serializable {
 	/**
 	 * connector
 	 */
-	private Connector connector;
+	private volatile Connector connector;
 	/**
 	 * mini Accumulo cluster
 	 */
 	private MiniAccumuloCluster accumulo = null;
 	/**
-	 * batch writers
+	 * batch writers, one per table, shared by all writing threads
+	 */
+	private final ConcurrentMap<String, BatchWriter> batchWriters;
+	/**
+	 * shared writer for all tables, only set in multi table mode
+	 */
+	private volatile MultiTableBatchWriter multiTableBatchWriter;
+	/**
+	 * write, flush and scan metrics
+	 */
+	private final Metrics metrics;
+	/**
+	 * scan cache, <code>null</code> if disabled
+	 */
+	private volatile ScanCache cache;
+	/**
+	 * mutations since the last successful flush per table, only kept with a
+	 * retry policy
+	 */
+	private final ConcurrentMap<String, ReplayBuffer> replayBuffers;
+	/**
+	 * retry policy for rejected mutations, <code>null</code> to throw them
+	 */
+	private volatile RetryPolicy retryPolicy;
+	/**
+	 * receives mutations that could not be written
 	 */
-	private Map<String, BatchWriter> batchWriters;
+	private volatile DeadLetterSink deadLetterSink;
+	/**
+	 * serializes the recoveries from rejected mutations
+	 */
+	private final Object recoveryLock;
+	/**
+	 * compaction scheduler, created on first use
+	 */
+	private CompactionScheduler compactionScheduler;
+	/**
+	 * secondary indexes per table
+	 */
+	private final ConcurrentMap<String, List<IndexDefinition>> indexes;
+	/**
+	 * rollups per table
+	 */
+	private final ConcurrentMap<String, List<RollupDefinition>> rollups;
 
-	private Accumulo() {
+	/**
+	 * Creates a new client, which has to be connected before use.
+	 */
+	public Accumulo() {
+		this("client-" + clients.incrementAndGet());
+	}
+
+	/**
+	 * Creates a new client, which has to be connected before use.
+	 * @param name client name, used in the JMX names
+	 */
+	public Accumulo(String name) {
+		this.name = name;
 		this.instance = null;
 		this.connector = null;
 		this.accumulo = null;
-		this.batchWriters = new LinkedHashMap<>();
+		this.batchWriters = new ConcurrentHashMap<>();
+		this.multiTableBatchWriter = null;
+		this.metrics = new Metrics(name);
+		this.replayBuffers = new ConcurrentHashMap<>();
+		this.deadLetterSink = new LoggerDeadLetterSink();
+		this.recoveryLock = new Object();
+		this.compactionScheduler = null;
+		this.indexes = new ConcurrentHashMap<>();
+		this.rollups = new ConcurrentHashMap<>();
 
 		if ( !Config.getInstance().getProperties().containsKey("accumulo.batch_writer.max_memory") )
-			Config.getInstance().getProperties().setProperty("accumulo.batch_writer.max_memory", "100000");
+			Config.getInstance().getProperties().setProperty("accumulo.batch_writer.max_memory", "52428800");
+		if ( !Config.getInstance().getProperties().containsKey("accumulo.batch_writer.max_latency") )
+			Config.getInstance().getProperties().setProperty("accumulo.batch_writer.max_latency", "10000");
+		if ( !Config.getInstance().getProperties().containsKey("accumulo.batch_writer.max_write_threads") )
+			Config.getInstance().getProperties().setProperty("accumulo.batch_writer.max_write_threads", "4");
+		if ( !Config.getInstance().getProperties().containsKey("accumulo.batch_writer.timeout") )
+			Config.getInstance().getProperties().setProperty("accumulo.batch_writer.timeout", "0");
+		if ( !Config.getInstance().getProperties().containsKey("accumulo.batch_writer.multi_table") )
+			Config.getInstance().getProperties().setProperty("accumulo.batch_writer.multi_table", "false");
+		if ( !Config.getInstance().getProperties().containsKey("accumulo.scanner.batch_size") )
+			Config.getInstance().getProperties().setProperty("accumulo.scanner.batch_size", "1000");
+		if ( !Config.getInstance().getProperties().containsKey("accumulo.batch_scanner.query_threads") )
+			Config.getInstance().getProperties().setProperty("accumulo.batch_scanner.query_threads", "4");
+		if ( !Config.getInstance().getProperties().containsKey("accumulo.bulk_writer.max_memory") )
+			Config.getInstance().getProperties().setProperty("accumulo.bulk_writer.max_memory", "67108864");
+		if ( !Config.getInstance().getProperties().containsKey("accumulo.async_writer.capacity") )
+			Config.getInstance().getProperties().setProperty("accumulo.async_writer.capacity", "10000");
+		if ( !Config.getInstance().getProperties().containsKey("accumulo.async_writer.threads") )
+			Config.getInstance().getProperties().setProperty("accumulo.async_writer.threads", "2");
+		if ( !Config.getInstance().getProperties().containsKey("accumulo.async_writer.policy") )
+			Config.getInstance().getProperties().setProperty("accumulo.async_writer.policy", "block");
+		if ( !Config.getInstance().getProperties().containsKey("accumulo.cache.max_entries") )
+			Config.getInstance().getProperties().setProperty("accumulo.cache.max_entries", "0");
+		if ( !Config.getInstance().getProperties().containsKey("accumulo.cache.max_bytes") )
+			Config.getInstance().getProperties().setProperty("accumulo.cache.max_bytes", "16777216");
+		if ( !Config.getInstance().getProperties().containsKey("accumulo.cache.ttl") )
+			Config.getInstance().getProperties().setProperty("accumulo.cache.ttl", "60000");
+
+		if ( !Config.getInstance().getProperties().containsKey("accumulo.batch_writer.retries") )
+			Config.getInstance().getProperties().setProperty("accumulo.batch_writer.retries", "0");
+		if ( !Config.getInstance().getProperties().containsKey("accumulo.batch_writer.retry_backoff") )
+			Config.getInstance().getProperties().setProperty("accumulo.batch_writer.retry_backoff", "100");
+		if ( !Config.getInstance().getProperties().containsKey("accumulo.batch_writer.retry_max_backoff") )
+			Config.getInstance().getProperties().setProperty("accumulo.batch_writer.retry_max_backoff", "10000");
+		if ( !Config.getInstance().getProperties().containsKey("accumulo.compaction.hour") )
+			Config.getInstance().getProperties().setProperty("accumulo.compaction.hour", "3");
+
+		this.retryPolicy = null;
+		if ( Config.getIntegerProperty("accumulo.batch_writer.retries") > 0 )
+			this.retryPolicy = new RetryPolicy(Config.getIntegerProperty("accumulo.batch_writer.retries"), Config.getLongProperty("accumulo.batch_writer.retry_backoff"), Config.getLongProperty("accumulo.batch_writer.retry_max_backoff"));
+
+		this.cache = null;
+		if ( Config.getIntegerProperty("accumulo.cache.max_entries") > 0 )
+			this.setCache(new ScanCache(Config.getIntegerProperty("accumulo.cache.max_entries"), Config.getLongProperty("accumulo.cache.max_bytes"), Config.getLongProperty("accumulo.cache.ttl")));
 	}
 
 	/**
-	 * Returns an instance of this class.
+	 * Returns the shared default client.
 	 * @return instance
 	 */
 	public static synchronized Accumulo getInstance() {
 		if ( accumolo == null )
-			accumolo = new Accumulo();
+			accumolo = new Accumulo("default");
 
 		return accumolo;
 	}
@@ -85,7 +233,7 @@ public class Accumulo implements Serializable {
 	 * @return scanner
 	 * @throws TableNotFoundException
 	 */
-	public synchronized Scanner getScanner(String table) throws TableNotFoundException {
+	public Scanner getScanner(String table) throws TableNotFoundException {
 		return this.getScanner(table, new Authorizations());
 	}
 
@@ -96,7 +244,7 @@ public class Accumulo implements Serializable {
 	 * @return scanner
 	 * @throws TableNotFoundException
 	 */
-	public synchronized Scanner getScanner(String table, String visibility) throws TableNotFoundException {
+	public Scanner getScanner(String table, String visibility) throws TableNotFoundException {
 		return this.getScanner(table, new Authorizations());
 	}
 
@@ -107,7 +255,7 @@ public class Accumulo implements Serializable {
 	 * @return scanner
 	 * @throws TableNotFoundException
 	 */
-	public synchronized Scanner getScanner(String table, Authorizations auths) throws TableNotFoundException {
+	public Scanner getScanner(String table, Authorizations auths) throws TableNotFoundException {
 		return this.connector.createScanner(table, auths);
 	}
 
@@ -120,6 +268,7 @@ public class Accumulo implements Serializable {
 		if ( this.instance == null ) {
 			this.instance = new MockInstance();
 			this.connector = this.instance.getConnector("",  new PasswordToken(""));
+			this.registerCache(this.cache);
 		}
 	}
 
@@ -133,6 +282,7 @@ public class Accumulo implements Serializable {
 		if ( this.instance == null ) {
 			this.instance = new MockInstance(instanceName);
 			this.connector = this.instance.getConnector("",  new PasswordToken(""));
+			this.registerCache(this.cache);
 		}
 	}
 
@@ -153,6 +303,7 @@ public class Accumulo implements Serializable {
 
 			this.instance = new ZooKeeperInstance(this.accumulo.getInstanceName(), this.accumulo.getZooKeepers());
 			this.connector = this.instance.getConnector("root", new PasswordToken(rootPassword));
+			this.registerCache(this.cache);
 		}
 	}
 
@@ -169,260 +320,1642 @@ public class Accumulo implements Serializable {
 		if ( this.instance == null ) {
 			this.instance = new ZooKeeperInstance(name, zooServers);
 			this.connector = this.instance.getConnector(user, new PasswordToken(password));
+			this.registerCache(this.cache);
+		}
+	}
+	
+	/**
+	 * @return the client name
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * @return whether this client is connected
+	 */
+	public boolean isConnected() {
+		return this.connector != null;
+	}
+
+	/**
+	 * returns the connector
+	 * @return Connector
+	 */
+	public Connector getConnector() {
+		return this.connector;
+	}
+
+	/**
+	 * Returns the write, flush and scan metrics of all tables. Reporters can
+	 * be added to it, the metrics of every table are also available as
+	 * MXBean.
+	 * @return metrics
+	 */
+	public Metrics getMetrics() {
+		return this.metrics;
+	}
+
+	/**
+	 * Returns the scan cache. It is enabled with
+	 * <code>accumulo.cache.max_entries</code> greater than <code>0</code>,
+	 * limited by <code>accumulo.cache.max_bytes</code> and results expire
+	 * after <code>accumulo.cache.ttl</code> milliseconds.
+	 * @return scan cache or <code>null</code> if disabled
+	 */
+	public ScanCache getCache() {
+		return this.cache;
+	}
+
+	/**
+	 * Sets the scan cache, which is registered as MXBean
+	 * <code>org.sensoriclife.db:type=ScanCache,client=&lt;client&gt;</code>.
+	 * @param cache scan cache or <code>null</code> to disable it
+	 */
+	public synchronized void setCache(ScanCache cache) {
+		registerCache(cache);
+		this.cache = cache;
+	}
+
+	/**
+	 * Registers the given scan cache as MXBean of this client in place of the
+	 * registered one.
+	 * @param cache scan cache or <code>null</code> to only unregister
+	 */
+	private void registerCache(ScanCache cache) {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName name = Metrics.getObjectName("ScanCache", this.name, null);
+			if ( server.isRegistered(name) )
+				server.unregisterMBean(name);
+			if ( cache != null )
+				server.registerMBean(cache, name);
+		}
+		catch ( JMException e ) {
+			Logger.warn(Accumulo.class, "Could not register scan cache: " + e);
 		}
 	}
-	
+	
+	/**
+	 * @return the retry policy for rejected mutations or <code>null</code>
+	 */
+	public RetryPolicy getRetryPolicy() {
+		return this.retryPolicy;
+	}
+
+	/**
+	 * Sets the retry policy for rejected mutations. With a retry policy the
+	 * mutations added since the last successful flush of a table are kept,
+	 * and if its batch writer rejects mutations the writer is replaced and
+	 * they are written again with exponential backoff. Mutations rejected by
+	 * a constraint or for missing authorizations are retried one by one and
+	 * sent to the dead letter sink if they fail again, as are all mutations
+	 * after the last attempt. Mutations may be written twice, which only
+	 * matters for tables with combiners. The retry policy is read from
+	 * <code>accumulo.batch_writer.retries</code>,
+	 * <code>accumulo.batch_writer.retry_backoff</code> and
+	 * <code>accumulo.batch_writer.retry_max_backoff</code>, <code>0</code>
+	 * retries disable it.
+	 * @param retryPolicy retry policy or <code>null</code> to throw rejections
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+		if ( retryPolicy == null )
+			this.replayBuffers.clear();
+	}
+
+	/**
+	 * @return the dead letter sink
+	 */
+	public DeadLetterSink getDeadLetterSink() {
+		return this.deadLetterSink;
+	}
+
+	/**
+	 * Sets the sink for mutations that could not be written, by default they
+	 * are logged.
+	 * @param deadLetterSink dead letter sink
+	 */
+	public void setDeadLetterSink(DeadLetterSink deadLetterSink) {
+		this.deadLetterSink = deadLetterSink;
+	}
+
+	public MockInstance getMockInstance(){
+		return (MockInstance)this.instance;
+	}
+
+	/**
+	 * Disconnects and closes Accumulo. The batch writers are closed first,
+	 * while the connector is still available to write their replay buffers
+	 * again. Then the periodic metrics reports are stopped and the MXBeans of
+	 * this client unregistered.
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @throws MutationsRejectedException
+	 */
+	public synchronized void disconnect() throws IOException, InterruptedException, MutationsRejectedException {
+		try {
+			this.closeBashWriters();
+		}
+		finally {
+			this.metrics.stop();
+			this.metrics.unregister();
+			this.registerCache(null);
+
+			if ( this.compactionScheduler != null ) {
+				this.compactionScheduler.stop();
+				this.compactionScheduler = null;
+			}
+
+			if ( this.accumulo != null ) {
+				this.accumulo.stop();
+				this.accumulo = null;
+			}
+
+			this.instance = null;
+			this.connector = null;
+		}
+	}
+
+	/**
+	 * Creates the given table.
+	 * @param table table
+	 * @throws AccumuloException
+	 * @throws AccumuloSecurityException
+	 * @throws TableExistsException
+	 */
+	public synchronized void createTable(String table) throws AccumuloException, AccumuloSecurityException, TableExistsException {
+		this.connector.tableOperations().create(table);
+	}
+
+	/**
+	 * Creates the given table.
+	 * @param table table
+	 * @param limitVersion <code>false</code> to store all timestamp versions
+	 * @throws AccumuloException
+	 * @throws AccumuloSecurityException
+	 * @throws TableExistsException
+	 */
+	public synchronized void createTable(String table, boolean limitVersion) throws AccumuloException, AccumuloSecurityException, TableExistsException {
+		this.connector.tableOperations().create(table, limitVersion);
+	}
+
+	/**
+	 * Creates the given table with the storage settings of the given profile
+	 * from the config, see {@link TableProfile}.
+	 * @param table table
+	 * @param profile profile name
+	 * @throws AccumuloException
+	 * @throws AccumuloSecurityException
+	 * @throws TableExistsException
+	 * @throws TableNotFoundException
+	 */
+	public synchronized void createTable(String table, String profile) throws AccumuloException, AccumuloSecurityException, TableExistsException, TableNotFoundException {
+		this.createTable(table, TableProfile.fromConfig(profile));
+	}
+
+	/**
+	 * Creates the given table with the storage settings of the given profile.
+	 * @param table table
+	 * @param profile profile
+	 * @throws AccumuloException
+	 * @throws AccumuloSecurityException
+	 * @throws TableExistsException
+	 * @throws TableNotFoundException
+	 */
+	public synchronized void createTable(String table, TableProfile profile) throws AccumuloException, AccumuloSecurityException, TableExistsException, TableNotFoundException {
+		this.connector.tableOperations().create(table);
+		this.applyProfile(table, profile);
+	}
+
+	/**
+	 * Applies the storage settings of the given profile from the config to
+	 * the given table, see {@link TableProfile}.
+	 * @param table table
+	 * @param profile profile name
+	 * @throws AccumuloException
+	 * @throws AccumuloSecurityException
+	 * @throws TableNotFoundException
+	 */
+	public synchronized void applyProfile(String table, String profile) throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+		this.applyProfile(table, TableProfile.fromConfig(profile));
+	}
+
+	/**
+	 * Applies the storage settings of the given profile to the given table.
+	 * The locality groups of the profile replace the groups of the same name
+	 * and take the column families out of the other groups. Existing files
+	 * keep their layout and compression until they are compacted.
+	 * @param table table
+	 * @param profile profile
+	 * @throws AccumuloException
+	 * @throws AccumuloSecurityException
+	 * @throws TableNotFoundException
+	 */
+	public synchronized void applyProfile(String table, TableProfile profile) throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+		for ( Map.Entry<String, String> property : profile.getProperties().entrySet() )
+			this.connector.tableOperations().setProperty(table, property.getKey(), property.getValue());
+
+		if ( !profile.getLocalityGroups().isEmpty() ) {
+			Map<String, Set<Text>> groups = new HashMap<>();
+			for ( Map.Entry<String, Set<Text>> group : this.connector.tableOperations().getLocalityGroups(table).entrySet() ) {
+				Set<Text> families = new HashSet<>(group.getValue());
+				for ( Set<Text> profileFamilies : profile.getLocalityGroups().values() )
+					families.removeAll(profileFamilies);
+				if ( !families.isEmpty() )
+					groups.put(group.getKey(), families);
+			}
+			groups.putAll(profile.getLocalityGroups());
+			this.connector.tableOperations().setLocalityGroups(table, groups);
+		}
+
+		Logger.debug(Accumulo.class, "Applying table profile " + profile.getName() + " to table: " + table);
+	}
+
+	/**
+	 * Creates the given table pre-split at the given split points.
+	 * @param table table
+	 * @param splits split points
+	 * @throws AccumuloException
+	 * @throws AccumuloSecurityException
+	 * @throws TableExistsException
+	 * @throws TableNotFoundException
+	 */
+	public synchronized void createTable(String table, SortedSet<Text> splits) throws AccumuloException, AccumuloSecurityException, TableExistsException, TableNotFoundException {
+		this.connector.tableOperations().create(table);
+		if ( !splits.isEmpty() )
+			this.connector.tableOperations().addSplits(table, splits);
+	}
+
+	/**
+	 * Creates the given table with one tablet per bucket of the given salt.
+	 * @param table table
+	 * @param salt salt of the row ids
+	 * @throws AccumuloException
+	 * @throws AccumuloSecurityException
+	 * @throws TableExistsException
+	 * @throws TableNotFoundException
+	 */
+	public synchronized void createTable(String table, Salt salt) throws AccumuloException, AccumuloSecurityException, TableExistsException, TableNotFoundException {
+		this.createTable(table, salt.getSplits());
+	}
+
+	/**
+	 * Creates the given table and aggregates the given column families on the
+	 * tablet servers at scan and compaction time. Values of these families
+	 * have to be encoded with {@link Aggregation#toValue(long)}.
+	 * @param table table
+	 * @param aggregations aggregation per column family
+	 * @throws AccumuloException
+	 * @throws AccumuloSecurityException
+	 * @throws TableExistsException
+	 * @throws TableNotFoundException
+	 */
+	public synchronized void createTable(String table, Map<String, Aggregation> aggregations) throws AccumuloException, AccumuloSecurityException, TableExistsException, TableNotFoundException {
+		this.connector.tableOperations().create(table);
+		this.attachAggregations(table, aggregations);
+	}
+
+	/**
+	 * Aggregates the given column families of the given table on the tablet
+	 * servers at scan and compaction time.
+	 * @param table table
+	 * @param aggregations aggregation per column family
+	 * @throws AccumuloException
+	 * @throws AccumuloSecurityException
+	 * @throws TableNotFoundException
+	 */
+	public synchronized void attachAggregations(String table, Map<String, Aggregation> aggregations) throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+		Map<Aggregation, List<IteratorSetting.Column>> columns = new EnumMap<>(Aggregation.class);
+		for ( Map.Entry<String, Aggregation> entry : aggregations.entrySet() ) {
+			if ( !columns.containsKey(entry.getValue()) )
+				columns.put(entry.getValue(), new ArrayList<IteratorSetting.Column>());
+			columns.get(entry.getValue()).add(new IteratorSetting.Column(entry.getKey()));
+		}
+
+		for ( Map.Entry<Aggregation, List<IteratorSetting.Column>> entry : columns.entrySet() )
+			this.connector.tableOperations().attachIterator(table, entry.getKey().getIteratorSetting(entry.getValue()));
+	}
+
+	/**
+	 * Deletes the given table.
+	 * @param table table name
+	 * @throws AccumuloException
+	 * @throws AccumuloSecurityException
+	 * @throws TableNotFoundException
+	 */
+	public synchronized void deleteTable(String table) throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+		this.connector.tableOperations().delete(table);
+
+		ScanCache c = this.cache;
+		if ( c != null )
+			c.invalidate(table);
+		if ( this.compactionScheduler != null )
+			this.compactionScheduler.cancel(table);
+
+		List<IndexDefinition> tableIndexes = this.indexes.remove(table);
+		if ( tableIndexes != null )
+			for ( IndexDefinition index : tableIndexes )
+				if ( this.connector.tableOperations().exists(index.getIndexTable(table)) )
+					this.deleteTable(index.getIndexTable(table));
+
+		List<RollupDefinition> tableRollups = this.rollups.remove(table);
+		if ( tableRollups != null )
+			for ( RollupDefinition rollup : tableRollups )
+				for ( Granularity granularity : rollup.getGranularities() )
+					if ( this.connector.tableOperations().exists(rollup.getRollupTable(table, granularity)) )
+						this.deleteTable(rollup.getRollupTable(table, granularity));
+	}
+
+	/**
+	 * Adds a secondary index to the given table and creates its index table.
+	 * From now on every mutation added to the table through this client
+	 * writes its index entries first; mutations written before, and mutations
+	 * written by bulk writers, are not indexed. An index of the same name is
+	 * replaced.
+	 * <p>
+	 * The table and its index tables have their own batch writers, which also
+	 * flush on their own once their memory or latency limit is reached. A row
+	 * can therefore be visible shortly before its index entries, until the
+	 * index writers flush as well; {@link #flushBashWriter(String)} flushes
+	 * the index tables first and closes this window.
+	 * @param table table
+	 * @param index index definition
+	 * @throws AccumuloException
+	 * @throws AccumuloSecurityException
+	 * @throws TableExistsException
+	 */
+	public synchronized void addIndex(String table, IndexDefinition index) throws AccumuloException, AccumuloSecurityException, TableExistsException {
+		if ( !this.connector.tableOperations().exists(index.getIndexTable(table)) )
+			this.connector.tableOperations().create(index.getIndexTable(table));
+
+		List<IndexDefinition> tableIndexes = this.indexes.get(table);
+		if ( tableIndexes == null ) {
+			tableIndexes = new CopyOnWriteArrayList<>();
+			this.indexes.put(table, tableIndexes);
+		}
+
+		for ( IndexDefinition existing : tableIndexes )
+			if ( existing.getName().equals(index.getName()) )
+				tableIndexes.remove(existing);
+		tableIndexes.add(index);
+	}
+
+	/**
+	 * Stops maintaining the given index, its index table is kept.
+	 * @param table table
+	 * @param name index name
+	 */
+	public synchronized void removeIndex(String table, String name) {
+		List<IndexDefinition> tableIndexes = this.indexes.get(table);
+		if ( tableIndexes != null )
+			for ( IndexDefinition index : tableIndexes )
+				if ( index.getName().equals(name) )
+					tableIndexes.remove(index);
+	}
+
+	/**
+	 * Adds a rollup to the given table and creates its rollup tables. From
+	 * now on every reading added to the table through this client also adds
+	 * its increments to the rollup tables; readings written before, and
+	 * readings written by bulk writers, are not rolled up. A rollup of the
+	 * same column family is replaced. Rollups count every write, so the table
+	 * must keep all versions; tables with a version limit, like the ones from
+	 * {@link #createTable(String)}, are rejected.
+	 * @param table table
+	 * @param rollup rollup definition
+	 * @throws AccumuloException
+	 * @throws AccumuloSecurityException
+	 * @throws TableExistsException
+	 * @throws TableNotFoundException
+	 * @throws IllegalArgumentException if the table limits its versions
+	 */
+	public synchronized void addRollup(String table, RollupDefinition rollup) throws AccumuloException, AccumuloSecurityException, TableExistsException, TableNotFoundException {
+		if ( this.connector.tableOperations().listIterators(table).containsKey("vers") )
+			throw new IllegalArgumentException("Rollups need a table without version limit: " + table);
+
+		for ( Granularity granularity : rollup.getGranularities() )
+			if ( !this.connector.tableOperations().exists(rollup.getRollupTable(table, granularity)) )
+				this.createTable(rollup.getRollupTable(table, granularity), rollup.getColumnAggregations());
+
+		List<RollupDefinition> tableRollups = this.rollups.get(table);
+		if ( tableRollups == null ) {
+			tableRollups = new CopyOnWriteArrayList<>();
+			this.rollups.put(table, tableRollups);
+		}
+
+		for ( RollupDefinition existing : tableRollups )
+			if ( existing.getColumnFamily().equals(rollup.getColumnFamily()) )
+				tableRollups.remove(existing);
+		tableRollups.add(rollup);
+	}
+
+	/**
+	 * @param table table
+	 * @return the rollups of the given table
+	 */
+	public List<RollupDefinition> getRollups(String table) {
+		List<RollupDefinition> tableRollups = this.rollups.get(table);
+		return tableRollups == null ? Collections.<RollupDefinition>emptyList() : Collections.unmodifiableList(tableRollups);
+	}
+
+	/**
+	 * @param table table
+	 * @return the secondary indexes of the given table
+	 */
+	public List<IndexDefinition> getIndexes(String table) {
+		List<IndexDefinition> tableIndexes = this.indexes.get(table);
+		return tableIndexes == null ? Collections.<IndexDefinition>emptyList() : Collections.unmodifiableList(tableIndexes);
+	}
+
+	/**
+	 * Applies the retention policy of the given table from the config, see
+	 * {@link RetentionPolicy}.
+	 * @param table table
+	 * @throws AccumuloException
+	 * @throws AccumuloSecurityException
+	 * @throws TableNotFoundException
+	 */
+	public synchronized void applyRetention(String table) throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+		this.applyRetention(table, RetentionPolicy.fromConfig(table));
+	}
+
+	/**
+	 * Applies the given retention policy to the given table. Its age-off
+	 * filters replace the previous ones, which are removed even if the policy
+	 * has none, and run at scan and compaction time, so expired entries are
+	 * hidden at once and removed from the files by the next compaction.
+	 * @param table table
+	 * @param policy retention policy
+	 * @throws AccumuloException
+	 * @throws AccumuloSecurityException
+	 * @throws TableNotFoundException
+	 */
+	public synchronized void applyRetention(String table, RetentionPolicy policy) throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+		Map<String, EnumSet<IteratorScope>> iterators = this.connector.tableOperations().listIterators(table);
+		for ( String name : new String[]{RetentionPolicy.AGE_OFF, RetentionPolicy.COLUMN_AGE_OFF} )
+			if ( iterators.containsKey(name) )
+				this.connector.tableOperations().removeIterator(table, name, iterators.get(name));
+		for ( IteratorSetting setting : policy.getIteratorSettings() )
+			this.connector.tableOperations().attachIterator(table, setting);
+
+		if ( policy.getMaxVersions() > 0 ) {
+			if ( iterators.containsKey("vers") ) {
+				for ( IteratorScope scope : iterators.get("vers") )
+					this.connector.tableOperations().setProperty(table, Property.TABLE_ITERATOR_PREFIX.getKey() + scope.name() + ".vers.opt.maxVersions", Integer.toString(policy.getMaxVersions()));
+			}
+			else {
+				IteratorSetting setting = new IteratorSetting(20, "vers", VersioningIterator.class);
+				VersioningIterator.setMaxVersions(setting, policy.getMaxVersions());
+				this.connector.tableOperations().attachIterator(table, setting);
+			}
+		}
+
+		ScanCache c = this.cache;
+		if ( c != null )
+			c.invalidate(table);
+	}
+
+	/**
+	 * Compacts the given row range of the given table, which removes the
+	 * expired entries from its files.
+	 * @param table table
+	 * @param start start row (exclusive) or <code>null</code> for the first
+	 * @param end end row (inclusive) or <code>null</code> for the last
+	 * @param wait wait until the compaction is finished
+	 * @throws AccumuloException
+	 * @throws AccumuloSecurityException
+	 * @throws TableNotFoundException
+	 */
+	public void compact(String table, Text start, Text end, boolean wait) throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
+		Logger.debug(Accumulo.class, "Compacting table: " + table);
+		this.connector.tableOperations().compact(table, start, end, true, wait);
+	}
+
+	/**
+	 * @return the compaction scheduler of this client
+	 */
+	public synchronized CompactionScheduler getCompactionScheduler() {
+		if ( this.compactionScheduler == null )
+			this.compactionScheduler = new CompactionScheduler(this);
+
+		return this.compactionScheduler;
+	}
+
+	/**
+	 * Compacts the given table every day at the off-peak hour from
+	 * <code>accumulo.compaction.&lt;table&gt;.hour</code> or
+	 * <code>accumulo.compaction.hour</code>.
+	 * @param table table
+	 */
+	public void scheduleCompaction(String table) {
+		String hour = Config.getProperty("accumulo.compaction." + table + ".hour");
+		if ( hour == null || hour.isEmpty() )
+			hour = Config.getProperty("accumulo.compaction.hour");
+
+		this.getCompactionScheduler().schedule(table, Integer.parseInt(hour));
+	}
+
+	/**
+	 * Flushes the batch writer for the given table, after the writers of its
+	 * index tables. In multi table mode all tables share one writer, so every
+	 * table is flushed.
+	 * @param table table
+	 * @throws MutationsRejectedException
+	 */
+	public void flushBashWriter(String table) throws MutationsRejectedException {
+		Logger.debug(Accumulo.class, "Flushing bash writer for table: " + table);
+		this.flushIndexWriters(table);
+		BatchWriter writer = this.batchWriters.get(table);
+		if ( writer == null )
+			return;
+
+		ReplayBuffer buffer = this.replayBuffers.get(table);
+		long flushed = buffer == null ? 0 : buffer.mark();
+		TableMetrics tableMetrics = this.metrics.getTableMetrics(table);
+		long start = System.nanoTime();
+		MultiTableBatchWriter multiTableWriter = this.multiTableBatchWriter;
+		ScanCache c = this.cache;
+		Map<String, ScanCache.PendingRows> pending = takePending(c, multiTableWriter == null ? table : null);
+		try {
+			if ( multiTableWriter != null )
+				multiTableWriter.flush();
+			else
+				writer.flush();
+		}
+		catch ( MutationsRejectedException | TimedOutException e ) {
+			tableMetrics.rejected();
+			if ( this.retryPolicy == null )
+				throw e;
+			this.recover(table, multiTableWriter != null ? multiTableWriter : writer, e, null);
+			return;
+		}
+		finally {
+			invalidatePending(c, pending);
+		}
+		if ( multiTableWriter != null ) {
+			long duration = System.nanoTime() - start;
+			for ( String t : this.batchWriters.keySet() )
+				this.metrics.getTableMetrics(t).flushed(duration);
+		}
+		else
+			tableMetrics.flushed(System.nanoTime() - start);
+
+		if ( buffer != null )
+			buffer.trim(flushed);
+	}
+
+	/**
+	 * Flushes the batch writers of all tables.
+	 * @throws MutationsRejectedException
+	 */
+	public void flushBashWriters() throws MutationsRejectedException {
+		Logger.debug(Accumulo.class, "Flushing all bash writers");
+		MultiTableBatchWriter multiTableWriter = this.multiTableBatchWriter;
+		if ( multiTableWriter != null ) {
+			Map<ReplayBuffer, Long> flushed = new HashMap<>();
+			for ( ReplayBuffer buffer : this.replayBuffers.values() )
+				flushed.put(buffer, buffer.mark());
+
+			ScanCache c = this.cache;
+			Map<String, ScanCache.PendingRows> pending = takePending(c, null);
+			long start = System.nanoTime();
+			try {
+				multiTableWriter.flush();
+			}
+			catch ( MutationsRejectedException | TimedOutException e ) {
+				for ( String table : this.batchWriters.keySet() )
+					this.metrics.getTableMetrics(table).rejected();
+				if ( this.retryPolicy == null )
+					throw e;
+				this.recover(null, multiTableWriter, e, null);
+				return;
+			}
+			finally {
+				invalidatePending(c, pending);
+			}
+			long duration = System.nanoTime() - start;
+			for ( String table : this.batchWriters.keySet() )
+				this.metrics.getTableMetrics(table).flushed(duration);
+
+			for ( Entry<ReplayBuffer, Long> buffer : flushed.entrySet() )
+				buffer.getKey().trim(buffer.getValue());
+		}
+		else
+			for ( String table : this.batchWriters.keySet() )
+				this.flushBashWriter(table);
+	}
+
+	/**
+	 * Closes the batch writer for the given table, after flushing the writers
+	 * of its index tables. In multi table mode the shared writer is flushed
+	 * and only closed once the last table is closed.
+	 * @param table table
+	 * @throws MutationsRejectedException
+	 */
+	public void closeBashWriter(String table) throws MutationsRejectedException {
+		Logger.debug(Accumulo.class, "Closing bash writer for table: " + table);
+		this.flushIndexWriters(table);
+
+		BatchWriter writer = this.batchWriters.remove(table);
+		if ( writer == null )
+			return;
+
+		TableMetrics tableMetrics = this.metrics.getTableMetrics(table);
+		long start = System.nanoTime();
+		Object current = writer;
+		ScanCache c = this.cache;
+		Map<String, ScanCache.PendingRows> pending = takePending(c, this.multiTableBatchWriter == null ? table : null);
+		try {
+			if ( this.multiTableBatchWriter == null )
+				writer.close();
+			else {
+				synchronized ( this.batchWriters ) {
+					current = this.multiTableBatchWriter;
+					if ( this.multiTableBatchWriter != null ) {
+						if ( this.batchWriters.isEmpty() ) {
+							this.multiTableBatchWriter.close();
+							this.multiTableBatchWriter = null;
+						}
+						else
+							this.multiTableBatchWriter.flush();
+					}
+				}
+			}
+		}
+		catch ( MutationsRejectedException | TimedOutException e ) {
+			tableMetrics.rejected();
+			if ( this.retryPolicy == null )
+				throw e;
+			this.recover(table, current, e, null);
+			this.replayBuffers.remove(table);
+			return;
+		}
+		finally {
+			invalidatePending(c, pending);
+		}
+		long duration = System.nanoTime() - start;
+		tableMetrics.flushed(duration);
+		if ( current != writer )
+			for ( String t : this.batchWriters.keySet() )
+				this.metrics.getTableMetrics(t).flushed(duration);
+		this.replayBuffers.remove(table);
+	}
+
+	/**
+	 * Takes the rows written since the last flush from the scan cache.
+	 * @param c scan cache or <code>null</code>
+	 * @param table table or <code>null</code> for all tables
+	 * @return pending rows per table or <code>null</code>
+	 */
+	private static Map<String, ScanCache.PendingRows> takePending(ScanCache c, String table) {
+		if ( c == null )
+			return null;
+
+		return table == null ? c.takePending() : Collections.singletonMap(table, c.takePending(table));
+	}
+
+	/**
+	 * Invalidates the flushed rows in the scan cache.
+	 * @param c scan cache or <code>null</code>
+	 * @param pending pending rows per table or <code>null</code>
+	 */
+	private static void invalidatePending(ScanCache c, Map<String, ScanCache.PendingRows> pending) {
+		if ( c == null || pending == null )
+			return;
+
+		for ( Entry<String, ScanCache.PendingRows> rows : pending.entrySet() )
+			c.flushed(rows.getKey(), rows.getValue());
+	}
+
+	/**
+	 * Flushes the batch writers of the index tables of the given table, so
+	 * the rows flushed afterwards are not visible before their index entries.
+	 * This only holds for explicit flushes, a writer that flushes on its own
+	 * does not wait for the index writers. A multi table writer flushes them
+	 * together with the table.
+	 * @param table table
+	 * @throws MutationsRejectedException
+	 */
+	private void flushIndexWriters(String table) throws MutationsRejectedException {
+		List<IndexDefinition> tableIndexes = this.indexes.get(table);
+		if ( tableIndexes == null || this.multiTableBatchWriter != null )
+			return;
+
+		for ( IndexDefinition index : tableIndexes )
+			this.flushBashWriter(index.getIndexTable(table));
+	}
+
+	/**
+	 * Closes the batch writers of all tables.
+	 * @throws MutationsRejectedException
+	 */
+	public void closeBashWriters() throws MutationsRejectedException {
+		Logger.debug(Accumulo.class, "Closing all bash writers");
+
+		synchronized ( this.batchWriters ) {
+			if ( this.multiTableBatchWriter != null ) {
+				MultiTableBatchWriter multiTableWriter = this.multiTableBatchWriter;
+				ScanCache c = this.cache;
+				Map<String, ScanCache.PendingRows> pending = takePending(c, null);
+				try {
+					multiTableWriter.close();
+				}
+				catch ( MutationsRejectedException | TimedOutException e ) {
+					if ( this.retryPolicy == null )
+						throw e;
+					this.recover(null, multiTableWriter, e, null);
+				}
+				finally {
+					this.batchWriters.clear();
+					this.multiTableBatchWriter = null;
+					this.replayBuffers.clear();
+					invalidatePending(c, pending);
+				}
+			}
+			else {
+				for ( String table : this.batchWriters.keySet() )
+					this.closeBashWriter(table);
+			}
+		}
+	}
+
+	/**
+	 * Returns the batch writer configuration for the given table. Every value
+	 * is read from <code>accumulo.batch_writer.&lt;table&gt;.&lt;name&gt;</code>
+	 * and falls back to <code>accumulo.batch_writer.&lt;name&gt;</code>, with
+	 * <code>max_memory</code> in bytes, <code>max_latency</code> and
+	 * <code>timeout</code> in milliseconds (<code>0</code> for none) and
+	 * <code>max_write_threads</code>.
+	 * @param table table or <code>null</code> for the global configuration
+	 * @return batch writer configuration
+	 */
+	public BatchWriterConfig getBatchWriterConfig(String table) {
+		BatchWriterConfig config = new BatchWriterConfig();
+		config.setMaxMemory(Long.parseLong(this.getBatchWriterProperty(table, "max_memory")));
+		config.setMaxLatency(Long.parseLong(this.getBatchWriterProperty(table, "max_latency")), TimeUnit.MILLISECONDS);
+		config.setMaxWriteThreads(Integer.parseInt(this.getBatchWriterProperty(table, "max_write_threads")));
+		config.setTimeout(Long.parseLong(this.getBatchWriterProperty(table, "timeout")), TimeUnit.MILLISECONDS);
+		return config;
+	}
+
+	/**
+	 * Returns the batch writer property for the given table or the global one
+	 * if the table has none.
+	 * @param table table or <code>null</code>
+	 * @param name property name
+	 * @return value
+	 */
+	private String getBatchWriterProperty(String table, String name) {
+		if ( table != null ) {
+			String value = Config.getProperty("accumulo.batch_writer." + table + "." + name);
+			if ( value != null && !value.isEmpty() )
+				return value;
+		}
+
+		return Config.getProperty("accumulo.batch_writer." + name);
+	}
+
+	/**
+	 * Returns the batch writer for the given table. The writer is created
+	 * once and then shared; only its creation takes a lock.
+	 * <p>
+	 * With <code>accumulo.batch_writer.multi_table</code> enabled, the writers
+	 * of all tables are backed by one <code>MultiTableBatchWriter</code>, which
+	 * shares a single memory buffer and flush cycle. The mode is picked up
+	 * whenever no writer is open.
+	 * @param table table
+	 * @return batch writer
+	 * @throws TableNotFoundException
+	 */
+	private BatchWriter getBatchWriter(String table) throws TableNotFoundException {
+		BatchWriter writer = this.batchWriters.get(table);
+		if ( writer != null )
+			return writer;
+
+		synchronized ( this.batchWriters ) {
+			writer = this.batchWriters.get(table);
+			if ( writer == null ) {
+				if ( this.batchWriters.isEmpty() && this.multiTableBatchWriter == null && Config.getBooleanProperty("accumulo.batch_writer.multi_table") )
+					this.multiTableBatchWriter = this.connector.createMultiTableBatchWriter(this.getBatchWriterConfig(null));
+
+				if ( this.multiTableBatchWriter != null ) {
+					try {
+						writer = this.multiTableBatchWriter.getBatchWriter(table);
+					}
+					catch ( AccumuloException | AccumuloSecurityException e ) {
+						throw new IllegalStateException("Could not get batch writer for table: " + table, e);
+					}
+				}
+				else
+					writer = this.createBatchWriter(table);
+
+				this.batchWriters.put(table, writer);
+			}
+		}
+
+		return writer;
+	}
+
+	/**
+	 * Creates a batch writer for the given table with its configuration.
+	 * @param table table
+	 * @return batch writer
+	 * @throws TableNotFoundException
+	 */
+	protected BatchWriter createBatchWriter(String table) throws TableNotFoundException {
+		return this.connector.createBatchWriter(table, this.getBatchWriterConfig(table));
+	}
+
+	/**
+	 * Returns a bulk writer for the given table. It writes RFiles to the given
+	 * work directory (local or HDFS) and imports them into the table on close,
+	 * which is much faster than the batch writer for large backfills. The
+	 * buffer size is read from <code>accumulo.bulk_writer.max_memory</code>.
+	 * @param table table
+	 * @param directory work directory, must not exist
+	 * @return bulk writer
+	 * @throws IOException
+	 */
+	public BulkWriter createBulkWriter(String table, String directory) throws IOException {
+		return new BulkWriter(this.connector, this.cache, table, directory, Config.getLongProperty("accumulo.bulk_writer.max_memory"));
+	}
+
+	/**
+	 * Returns an asynchronous writer in front of the batch writers. Buffer
+	 * capacity, number of worker threads and overflow policy (block,
+	 * drop_oldest or fail_fast) are read from
+	 * <code>accumulo.async_writer.capacity</code>,
+	 * <code>accumulo.async_writer.threads</code> and
+	 * <code>accumulo.async_writer.policy</code>.
+	 * @return async writer
+	 */
+	public AsyncWriter createAsyncWriter() {
+		AsyncWriter.OverflowPolicy policy = AsyncWriter.OverflowPolicy.valueOf(Config.getProperty("accumulo.async_writer.policy").toUpperCase());
+		return new AsyncWriter(this, Config.getIntegerProperty("accumulo.async_writer.capacity"), Config.getIntegerProperty("accumulo.async_writer.threads"), policy);
+	}
+
+	/**
+	 * Returns all elements of the given table.
+	 * @param table table
+	 * @return Iterator for all elements
+	 * @throws TableNotFoundException
+	 */
+	public ScanIterator scanAll(String table) throws TableNotFoundException {
+		return this.scanAll(table, new Authorizations());
+	}
+
+	/**
+	 * Returns all elements of the given table.
+	 * @param table table
+	 * @param auths column visibility
+	 * @return Iterator for all elements
+	 * @throws TableNotFoundException
+	 */
+	public ScanIterator scanAll(String table, String auths) throws TableNotFoundException {
+		Authorizations a = new Authorizations(auths);
+		return this.scanAll(table, a);
+	}
+
+	/**
+	 * Returns all elements of the given table.
+	 * @param table table
+	 * @param auths column visibility
+	 * @return Iterator for all elements
+	 * @throws TableNotFoundException
+	 */
+	public ScanIterator scanAll(String table, Authorizations auths) throws TableNotFoundException {
+		return this.scan(table, auths, new Range(), null, null, Config.getIntegerProperty("accumulo.scanner.batch_size"));
+	}
+
+	/**
+	 * Returns all elements filter by the given column family and column qualifier.
+	 * @param table table
+	 * @param columnFamily column family
+	 * @param columnQualifier column qualifier
+	 * @return iterator
+	 * @throws TableNotFoundException
+	 */
+	public ScanIterator scanColumns(String table, String columnFamily, String columnQualifier) throws TableNotFoundException {
+		return this.scanColumns(table, columnFamily, columnQualifier, new Authorizations());
+	}
+
+	/**
+	 * Returns all elements filter by the given column family and column qualifier.
+	 * @param table table
+	 * @param columnFamily column family
+	 * @param columnQualifier column qualifier
+	 * @param auths column visibility
+	 * @return iterator
+	 * @throws TableNotFoundException
+	 */
+	public ScanIterator scanColumns(String table, String columnFamily, String columnQualifier, String auths) throws TableNotFoundException {
+		Authorizations a = new Authorizations(auths);
+		return this.scanColumns(table, columnFamily, columnQualifier, a);
+	}
+
+	/**
+	 * Returns all elements filter by the given column family and column qualifier.
+	 * @param table table
+	 * @param columnFamily column family
+	 * @param columnQualifier column qualifier
+	 * @param auths column visibility
+	 * @return iterator
+	 * @throws TableNotFoundException
+	 */
+	public ScanIterator scanColumns(String table, String columnFamily, String columnQualifier, Authorizations auths) throws TableNotFoundException {
+		return this.scan(table, auths, new Range(), columnFamily, columnQualifier, Config.getIntegerProperty("accumulo.scanner.batch_size"));
+	}
+
+	/**
+	 * Returns all elements filter by the given column family.
+	 * @param table table
+	 * @param columnFamily column family
+	 * @return iterator
+	 * @throws TableNotFoundException
+	 */
+	public ScanIterator scanByFamily(String table, String columnFamily) throws TableNotFoundException {
+		return this.scanByFamily(table, columnFamily, new Authorizations());
+	}
+
+	/**
+	 * Returns all elements filter by the given column family.
+	 * @param table table
+	 * @param columnFamily column family
+	 * @param auths column visibility
+	 * @return iterator
+	 * @throws TableNotFoundException
+	 */
+	public ScanIterator scanByFamily(String table, String columnFamily, String auths) throws TableNotFoundException {
+		Authorizations a = new Authorizations(auths);
+		return this.scanByFamily(table, columnFamily, a);
+	}
+
+	/**
+	 * Returns all elements filter by the given column family.
+	 * @param table table
+	 * @param columnFamily column family
+	 * @param auths column visibility
+	 * @return iterator
+	 * @throws TableNotFoundException
+	 */
+	public ScanIterator scanByFamily(String table, String columnFamily, Authorizations auths) throws TableNotFoundException {
+		return this.scan(table, auths, new Range(), columnFamily, null, Config.getIntegerProperty("accumulo.scanner.batch_size"));
+	}
+
+	/**
+	 * Returns all elements filter by the given range for the row ids.
+	 * @param table table
+	 * @param range row id range
+	 * @return iterator
+	 * @throws TableNotFoundException
+	 */
+	public ScanIterator scanByKey(String table, Range range) throws TableNotFoundException {
+		return this.scanByKey(table, new Authorizations(), range);
+	}
+
+	/**
+	 * Returns all elements filter by the given range for the row ids.
+	 * @param table table
+	 * @param auths column visibility
+	 * @param range row id range
+	 * @return iterator
+	 * @throws TableNotFoundException
+	 */
+	public ScanIterator scanByKey(String table, String auths, Range range) throws TableNotFoundException {
+		Authorizations a = new Authorizations(auths);
+		return this.scanByKey(table, a, range);
+	}
+
+	/**
+	 * Returns all elements filter by the given range for the row ids.
+	 * @param table table
+	 * @param auths column visibility
+	 * @param range row id range
+	 * @return iterator
+	 * @throws TableNotFoundException
+	 */
+	public ScanIterator scanByKey(String table, Authorizations auths, Range range) throws TableNotFoundException {
+		return this.scan(table, auths, range, null, null, Config.getIntegerProperty("accumulo.scanner.batch_size"));
+	}
+
+	/**
+	 * Returns all elements filter by the given range for the row ids and the
+	 * given server-side iterators.
+	 * @param table table
+	 * @param auths column visibility
+	 * @param range row id range
+	 * @param iterators scan iterators, see {@link Filters}
+	 * @return iterator
+	 * @throws TableNotFoundException
+	 */
+	public ScanIterator scanByKey(String table, Authorizations auths, Range range, List<IteratorSetting> iterators) throws TableNotFoundException {
+		return this.scan(table, auths, range, null, null, Config.getIntegerProperty("accumulo.scanner.batch_size"), iterators);
+	}
+
+	/**
+	 * Returns all elements in the given range, optionally filtered by column
+	 * family and column qualifier. The entries are streamed in batches of the
+	 * given size; the scanner stays open until the returned iterator is
+	 * exhausted or closed.
+	 * @param table table
+	 * @param auths column visibility
+	 * @param range row id range
+	 * @param columnFamily column family or <code>null</code> for all
+	 * @param columnQualifier column qualifier or <code>null</code> for all
+	 * @param batchSize number of entries fetched per round trip
+	 * @return iterator
+	 * @throws TableNotFoundException
+	 */
+	public ScanIterator scan(String table, Authorizations auths, Range range, String columnFamily, String columnQualifier, int batchSize) throws TableNotFoundException {
+		return this.scan(table, auths, range, columnFamily, columnQualifier, batchSize, 0, null);
+	}
+
 	/**
-	 * returns the connector
-	 * @return Connector
+	 * Returns all elements in the given range, optionally filtered by column
+	 * family and column qualifier, passed through the given server-side
+	 * iterators. Filtered scans bypass the scan cache.
+	 * @param table table
+	 * @param auths column visibility
+	 * @param range row id range
+	 * @param columnFamily column family or <code>null</code> for all
+	 * @param columnQualifier column qualifier or <code>null</code> for all
+	 * @param batchSize number of entries fetched per round trip
+	 * @param iterators scan iterators, see {@link Filters}
+	 * @return iterator
+	 * @throws TableNotFoundException
 	 */
-	public Connector getConnector() {
-		return this.connector;
-	}
-	
-	public MockInstance getMockInstance(){
-		return (MockInstance)this.instance;
+	public ScanIterator scan(String table, Authorizations auths, Range range, String columnFamily, String columnQualifier, int batchSize, List<IteratorSetting> iterators) throws TableNotFoundException {
+		return this.scan(table, auths, range, columnFamily, columnQualifier, batchSize, 0, iterators);
 	}
 
 	/**
-	 * Disconnects and closes Accumulo.
-	 * @throws IOException
-	 * @throws InterruptedException
-	 * @throws MutationsRejectedException
+	 * Returns the first entries in the given range, read through the scan
+	 * cache if it is enabled. A scan result is cached once it is read
+	 * completely or up to the limit.
+	 * @param table table
+	 * @param auths column visibility
+	 * @param range row id range
+	 * @param columnFamily column family or <code>null</code> for all
+	 * @param columnQualifier column qualifier or <code>null</code> for all
+	 * @param batchSize number of entries fetched per round trip
+	 * @param limit number of entries the caller reads, <code>0</code> for all
+	 * @param iterators scan iterators or <code>null</code>, bypass the cache
+	 * @return iterator
+	 * @throws TableNotFoundException
 	 */
-	public synchronized void disconnect() throws IOException, InterruptedException, MutationsRejectedException {
-		this.instance = null;
-		this.connector = null;
+	private ScanIterator scan(String table, Authorizations auths, Range range, String columnFamily, String columnQualifier, int batchSize, int limit, List<IteratorSetting> iterators) throws TableNotFoundException {
+		ScanCache c = iterators == null || iterators.isEmpty() ? this.cache : null;
+		if ( c != null ) {
+			List<Entry<Key, Value>> cached = c.get(table, auths, range, columnFamily, columnQualifier, limit);
+			if ( cached != null )
+				return new ScanIterator(cached.iterator());
+		}
 
-		for ( BatchWriter writer : this.batchWriters.values() )
-			writer.close();
+		Scanner scanner = this.connector.createScanner(table, auths);
+		scanner.setRange(range);
+		scanner.setBatchSize(batchSize);
 
-		this.batchWriters.clear();
+		if ( columnFamily != null && columnQualifier != null )
+			scanner.fetchColumn(new Text(columnFamily), new Text(columnQualifier));
+		else if ( columnFamily != null )
+			scanner.fetchColumnFamily(new Text(columnFamily));
 
-		if ( this.accumulo != null )
-			this.accumulo.stop();
+		if ( iterators != null )
+			for ( IteratorSetting setting : iterators )
+				scanner.addScanIterator(setting);
+
+		if ( c == null )
+			return new ScanIterator(scanner, this.metrics.getTableMetrics(table));
+		return new ScanIterator(scanner, this.metrics.getTableMetrics(table), c.record(table, auths, range, columnFamily, columnQualifier, limit));
 	}
 
 	/**
-	 * Creates the given table.
+	 * Returns all elements in the given ranges. The ranges are looked up in
+	 * parallel, so the entries are returned in no particular order.
 	 * @param table table
-	 * @throws AccumuloException
-	 * @throws AccumuloSecurityException
-	 * @throws TableExistsException
+	 * @param ranges row id ranges
+	 * @return iterator
+	 * @throws TableNotFoundException
 	 */
-	public synchronized void createTable(String table) throws AccumuloException, AccumuloSecurityException, TableExistsException {
-		this.connector.tableOperations().create(table);
+	public ScanIterator batchScanByKey(String table, Collection<Range> ranges) throws TableNotFoundException {
+		return this.batchScanByKey(table, new Authorizations(), ranges);
 	}
 
 	/**
-	 * Creates the given table.
+	 * Returns all elements in the given ranges. The ranges are looked up in
+	 * parallel, so the entries are returned in no particular order.
 	 * @param table table
-	 * @param limitVersion <code>false</code> to store all timestamp versions
-	 * @throws AccumuloException
-	 * @throws AccumuloSecurityException
-	 * @throws TableExistsException
+	 * @param auths column visibility
+	 * @param ranges row id ranges
+	 * @return iterator
+	 * @throws TableNotFoundException
 	 */
-	public synchronized void createTable(String table, boolean limitVersion) throws AccumuloException, AccumuloSecurityException, TableExistsException {
-		this.connector.tableOperations().create(table, limitVersion);
+	public ScanIterator batchScanByKey(String table, String auths, Collection<Range> ranges) throws TableNotFoundException {
+		Authorizations a = new Authorizations(auths);
+		return this.batchScanByKey(table, a, ranges);
 	}
 
 	/**
-	 * Deletes the given table.
-	 * @param table table name
-	 * @throws AccumuloException
-	 * @throws AccumuloSecurityException
+	 * Returns all elements in the given ranges. The ranges are looked up in
+	 * parallel, so the entries are returned in no particular order.
+	 * @param table table
+	 * @param auths column visibility
+	 * @param ranges row id ranges
+	 * @return iterator
 	 * @throws TableNotFoundException
 	 */
-	public synchronized void deleteTable(String table) throws AccumuloException, AccumuloSecurityException, TableNotFoundException {
-		this.connector.tableOperations().delete(table);
+	public ScanIterator batchScanByKey(String table, Authorizations auths, Collection<Range> ranges) throws TableNotFoundException {
+		return this.batchScan(table, auths, ranges, null, null, Config.getIntegerProperty("accumulo.batch_scanner.query_threads"));
 	}
 
 	/**
-	 * Flushes the batch writer for the given table.
+	 * Returns all elements in the given ranges filtered by the given column
+	 * family and column qualifier. The ranges are looked up in parallel, so
+	 * the entries are returned in no particular order.
 	 * @param table table
-	 * @throws MutationsRejectedException
+	 * @param ranges row id ranges
+	 * @param columnFamily column family
+	 * @param columnQualifier column qualifier
+	 * @param auths column visibility
+	 * @return iterator
+	 * @throws TableNotFoundException
 	 */
-	public synchronized void flushBashWriter(String table) throws MutationsRejectedException {
-		Logger.debug(Accumulo.class, "Flushing bash writer for table: " + table);
-		if ( this.batchWriters.containsKey(table) )
-			this.batchWriters.get(table).flush();
+	public ScanIterator batchScanColumns(String table, Collection<Range> ranges, String columnFamily, String columnQualifier, Authorizations auths) throws TableNotFoundException {
+		return this.batchScan(table, auths, ranges, columnFamily, columnQualifier, Config.getIntegerProperty("accumulo.batch_scanner.query_threads"));
 	}
 
 	/**
-	 * Closes the batch writer for the given table.
+	 * Returns all elements in the given ranges filtered by the given column
+	 * family. The ranges are looked up in parallel, so the entries are
+	 * returned in no particular order.
 	 * @param table table
-	 * @throws MutationsRejectedException
+	 * @param ranges row id ranges
+	 * @param columnFamily column family
+	 * @param auths column visibility
+	 * @return iterator
+	 * @throws TableNotFoundException
 	 */
-	public synchronized void closeBashWriter(String table) throws MutationsRejectedException {
-		Logger.debug(Accumulo.class, "Closing bash writer for table: " + table);
+	public ScanIterator batchScanByFamily(String table, Collection<Range> ranges, String columnFamily, Authorizations auths) throws TableNotFoundException {
+		return this.batchScan(table, auths, ranges, columnFamily, null, Config.getIntegerProperty("accumulo.batch_scanner.query_threads"));
+	}
 
-		if ( this.batchWriters.containsKey(table) ) {
-			this.batchWriters.get(table).close();
-			this.batchWriters.remove(table);
-		}
+	/**
+	 * Returns all elements in the given ranges, optionally filtered by column
+	 * family and column qualifier. The ranges are spread over the given number
+	 * of query threads, so the entries are returned in no particular order.
+	 * The batch scanner stays open until the returned iterator is exhausted
+	 * or closed.
+	 * @param table table
+	 * @param auths column visibility
+	 * @param ranges row id ranges
+	 * @param columnFamily column family or <code>null</code> for all
+	 * @param columnQualifier column qualifier or <code>null</code> for all
+	 * @param numQueryThreads number of query threads
+	 * @return iterator
+	 * @throws TableNotFoundException
+	 */
+	public ScanIterator batchScan(String table, Authorizations auths, Collection<Range> ranges, String columnFamily, String columnQualifier, int numQueryThreads) throws TableNotFoundException {
+		return this.batchScan(table, auths, ranges, columnFamily, columnQualifier, numQueryThreads, null);
 	}
 
 	/**
-	 * Returns all elements of the given table.
+	 * Returns all elements in the given ranges, optionally filtered by column
+	 * family and column qualifier, passed through the given server-side
+	 * iterators. The entries are returned in no particular order.
 	 * @param table table
-	 * @return Iterator for all elements
+	 * @param auths column visibility
+	 * @param ranges row id ranges
+	 * @param columnFamily column family or <code>null</code> for all
+	 * @param columnQualifier column qualifier or <code>null</code> for all
+	 * @param numQueryThreads number of query threads
+	 * @param iterators scan iterators or <code>null</code>, see {@link Filters}
+	 * @return iterator
 	 * @throws TableNotFoundException
 	 */
-	public synchronized Iterator<Entry<Key,Value>> scanAll(String table) throws TableNotFoundException {
-		return this.scanAll(table, new Authorizations());
+	public ScanIterator batchScan(String table, Authorizations auths, Collection<Range> ranges, String columnFamily, String columnQualifier, int numQueryThreads, List<IteratorSetting> iterators) throws TableNotFoundException {
+		BatchScanner scanner = this.connector.createBatchScanner(table, auths, numQueryThreads);
+		scanner.setRanges(ranges);
+
+		if ( columnFamily != null && columnQualifier != null )
+			scanner.fetchColumn(new Text(columnFamily), new Text(columnQualifier));
+		else if ( columnFamily != null )
+			scanner.fetchColumnFamily(new Text(columnFamily));
+
+		if ( iterators != null )
+			for ( IteratorSetting setting : iterators )
+				scanner.addScanIterator(setting);
+
+		return new ScanIterator(scanner, this.metrics.getTableMetrics(table));
 	}
 
 	/**
-	 * Returns all elements of the given table.
+	 * Returns the readings in the given column family of the given meter
+	 * between the given timestamps (inclusive), newest first.
 	 * @param table table
 	 * @param auths column visibility
-	 * @return Iterator for all elements
+	 * @param schema time series schema of the table
+	 * @param meterId meter id
+	 * @param from start timestamp
+	 * @param to end timestamp
+	 * @param columnFamily column family
+	 * @return iterator
 	 * @throws TableNotFoundException
 	 */
-	public synchronized Iterator<Entry<Key,Value>> scanAll(String table, String auths) throws TableNotFoundException {
-		Authorizations a = new Authorizations(auths);
-		return this.scanAll(table, a);
+	public ScanIterator scanTimeSeries(String table, Authorizations auths, TimeSeriesSchema schema, String meterId, long from, long to, String columnFamily) throws TableNotFoundException {
+		return this.scan(table, auths, schema.getRange(meterId, from, to, columnFamily), columnFamily, null, Config.getIntegerProperty("accumulo.scanner.batch_size"));
 	}
 
 	/**
-	 * Returns all elements of the given table.
+	 * Returns the readings of the given meter between the given timestamps
+	 * (inclusive) from the blocks written by a {@link BlockWriter}. Blocks
+	 * starting up to one window before the start are scanned as well.
 	 * @param table table
 	 * @param auths column visibility
-	 * @return Iterator for all elements
+	 * @param schema time series schema of the table
+	 * @param meterId meter id
+	 * @param from start timestamp
+	 * @param to end timestamp
+	 * @param columnFamily column family of the blocks
+	 * @param window window size of the blocks in milliseconds
+	 * @return reader
 	 * @throws TableNotFoundException
 	 */
-	public synchronized Iterator<Entry<Key,Value>> scanAll(String table, Authorizations auths) throws TableNotFoundException {
-		Scanner scanner = this.connector.createScanner(table, auths);
-		Iterator<Entry<Key,Value>> iterator = scanner.iterator();
-		scanner.close();
+	public BlockReader scanBlocks(String table, Authorizations auths, TimeSeriesSchema schema, String meterId, long from, long to, String columnFamily, long window) throws TableNotFoundException {
+		return new BlockReader(this.scanTimeSeries(table, auths, schema, meterId, Math.max(0, from - window + 1), to, columnFamily), schema, from, to);
+	}
 
-		return iterator;
+	/**
+	 * Returns the readings in the given column family of the given meter
+	 * between the given timestamps (inclusive), newest first, decoded into
+	 * column batches.
+	 * @param table table
+	 * @param auths column visibility
+	 * @param schema time series schema of the table
+	 * @param meterId meter id
+	 * @param from start timestamp
+	 * @param to end timestamp
+	 * @param columnFamily column family
+	 * @param encoding encoding of the values
+	 * @return reader
+	 * @throws TableNotFoundException
+	 */
+	public ColumnReader scanTimeSeriesColumns(String table, Authorizations auths, TimeSeriesSchema schema, String meterId, long from, long to, String columnFamily, ValueEncoding encoding) throws TableNotFoundException {
+		return new ColumnReader(this.scanTimeSeries(table, auths, schema, meterId, from, to, columnFamily), true, encoding);
 	}
 
 	/**
-	 * Returns all elements filter by the given column family and column qualifier.
+	 * Returns the readings in the given column family of the given meters
+	 * between the given timestamps (inclusive) in no particular order.
 	 * @param table table
+	 * @param auths column visibility
+	 * @param schema time series schema of the table
+	 * @param meterIds meter ids
+	 * @param from start timestamp
+	 * @param to end timestamp
 	 * @param columnFamily column family
-	 * @param columnQualifier column qualifier
 	 * @return iterator
 	 * @throws TableNotFoundException
 	 */
-	public synchronized Iterator<Entry<Key,Value>> scanColumns(String table, String columnFamily, String columnQualifier) throws TableNotFoundException {
-		return this.scanColumns(table, columnFamily, columnQualifier, new Authorizations());
+	public ScanIterator batchScanTimeSeries(String table, Authorizations auths, TimeSeriesSchema schema, Collection<String> meterIds, long from, long to, String columnFamily) throws TableNotFoundException {
+		return this.batchScan(table, auths, schema.getRanges(meterIds, from, to, columnFamily), columnFamily, null, Config.getIntegerProperty("accumulo.batch_scanner.query_threads"));
 	}
 
 	/**
-	 * Returns all elements filter by the given column family and column qualifier.
+	 * Returns the latest reading in the given column family of the given
+	 * meter.
 	 * @param table table
+	 * @param auths column visibility
+	 * @param schema time series schema of the table
+	 * @param meterId meter id
 	 * @param columnFamily column family
-	 * @param columnQualifier column qualifier
+	 * @return latest reading or <code>null</code> if there is none
+	 * @throws TableNotFoundException
+	 */
+	public Entry<Key, Value> scanLatest(String table, Authorizations auths, TimeSeriesSchema schema, String meterId, String columnFamily) throws TableNotFoundException {
+		try ( ScanIterator iterator = this.scan(table, auths, schema.getRange(meterId), columnFamily, null, 1, 1, null) ) {
+			return iterator.hasNext() ? iterator.next() : null;
+		}
+	}
+
+	/**
+	 * Returns the rows of the given table with the given term in the given
+	 * index. The row ids are looked up in the index and the rows are then
+	 * read with a batch scanner, so the rows are returned in no particular
+	 * order. Rows whose indexed column no longer holds the term are skipped.
+	 * @param table table
+	 * @param index index name
 	 * @param auths column visibility
-	 * @return iterator
+	 * @param term term
+	 * @return entries of the matching rows
+	 * @throws IOException
 	 * @throws TableNotFoundException
 	 */
-	public synchronized Iterator<Entry<Key,Value>> scanColumns(String table, String columnFamily, String columnQualifier, String auths) throws TableNotFoundException {
-		Authorizations a = new Authorizations(auths);
-		return this.scanColumns(table, columnFamily, columnQualifier, a);
+	public ScanIterator queryIndex(String table, String index, Authorizations auths, String term) throws IOException, TableNotFoundException {
+		IndexDefinition definition = this.getIndex(table, index);
+		return this.queryIndex(table, definition, auths, definition.getRange(term));
 	}
 
 	/**
-	 * Returns all elements filter by the given column family and column qualifier.
+	 * Returns the rows of the given table with a number between the given
+	 * bounds (inclusive) in the given number index, see
+	 * {@link #queryIndex(String, String, Authorizations, String)}.
 	 * @param table table
-	 * @param columnFamily column family
-	 * @param columnQualifier column qualifier
+	 * @param index index name
 	 * @param auths column visibility
-	 * @return iterator
+	 * @param min minimum
+	 * @param max maximum
+	 * @return entries of the matching rows
+	 * @throws IOException
 	 * @throws TableNotFoundException
 	 */
-	public synchronized Iterator<Entry<Key,Value>> scanColumns(String table, String columnFamily, String columnQualifier, Authorizations auths) throws TableNotFoundException {
-		Scanner scanner = this.connector.createScanner(table, auths);
-		scanner.fetchColumn(new Text(columnFamily), new Text(columnQualifier));
-		Iterator<Entry<Key,Value>> iterator = scanner.iterator();
-		scanner.close();
+	public ScanIterator queryIndex(String table, String index, Authorizations auths, double min, double max) throws IOException, TableNotFoundException {
+		IndexDefinition definition = this.getIndex(table, index);
+		return this.queryIndex(table, definition, auths, definition.getRange(min, max));
+	}
+
+	/**
+	 * Returns the index with the given name.
+	 * @param table table
+	 * @param name index name
+	 * @return index definition
+	 */
+	private IndexDefinition getIndex(String table, String name) {
+		for ( IndexDefinition index : this.getIndexes(table) )
+			if ( index.getName().equals(name) )
+				return index;
 
-		return iterator;
+		throw new IllegalArgumentException("Table " + table + " has no index " + name + ".");
 	}
 
 	/**
-	 * Returns all elements filter by the given column family.
+	 * Returns the rows of the given table with a term in the given index
+	 * range.
 	 * @param table table
-	 * @param columnFamily column family
-	 * @return iterator
+	 * @param index index definition
+	 * @param auths column visibility
+	 * @param range index range
+	 * @return entries of the matching rows
+	 * @throws IOException
 	 * @throws TableNotFoundException
 	 */
-	public synchronized Iterator<Entry<Key,Value>> scanByFamily(String table, String columnFamily) throws TableNotFoundException {
-		return this.scanByFamily(table, columnFamily, new Authorizations());
+	private ScanIterator queryIndex(String table, IndexDefinition index, Authorizations auths, Range range) throws IOException, TableNotFoundException {
+		Set<Text> rows = new TreeSet<>();
+		try ( ScanIterator entries = this.scan(index.getIndexTable(table), auths, range, null, null, Config.getIntegerProperty("accumulo.scanner.batch_size")) ) {
+			while ( entries.hasNext() )
+				rows.add(entries.next().getKey().getColumnFamily());
+		}
+
+		List<Entry<Key, Value>> result = new ArrayList<>();
+		if ( rows.isEmpty() )
+			return new ScanIterator(result.iterator());
+
+		List<Range> ranges = new ArrayList<>(rows.size());
+		for ( Text row : rows )
+			ranges.add(new Range(row));
+
+		try ( ScanIterator entries = this.batchScan(table, auths, ranges, null, null, Config.getIntegerProperty("accumulo.batch_scanner.query_threads"), Arrays.asList(new IteratorSetting(100, "wholerow", WholeRowIterator.class))) ) {
+			while ( entries.hasNext() ) {
+				Entry<Key, Value> entry = entries.next();
+				SortedMap<Key, Value> row = WholeRowIterator.decodeRow(entry.getKey(), entry.getValue());
+				if ( index.matches(row, range) )
+					result.addAll(row.entrySet());
+			}
+		}
+
+		return new ScanIterator(result.iterator());
 	}
 
 	/**
-	 * Returns all elements filter by the given column family.
+	 * Returns the aggregation of the readings in the given column family of
+	 * the given meter between the given timestamps. The window is covered
+	 * with the coarsest periods of the rollup that fit into it, finer
+	 * periods at its ends, and raw readings for the parts that do not fill
+	 * a period of the finest granularity.
 	 * @param table table
-	 * @param columnFamily column family
 	 * @param auths column visibility
-	 * @return iterator
+	 * @param meterId meter id
+	 * @param columnFamily rolled up column family
+	 * @param from start timestamp (inclusive)
+	 * @param to end timestamp (exclusive)
+	 * @param aggregation aggregation, one of the rollup
+	 * @return aggregated value or <code>null</code> if there are no readings
 	 * @throws TableNotFoundException
 	 */
-	public synchronized Iterator<Entry<Key,Value>> scanByFamily(String table, String columnFamily, String auths) throws TableNotFoundException {
-		Authorizations a = new Authorizations(auths);
-		return this.scanByFamily(table, columnFamily, a);
+	public Long queryRollup(String table, Authorizations auths, String meterId, String columnFamily, long from, long to, Aggregation aggregation) throws TableNotFoundException {
+		RollupDefinition rollup = this.getRollup(table, columnFamily, aggregation);
+		List<Granularity> granularities = new ArrayList<>(rollup.getGranularities());
+		Collections.reverse(granularities);
+
+		Granularity finest = granularities.get(granularities.size() - 1);
+		long start = finest.getCeiling(from);
+		long end = finest.getStart(to);
+		if ( start >= end )
+			return this.aggregateReadings(table, auths, rollup, meterId, from, to, aggregation);
+
+		Long value = this.aggregateRollup(table, auths, rollup, meterId, start, end, aggregation, granularities, 0);
+		value = combine(aggregation, value, this.aggregateReadings(table, auths, rollup, meterId, from, start, aggregation));
+		return combine(aggregation, value, this.aggregateReadings(table, auths, rollup, meterId, end, to, aggregation));
 	}
 
 	/**
-	 * Returns all elements filter by the given column family.
+	 * Returns the aggregation of the readings in the given column family of
+	 * the given meter per period of the given granularity, for the periods
+	 * between the given timestamps.
 	 * @param table table
-	 * @param columnFamily column family
 	 * @param auths column visibility
-	 * @return iterator
+	 * @param meterId meter id
+	 * @param columnFamily rolled up column family
+	 * @param granularity granularity, one of the rollup
+	 * @param from start timestamp, the period containing it is included
+	 * @param to end timestamp (exclusive)
+	 * @param aggregation aggregation, one of the rollup
+	 * @return aggregated value per period start
 	 * @throws TableNotFoundException
 	 */
-	public synchronized Iterator<Entry<Key,Value>> scanByFamily(String table, String columnFamily, Authorizations auths) throws TableNotFoundException {
-		Scanner scanner = this.connector.createScanner(table, auths);
-		scanner.fetchColumnFamily(new Text(columnFamily));
-		Iterator<Entry<Key,Value>> iterator = scanner.iterator();
-		scanner.close();
+	public SortedMap<Long, Long> queryRollupSeries(String table, Authorizations auths, String meterId, String columnFamily, Granularity granularity, long from, long to, Aggregation aggregation) throws TableNotFoundException {
+		RollupDefinition rollup = this.getRollup(table, columnFamily, aggregation);
+		if ( !rollup.getGranularities().contains(granularity) )
+			throw new IllegalArgumentException("The rollup of " + columnFamily + " in table " + table + " has no granularity " + granularity + ".");
+
+		SortedMap<Long, Long> series = new TreeMap<>();
+		try ( ScanIterator entries = this.scanRollup(table, auths, rollup, meterId, granularity, granularity.getStart(from), to, aggregation) ) {
+			while ( entries.hasNext() ) {
+				Entry<Key, Value> entry = entries.next();
+				series.put(RollupDefinition.getStart(entry.getKey()), Aggregation.decode(entry.getValue()));
+			}
+		}
 
-		return iterator;
+		return series;
 	}
 
 	/**
-	 * Returns all elements filter by the given range for the row ids.
+	 * Returns the rollup of the given column family with the given
+	 * aggregation.
 	 * @param table table
-	 * @param range row id range
-	 * @return iterator
-	 * @throws TableNotFoundException
+	 * @param columnFamily column family
+	 * @param aggregation aggregation
+	 * @return rollup definition
 	 */
-	public synchronized Iterator<Entry<Key,Value>> scanByKey(String table, Range range) throws TableNotFoundException {
-		return this.scanByKey(table, new Authorizations(), range);
+	private RollupDefinition getRollup(String table, String columnFamily, Aggregation aggregation) {
+		for ( RollupDefinition rollup : this.getRollups(table) )
+			if ( rollup.getColumnFamily().equals(columnFamily) && rollup.getAggregations().contains(aggregation) )
+				return rollup;
+
+		throw new IllegalArgumentException("Table " + table + " has no rollup of " + columnFamily + " with " + aggregation + ".");
 	}
 
 	/**
-	 * Returns all elements filter by the given range for the row ids.
+	 * Aggregates the given window, whose bounds are period starts of the
+	 * finest granularity, with the periods of the given granularity and the
+	 * finer ones for the rest.
+	 * @param granularities granularities, coarsest first
+	 * @param level index of the granularity
+	 */
+	private Long aggregateRollup(String table, Authorizations auths, RollupDefinition rollup, String meterId, long from, long to, Aggregation aggregation, List<Granularity> granularities, int level) throws TableNotFoundException {
+		if ( from >= to )
+			return null;
+
+		Granularity granularity = granularities.get(level);
+		long start = level == granularities.size() - 1 ? from : granularity.getCeiling(from);
+		long end = level == granularities.size() - 1 ? to : granularity.getStart(to);
+		if ( start >= end )
+			return this.aggregateRollup(table, auths, rollup, meterId, from, to, aggregation, granularities, level + 1);
+
+		Long value = null;
+		try ( ScanIterator entries = this.scanRollup(table, auths, rollup, meterId, granularity, start, end, aggregation) ) {
+			while ( entries.hasNext() )
+				value = combine(aggregation, value, Aggregation.decode(entries.next().getValue()));
+		}
+
+		if ( start > from )
+			value = combine(aggregation, value, this.aggregateRollup(table, auths, rollup, meterId, from, start, aggregation, granularities, level + 1));
+		if ( end < to )
+			value = combine(aggregation, value, this.aggregateRollup(table, auths, rollup, meterId, end, to, aggregation, granularities, level + 1));
+		return value;
+	}
+
+	/**
+	 * Scans the periods of the given granularity that start in the given
+	 * window.
+	 */
+	private ScanIterator scanRollup(String table, Authorizations auths, RollupDefinition rollup, String meterId, Granularity granularity, long from, long to, Aggregation aggregation) throws TableNotFoundException {
+		Text row = new Text(meterId);
+		Text family = rollup.getColumnFamily(aggregation);
+		Range range = new Range(new Key(row, family, RollupDefinition.getColumnQualifier(from)), true, new Key(row, family, RollupDefinition.getColumnQualifier(to)), false);
+		return this.scan(rollup.getRollupTable(table, granularity), auths, range, family.toString(), null, Config.getIntegerProperty("accumulo.scanner.batch_size"));
+	}
+
+	/**
+	 * Aggregates the raw readings of the given window, readings that cannot be
+	 * rolled up are skipped.
+	 */
+	private Long aggregateReadings(String table, Authorizations auths, RollupDefinition rollup, String meterId, long from, long to, Aggregation aggregation) throws TableNotFoundException {
+		if ( from >= to )
+			return null;
+
+		ScanIterator entries;
+		if ( rollup.getSchema() == null )
+			entries = this.scan(table, auths, new Range(meterId), rollup.getColumnFamily(), null, Config.getIntegerProperty("accumulo.scanner.batch_size"), Arrays.asList(Filters.timestampRange(from, to - 1)));
+		else
+			entries = this.scanTimeSeries(table, auths, rollup.getSchema(), meterId, from, to - 1, rollup.getColumnFamily());
+
+		Long value = null;
+		try ( ScanIterator iterator = entries ) {
+			while ( iterator.hasNext() ) {
+				Long reading;
+				try {
+					reading = rollup.parse(iterator.next().getValue());
+				}
+				catch ( IllegalArgumentException e ) {
+					continue;
+				}
+				if ( reading != null )
+					value = combine(aggregation, value, aggregation == Aggregation.COUNT ? 1 : reading);
+			}
+		}
+
+		return value;
+	}
+
+	/**
+	 * Combines two aggregated values, either may be <code>null</code>.
+	 */
+	private static Long combine(Aggregation aggregation, Long a, Long b) {
+		if ( a == null )
+			return b;
+		if ( b == null )
+			return a;
+
+		switch ( aggregation ) {
+			case MIN:
+				return Math.min(a, b);
+			case MAX:
+				return Math.max(a, b);
+			default:
+				return a + b;
+		}
+	}
+
+	/**
+	 * Returns the minimum, maximum, average and count of the readings in the
+	 * given range per row, column family and window of the given size, by
+	 * key timestamp. The readings are aggregated on the tablet servers, see
+	 * {@link Downsample}.
 	 * @param table table
 	 * @param auths column visibility
 	 * @param range row id range
-	 * @return iterator
+	 * @param columnFamily column family or <code>null</code> for all
+	 * @param window window size in milliseconds
+	 * @param encoding encoding of the values
+	 * @return windows, newest first per row and column
 	 * @throws TableNotFoundException
 	 */
-	public synchronized Iterator<Entry<Key,Value>> scanByKey(String table, String auths, Range range) throws TableNotFoundException {
-		Authorizations a = new Authorizations(auths);
-		return this.scanByKey(table, a, range);
+	public List<Downsample> downsample(String table, Authorizations auths, Range range, String columnFamily, long window, ValueEncoding encoding) throws TableNotFoundException {
+		return collectDownsamples(this.scan(table, auths, range, columnFamily, null, Config.getIntegerProperty("accumulo.scanner.batch_size"), Arrays.asList(Downsample.getIteratorSetting(window, false, encoding))), true);
 	}
 
 	/**
-	 * Returns all elements filter by the given range for the row ids.
+	 * Returns the minimum, maximum, average and count of the readings in the
+	 * given column family of the given meter between the given timestamps
+	 * (inclusive) per window of the given size. Windows spanning several
+	 * rows of the schema are merged.
 	 * @param table table
 	 * @param auths column visibility
-	 * @param range row id range
-	 * @return iterator
+	 * @param schema time series schema of the table
+	 * @param meterId meter id
+	 * @param from start timestamp
+	 * @param to end timestamp
+	 * @param columnFamily column family
+	 * @param window window size in milliseconds
+	 * @return windows, newest first
 	 * @throws TableNotFoundException
 	 */
-	public synchronized Iterator<Entry<Key,Value>> scanByKey(String table, Authorizations auths, Range range) throws TableNotFoundException {
-		Scanner scanner = this.connector.createScanner(table, auths);
-		scanner.setRange(range);
-		Iterator<Entry<Key,Value>> iterator = scanner.iterator();
-		scanner.close();
+	public List<Downsample> downsampleTimeSeries(String table, Authorizations auths, TimeSeriesSchema schema, String meterId, long from, long to, String columnFamily, long window) throws TableNotFoundException {
+		return collectDownsamples(this.scan(table, auths, schema.getRange(meterId, from, to, columnFamily), columnFamily, null, Config.getIntegerProperty("accumulo.scanner.batch_size"), Arrays.asList(Downsample.getIteratorSetting(window, true, ValueEncoding.STRING))), false);
+	}
 
-		return iterator;
+	/**
+	 * Decodes the downsampled entries and merges consecutive parts of the
+	 * same window.
+	 * @param entries downsampled entries
+	 * @param sameRow only merge windows of the same row
+	 * @return windows
+	 */
+	private static List<Downsample> collectDownsamples(ScanIterator entries, boolean sameRow) {
+		List<Downsample> downsamples = new ArrayList<>();
+		try ( ScanIterator iterator = entries ) {
+			while ( iterator.hasNext() ) {
+				Downsample downsample = Downsample.decode(iterator.next());
+				int last = downsamples.size() - 1;
+				if ( last >= 0 && downsamples.get(last).getStart() == downsample.getStart() && downsamples.get(last).getColumnFamily().equals(downsample.getColumnFamily()) && (!sameRow || downsamples.get(last).getRowId().equals(downsample.getRowId())) )
+					downsamples.set(last, downsamples.get(last).merge(downsample));
+				else
+					downsamples.add(downsample);
+			}
+		}
+
+		return downsamples;
 	}
 
 	/**
@@ -435,7 +1968,7 @@ public class Accumulo implements Serializable {
 	 * @throws MutationsRejectedException
 	 * @throws TableNotFoundException
 	 */
-	public synchronized void addMutation(String table, byte[] rowId, byte[] columnFamily, byte[] columnQualifier, byte[] value) throws MutationsRejectedException, TableNotFoundException {
+	public void addMutation(String table, byte[] rowId, byte[] columnFamily, byte[] columnQualifier, byte[] value) throws MutationsRejectedException, TableNotFoundException {
 		this.addMutation(table, rowId, columnFamily, columnQualifier, null, System.currentTimeMillis(), value);
 	}
 
@@ -449,7 +1982,7 @@ public class Accumulo implements Serializable {
 	 * @throws MutationsRejectedException
 	 * @throws TableNotFoundException
 	 */
-	public synchronized void addMutation(String table, String rowId, String columnFamily, String columnQualifier, byte[] value) throws MutationsRejectedException, TableNotFoundException {
+	public void addMutation(String table, String rowId, String columnFamily, String columnQualifier, byte[] value) throws MutationsRejectedException, TableNotFoundException {
 		this.addMutation(table, rowId, columnFamily, columnQualifier, null, System.currentTimeMillis(), new Value(value));
 	}
 
@@ -463,7 +1996,7 @@ public class Accumulo implements Serializable {
 	 * @throws MutationsRejectedException
 	 * @throws TableNotFoundException
 	 */
-	public synchronized void addMutation(String table, String rowId, String columnFamily, String columnQualifier, Value value) throws MutationsRejectedException, TableNotFoundException {
+	public void addMutation(String table, String rowId, String columnFamily, String columnQualifier, Value value) throws MutationsRejectedException, TableNotFoundException {
 		this.addMutation(table, rowId, columnFamily, columnQualifier, null, System.currentTimeMillis(), value);
 	}
 
@@ -478,7 +2011,7 @@ public class Accumulo implements Serializable {
 	 * @throws MutationsRejectedException
 	 * @throws TableNotFoundException
 	 */
-	public synchronized void addMutation(String table, byte[] rowId, byte[] columnFamily, byte[] columnQualifier, byte[] visibility, byte[] value) throws MutationsRejectedException, TableNotFoundException {
+	public void addMutation(String table, byte[] rowId, byte[] columnFamily, byte[] columnQualifier, byte[] visibility, byte[] value) throws MutationsRejectedException, TableNotFoundException {
 		this.addMutation(table, rowId, columnFamily, columnQualifier, visibility, System.currentTimeMillis(), value);
 	}
 
@@ -493,7 +2026,7 @@ public class Accumulo implements Serializable {
 	 * @throws MutationsRejectedException
 	 * @throws TableNotFoundException
 	 */
-	public synchronized void addMutation(String table, String rowId, String columnFamily, String columnQualifier, String visibility, byte[] value) throws MutationsRejectedException, TableNotFoundException {
+	public void addMutation(String table, String rowId, String columnFamily, String columnQualifier, String visibility, byte[] value) throws MutationsRejectedException, TableNotFoundException {
 		this.addMutation(table, rowId, columnFamily, columnQualifier, visibility, System.currentTimeMillis(), new Value(value));
 	}
 
@@ -508,7 +2041,7 @@ public class Accumulo implements Serializable {
 	 * @throws MutationsRejectedException
 	 * @throws TableNotFoundException
 	 */
-	public synchronized void addMutation(String table, String rowId, String columnFamily, String columnQualifier, String visibility, Value value) throws MutationsRejectedException, TableNotFoundException {
+	public void addMutation(String table, String rowId, String columnFamily, String columnQualifier, String visibility, Value value) throws MutationsRejectedException, TableNotFoundException {
 		this.addMutation(table, rowId, columnFamily, columnQualifier, visibility, System.currentTimeMillis(), value);
 	}
 
@@ -523,7 +2056,7 @@ public class Accumulo implements Serializable {
 	 * @throws MutationsRejectedException
 	 * @throws TableNotFoundException
 	 */
-	public synchronized void addMutation(String table, byte[] rowId, byte[] columnFamily, byte[] columnQualifier, long timestamp, byte[] value) throws MutationsRejectedException, TableNotFoundException {
+	public void addMutation(String table, byte[] rowId, byte[] columnFamily, byte[] columnQualifier, long timestamp, byte[] value) throws MutationsRejectedException, TableNotFoundException {
 		this.addMutation(table, rowId, columnFamily, columnQualifier, null, timestamp, value);
 	}
 
@@ -538,7 +2071,7 @@ public class Accumulo implements Serializable {
 	 * @throws MutationsRejectedException
 	 * @throws TableNotFoundException
 	 */
-	public synchronized void addMutation(String table, String rowId, String columnFamily, String columnQualifier, long timestamp, byte[] value) throws MutationsRejectedException, TableNotFoundException {
+	public void addMutation(String table, String rowId, String columnFamily, String columnQualifier, long timestamp, byte[] value) throws MutationsRejectedException, TableNotFoundException {
 		this.addMutation(table, rowId, columnFamily, columnQualifier, "", timestamp, new Value(value));
 	}
 
@@ -553,7 +2086,7 @@ public class Accumulo implements Serializable {
 	 * @throws MutationsRejectedException
 	 * @throws TableNotFoundException
 	 */
-	public synchronized void addMutation(String table, String rowId, String columnFamily, String columnQualifier, long timestamp, Value value) throws MutationsRejectedException, TableNotFoundException {
+	public void addMutation(String table, String rowId, String columnFamily, String columnQualifier, long timestamp, Value value) throws MutationsRejectedException, TableNotFoundException {
 		this.addMutation(table, rowId, columnFamily, columnQualifier, null, timestamp, value);
 	}
 
@@ -569,18 +2102,12 @@ public class Accumulo implements Serializable {
 	 * @throws MutationsRejectedException
 	 * @throws TableNotFoundException
 	 */
-	public synchronized void addMutation(String table, byte[] rowId, byte[] columnFamily, byte[] columnQualifier, byte[] visibility, long timestamp, byte[] value) throws MutationsRejectedException, TableNotFoundException {
-		if ( !this.batchWriters.containsKey(table) ) {
-			BatchWriterConfig config = new BatchWriterConfig();
-			config.setMaxMemory(Config.getLongProperty("accumulo.batch_writer.max_memory"));
-			this.batchWriters.put(table, this.connector.createBatchWriter(table, config));
-		}
-
-		ColumnVisibility colVis = (visibility == null || visibility.length == 0 ? new ColumnVisibility() : new ColumnVisibility(visibility));
+	public void addMutation(String table, byte[] rowId, byte[] columnFamily, byte[] columnQualifier, byte[] visibility, long timestamp, byte[] value) throws MutationsRejectedException, TableNotFoundException {
+		ColumnVisibility colVis = MutationBuilder.getColumnVisibility(visibility);
 
 		Mutation mutation = new Mutation(rowId);
 		mutation.put(columnFamily, columnQualifier, colVis, timestamp, value);
-		this.batchWriters.get(table).addMutation(mutation);
+		this.write(table, mutation);
 	}
 
 	/**
@@ -595,18 +2122,12 @@ public class Accumulo implements Serializable {
 	 * @throws MutationsRejectedException
 	 * @throws TableNotFoundException
 	 */
-	public synchronized void addMutation(String table, String rowId, String columnFamily, String columnQualifier, String visibility, long timestamp, Value value) throws MutationsRejectedException, TableNotFoundException {
-		if ( !this.batchWriters.containsKey(table) ) {
-			BatchWriterConfig config = new BatchWriterConfig();
-			config.setMaxMemory(Config.getLongProperty("accumulo.batch_writer.max_memory"));
-			this.batchWriters.put(table, this.connector.createBatchWriter(table, config));
-		}
-
-		ColumnVisibility colVis = (visibility == null || visibility.isEmpty() ? new ColumnVisibility() : new ColumnVisibility(visibility));
+	public void addMutation(String table, String rowId, String columnFamily, String columnQualifier, String visibility, long timestamp, Value value) throws MutationsRejectedException, TableNotFoundException {
+		ColumnVisibility colVis = MutationBuilder.getColumnVisibility(visibility);
 
 		Mutation mutation = new Mutation(rowId);
 		mutation.put(columnFamily, columnQualifier, colVis, timestamp, value);
-		this.batchWriters.get(table).addMutation(mutation);
+		this.write(table, mutation);
 	}
 	
 	/**
@@ -616,13 +2137,227 @@ public class Accumulo implements Serializable {
 	 * @throws MutationsRejectedException
 	 * @throws TableNotFoundException
 	 */
-	public synchronized void addMutation(String table, Mutation m) throws MutationsRejectedException, TableNotFoundException{
-		if ( !this.batchWriters.containsKey(table) ) {
-			BatchWriterConfig config = new BatchWriterConfig();
-			config.setMaxMemory(Config.getLongProperty("accumulo.batch_writer.max_memory"));
-			this.batchWriters.put(table, this.connector.createBatchWriter(table, config));
+	public void addMutation(String table, Mutation m) throws MutationsRejectedException, TableNotFoundException{
+		this.write(table, m);
+	}
+
+	/**
+	 * Adds the mutation to the batch writer of the given table and records it
+	 * in the table metrics. The index entries of the mutation are added first,
+	 * so a rejected write leaves at most index entries without row; the rollup
+	 * increments last, so a rejected write is not counted. Rollup increments
+	 * that are written again from a replay buffer can be counted twice, see
+	 * {@link RollupDefinition}. The writers flush independently, see
+	 * {@link #addIndex(String, IndexDefinition)}.
+	 * @param table table
+	 * @param mutation mutation
+	 * @throws MutationsRejectedException
+	 * @throws TableNotFoundException
+	 * @throws IllegalArgumentException if a reading cannot be rolled up, then
+	 * nothing is written
+	 */
+	private void write(String table, Mutation mutation) throws MutationsRejectedException, TableNotFoundException {
+		List<RollupDefinition> tableRollups = this.rollups.get(table);
+		Map<RollupDefinition, Map<Granularity, Mutation>> rollupMutations = null;
+		if ( tableRollups != null ) {
+			rollupMutations = new LinkedHashMap<>();
+			for ( RollupDefinition rollup : tableRollups )
+				rollupMutations.put(rollup, rollup.getRollupMutations(mutation));
+		}
+
+		List<IndexDefinition> tableIndexes = this.indexes.get(table);
+		if ( tableIndexes != null )
+			for ( IndexDefinition index : tableIndexes )
+				for ( Mutation m : index.getIndexMutations(mutation) )
+					this.write(index.getIndexTable(table), m);
+
+		TableMetrics tableMetrics = this.metrics.getTableMetrics(table);
+		BatchWriter writer = this.getBatchWriter(table);
+		boolean replayed = false;
+		try {
+			writer.addMutation(mutation);
+		}
+		catch ( MutationsRejectedException | TimedOutException e ) {
+			tableMetrics.rejected();
+			if ( this.retryPolicy == null )
+				throw e;
+			this.recover(table, writer, e, mutation);
+			replayed = true;
+		}
+		tableMetrics.mutationAdded(mutation.numBytes());
+
+		if ( !replayed && this.retryPolicy != null && this.getReplayBuffer(table).add(mutation) )
+			this.flushBashWriter(table);
+
+		ScanCache c = this.cache;
+		if ( c != null )
+			c.written(table, mutation.getRow());
+
+		if ( rollupMutations != null )
+			for ( Map.Entry<RollupDefinition, Map<Granularity, Mutation>> rollup : rollupMutations.entrySet() )
+				for ( Map.Entry<Granularity, Mutation> m : rollup.getValue().entrySet() )
+					this.write(rollup.getKey().getRollupTable(table, m.getKey()), m.getValue());
+	}
+
+	/**
+	 * Returns the replay buffer of the given table, limited to the memory of
+	 * its batch writer.
+	 * @param table table
+	 * @return replay buffer
+	 */
+	private ReplayBuffer getReplayBuffer(String table) {
+		ReplayBuffer buffer = this.replayBuffers.get(table);
+		if ( buffer == null ) {
+			buffer = new ReplayBuffer(this.getBatchWriterConfig(table).getMaxMemory());
+			ReplayBuffer existing = this.replayBuffers.putIfAbsent(table, buffer);
+			if ( existing != null )
+				buffer = existing;
+		}
+
+		return buffer;
+	}
+
+	/**
+	 * Replaces the failed writer and writes the mutations of its replay
+	 * buffers again. A failed multi table writer affects all tables.
+	 * @param table table or <code>null</code> if a multi table writer failed
+	 * @param failed failed batch writer or multi table batch writer
+	 * @param cause error of the failed writer
+	 * @param mutation mutation that could not be added or <code>null</code>
+	 */
+	private void recover(String table, Object failed, Exception cause, Mutation mutation) {
+		Logger.warn(Accumulo.class, "Batch writer" + (table == null ? "" : " for table " + table) + " failed, writing its mutations again: " + cause);
+
+		List<String> tables = new ArrayList<>();
+		synchronized ( this.batchWriters ) {
+			MultiTableBatchWriter multiTableWriter = this.multiTableBatchWriter;
+			if ( multiTableWriter != null && (failed == multiTableWriter || (table != null && this.batchWriters.get(table) == failed)) ) {
+				this.batchWriters.clear();
+				this.multiTableBatchWriter = null;
+				try {
+					multiTableWriter.close();
+				}
+				catch ( MutationsRejectedException | RuntimeException e ) {}
+				tables.addAll(this.replayBuffers.keySet());
+			}
+			else if ( table != null && this.batchWriters.remove(table, failed) ) {
+				try {
+					((BatchWriter)failed).close();
+				}
+				catch ( MutationsRejectedException | RuntimeException e ) {}
+			}
+		}
+		if ( table != null && !tables.contains(table) )
+			tables.add(table);
+
+		synchronized ( this.recoveryLock ) {
+			for ( String t : tables ) {
+				ReplayBuffer buffer = this.replayBuffers.get(t);
+				List<Mutation> mutations = buffer == null ? new ArrayList<Mutation>() : buffer.drain();
+				if ( mutation != null && t.equals(table) )
+					mutations.add(mutation);
+				this.replay(t, mutations, cause);
+			}
+		}
+	}
+
+	/**
+	 * Writes the mutations with a new batch writer, with backoff and up to
+	 * the maximum number of attempts. Mutations that fail for good are sent
+	 * to the dead letter sink.
+	 * @param table table
+	 * @param mutations mutations
+	 * @param cause error of the failed writer
+	 */
+	private void replay(String table, List<Mutation> mutations, Exception cause) {
+		if ( mutations.isEmpty() )
+			return;
+
+		RetryPolicy policy = this.retryPolicy;
+		TableMetrics tableMetrics = this.metrics.getTableMetrics(table);
+		Exception last = cause;
+		for ( int attempt = 1; policy != null && attempt <= policy.getMaxAttempts() && !isRejectedByTable(last) && !(last instanceof TableNotFoundException); attempt++ ) {
+			try {
+				Thread.sleep(policy.getBackoff(attempt));
+			}
+			catch ( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+
+			tableMetrics.retried();
+			try {
+				this.writeAll(table, mutations);
+				return;
+			}
+			catch ( MutationsRejectedException | TableNotFoundException | RuntimeException e ) {
+				tableMetrics.rejected();
+				last = e;
+			}
+		}
+
+		if ( isRejectedByTable(last) ) {
+			for ( Mutation mutation : mutations ) {
+				try {
+					this.writeAll(table, Collections.singletonList(mutation));
+				}
+				catch ( MutationsRejectedException | TableNotFoundException | RuntimeException e ) {
+					this.deadLetter(table, Collections.singletonList(mutation), e);
+				}
+			}
+		}
+		else
+			this.deadLetter(table, mutations, last);
+	}
+
+	/**
+	 * Writes the mutations with a new batch writer and closes it.
+	 * @param table table
+	 * @param mutations mutations
+	 * @throws MutationsRejectedException
+	 * @throws TableNotFoundException
+	 */
+	private void writeAll(String table, List<Mutation> mutations) throws MutationsRejectedException, TableNotFoundException {
+		BatchWriter writer = this.connector.createBatchWriter(table, this.getBatchWriterConfig(table));
+		try {
+			writer.addMutations(mutations);
+		}
+		finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Sends the mutations to the dead letter sink.
+	 * @param table table
+	 * @param mutations mutations
+	 * @param cause last error
+	 */
+	private void deadLetter(String table, List<Mutation> mutations, Exception cause) {
+		this.metrics.getTableMetrics(table).deadLettered(mutations.size());
+		DeadLetterSink sink = this.deadLetterSink;
+		for ( Mutation mutation : mutations ) {
+			try {
+				sink.accept(table, mutation, cause);
+			}
+			catch ( RuntimeException e ) {
+				Logger.error(Accumulo.class, "Dead letter sink failed: " + e);
+			}
 		}
-		this.batchWriters.get(table).addMutation(m);
+	}
+
+	/**
+	 * Returns whether the mutations were rejected by a constraint or for
+	 * missing authorizations rather than because of a server failure.
+	 * @param e error
+	 * @return rejected by the table
+	 */
+	private static boolean isRejectedByTable(Exception e) {
+		if ( !(e instanceof MutationsRejectedException) )
+			return false;
+
+		MutationsRejectedException rejected = (MutationsRejectedException)e;
+		return !rejected.getConstraintViolationSummaries().isEmpty() || !rejected.getAuthorizationFailuresMap().isEmpty();
 	}
 
 	/**
@@ -633,7 +2368,7 @@ public class Accumulo implements Serializable {
 	 * @param value
 	 * @return Mutation
 	 */
-	public synchronized Mutation newMutation(String rowId, String columnFamily, String columnQualifier, Value value){
+	public Mutation newMutation(String rowId, String columnFamily, String columnQualifier, Value value){
 		return this.newMutation(rowId, columnFamily, columnQualifier, null, System.currentTimeMillis(), value);
 	}
 
@@ -645,7 +2380,7 @@ public class Accumulo implements Serializable {
 	 * @param value
 	 * @return Mutation
 	 */
-	public synchronized Mutation newMutation(String rowId, String columnFamily, String columnQualifier, byte[] value){
+	public Mutation newMutation(String rowId, String columnFamily, String columnQualifier, byte[] value){
 		return this.newMutation(rowId, columnFamily, columnQualifier, null, System.currentTimeMillis(), value);
 	}
 
@@ -657,7 +2392,7 @@ public class Accumulo implements Serializable {
 	 * @param value
 	 * @return Mutation
 	 */
-	public synchronized Mutation newMutation(byte[] rowId, byte[] columnFamily, byte[] columnQualifier, byte[] value){
+	public Mutation newMutation(byte[] rowId, byte[] columnFamily, byte[] columnQualifier, byte[] value){
 		return this.newMutation(rowId, columnFamily, columnQualifier, null, System.currentTimeMillis(), value);
 	}
 
@@ -670,7 +2405,7 @@ public class Accumulo implements Serializable {
 	 * @param value
 	 * @return Mutation
 	 */
-	public synchronized Mutation newMutation(String rowId, String columnFamily, String columnQualifier, String visibility, Value value){
+	public Mutation newMutation(String rowId, String columnFamily, String columnQualifier, String visibility, Value value){
 		return this.newMutation(rowId, columnFamily, columnQualifier, visibility, System.currentTimeMillis(), value);
 	}
 
@@ -683,7 +2418,7 @@ public class Accumulo implements Serializable {
 	 * @param value
 	 * @return Mutation
 	 */
-	public synchronized Mutation newMutation(String rowId, String columnFamily, String columnQualifier, String visibility, byte[] value){
+	public Mutation newMutation(String rowId, String columnFamily, String columnQualifier, String visibility, byte[] value){
 		return this.newMutation(rowId, columnFamily, columnQualifier, visibility, System.currentTimeMillis(), value);
 	}
 
@@ -696,7 +2431,7 @@ public class Accumulo implements Serializable {
 	 * @param value
 	 * @return Mutation
 	 */
-	public synchronized Mutation newMutation(byte[] rowId, byte[] columnFamily, byte[] columnQualifier, byte[] visibility, byte[] value){
+	public Mutation newMutation(byte[] rowId, byte[] columnFamily, byte[] columnQualifier, byte[] visibility, byte[] value){
 		return this.newMutation(rowId, columnFamily, columnQualifier, visibility, System.currentTimeMillis(), value);
 	}
 
@@ -709,7 +2444,7 @@ public class Accumulo implements Serializable {
 	 * @param value
 	 * @return Mutation
 	 */
-	public synchronized Mutation newMutation(String rowId, String columnFamily, String columnQualifier, long timestamp, Value value){
+	public Mutation newMutation(String rowId, String columnFamily, String columnQualifier, long timestamp, Value value){
 		return this.newMutation(rowId, columnFamily, columnQualifier, null, timestamp, value);
 	}
 
@@ -722,7 +2457,7 @@ public class Accumulo implements Serializable {
 	 * @param value
 	 * @return Mutation
 	 */
-	public synchronized Mutation newMutation(String rowId, String columnFamily, String columnQualifier, long timestamp, byte[] value){
+	public Mutation newMutation(String rowId, String columnFamily, String columnQualifier, long timestamp, byte[] value){
 		return this.newMutation(rowId, columnFamily, columnQualifier, null, timestamp, value);
 	}
 
@@ -735,7 +2470,7 @@ public class Accumulo implements Serializable {
 	 * @param value
 	 * @return Mutation
 	 */
-	public synchronized Mutation newMutation(byte[] rowId, byte[] columnFamily, byte[] columnQualifier, long timestamp, byte[] value){
+	public Mutation newMutation(byte[] rowId, byte[] columnFamily, byte[] columnQualifier, long timestamp, byte[] value){
 		return this.newMutation(rowId, columnFamily, columnQualifier, null, timestamp, value);
 	}
 
@@ -749,9 +2484,9 @@ public class Accumulo implements Serializable {
 	 * @param value
 	 * @return Mutation
 	 */
-	public synchronized Mutation newMutation(String rowId, String columnFamily, String columnQualifier, String visibility, long timestamp, Value value){
+	public Mutation newMutation(String rowId, String columnFamily, String columnQualifier, String visibility, long timestamp, Value value){
 		Mutation m = new Mutation(rowId);
-		ColumnVisibility colVis = (visibility == null ? new ColumnVisibility() : new ColumnVisibility(visibility));
+		ColumnVisibility colVis = MutationBuilder.getColumnVisibility(visibility);
 		m.put(columnFamily, columnQualifier, colVis, timestamp, value);
 		return m;
 	}
@@ -766,9 +2501,9 @@ public class Accumulo implements Serializable {
 	 * @param value
 	 * @return Mutation
 	 */
-	public synchronized Mutation newMutation(String rowId, String columnFamily, String columnQualifier, String visibility, long timestamp, byte[] value){
+	public Mutation newMutation(String rowId, String columnFamily, String columnQualifier, String visibility, long timestamp, byte[] value){
 		Mutation m = new Mutation(rowId);
-		ColumnVisibility colVis = (visibility == null ? new ColumnVisibility() : new ColumnVisibility(visibility));
+		ColumnVisibility colVis = MutationBuilder.getColumnVisibility(visibility);
 		m.put(columnFamily, columnQualifier, colVis, timestamp, new Value(value));
 		return m;
 	}
@@ -783,9 +2518,9 @@ public class Accumulo implements Serializable {
 	 * @param value
 	 * @return Mutation
 	 */
-	public synchronized Mutation newMutation(byte[] rowId, byte[] columnFamily, byte[] columnQualifier, byte[] visibility, long timestamp, byte[] value){
+	public Mutation newMutation(byte[] rowId, byte[] columnFamily, byte[] columnQualifier, byte[] visibility, long timestamp, byte[] value){
 		Mutation m = new Mutation(rowId);
-		ColumnVisibility colVis = (visibility == null || visibility.length == 0 ? new ColumnVisibility() : new ColumnVisibility(visibility));
+		ColumnVisibility colVis = MutationBuilder.getColumnVisibility(visibility);
 		m.put(columnFamily, columnQualifier, colVis, timestamp, value);
 		return m;
 	}
@@ -799,9 +2534,8 @@ public class Accumulo implements Serializable {
 	 * @param value
 	 * @return Mutation
 	 */
-	public synchronized Mutation putToMutation(Mutation m, String columnFamily, String columnQualifier, long timestamp, Value value){
-		ColumnVisibility colVis = new ColumnVisibility();
-		m.put(columnFamily, columnQualifier, colVis, timestamp, value);
+	public Mutation putToMutation(Mutation m, String columnFamily, String columnQualifier, long timestamp, Value value){
+		m.put(columnFamily, columnQualifier, MutationBuilder.EMPTY_VISIBILITY, timestamp, value);
 		return m;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,122 @@
+package org.sensoriclife.db;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.MutationsRejectedException;
+
+/**
+ * Shares connected clients per instance, ZooKeeper servers and user, so one
+ * JVM can talk to several clusters or as several users at once while every
+ * combination holds only one connector and one set of batch writers. The
+ * password is only used to connect a new client.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public final class AccumuloFactory {
+	/**
+	 * connected clients by key
+	 */
+	private static final ConcurrentMap<String, Accumulo> clients = new ConcurrentHashMap<>();
+
+	private AccumuloFactory() {}
+
+	/**
+	 * Returns the client for the given cluster and user, connecting a new
+	 * one if there is none.
+	 * @param instanceName instance name
+	 * @param zooServers zoo servers
+	 * @param user user
+	 * @param password password
+	 * @return client
+	 * @throws AccumuloException
+	 * @throws AccumuloSecurityException
+	 */
+	public static Accumulo getClient(String instanceName, String zooServers, String user, String password) throws AccumuloException, AccumuloSecurityException {
+		String key = getKey(instanceName, zooServers, user);
+		Accumulo client = clients.get(key);
+		if ( client != null )
+			return client;
+
+		synchronized ( clients ) {
+			client = clients.get(key);
+			if ( client == null ) {
+				client = new Accumulo(key);
+				client.connect(instanceName, zooServers, user, password);
+				clients.put(key, client);
+			}
+		}
+
+		return client;
+	}
+
+	/**
+	 * Returns the client for the given mock instance, connecting a new one if
+	 * there is none.
+	 * @param instanceName instance name
+	 * @return client
+	 * @throws AccumuloException
+	 * @throws AccumuloSecurityException
+	 */
+	public static Accumulo getMockClient(String instanceName) throws AccumuloException, AccumuloSecurityException {
+		String key = getKey(instanceName, "mock", "");
+		Accumulo client = clients.get(key);
+		if ( client != null )
+			return client;
+
+		synchronized ( clients ) {
+			client = clients.get(key);
+			if ( client == null ) {
+				client = new Accumulo(key);
+				client.connect(instanceName);
+				clients.put(key, client);
+			}
+		}
+
+		return client;
+	}
+
+	/**
+	 * Disconnects the given client and removes it from the factory.
+	 * @param client client
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @throws MutationsRejectedException
+	 */
+	public static void close(Accumulo client) throws IOException, InterruptedException, MutationsRejectedException {
+		clients.remove(client.getName(), client);
+		client.disconnect();
+	}
+
+	/**
+	 * Disconnects all clients of the factory.
+	 * @throws IOException
+	 * @throws InterruptedException
+	 * @throws MutationsRejectedException
+	 */
+	public static void closeAll() throws IOException, InterruptedException, MutationsRejectedException {
+		List<Accumulo> all;
+		synchronized ( clients ) {
+			all = new ArrayList<>(clients.values());
+			clients.clear();
+		}
+
+		for ( Accumulo client : all )
+			client.disconnect();
+	}
+
+	/**
+	 * Returns the key of the given cluster and user.
+	 * @param instanceName instance name
+	 * @param zooServers zoo servers
+	 * @param user user
+	 * @return key
+	 */
+	private static String getKey(String instanceName, String zooServers, String user) {
+		return user + "@" + instanceName + "/" + zooServers;
+	}
+}
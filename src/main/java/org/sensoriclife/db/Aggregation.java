@@ -0,0 +1,90 @@
+package org.sensoriclife.db;
+
+import java.util.List;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.Combiner;
+import org.apache.accumulo.core.iterators.LongCombiner;
+import org.apache.accumulo.core.iterators.user.MaxCombiner;
+import org.apache.accumulo.core.iterators.user.MinCombiner;
+import org.apache.accumulo.core.iterators.user.SummingCombiner;
+
+/**
+ * Server-side aggregations for column families. Values of aggregated columns
+ * are variable length encoded longs, so fractional readings have to be stored
+ * in a fixed unit (e.g. Wh instead of kWh).
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public enum Aggregation {
+	SUM(SummingCombiner.class),
+	MIN(MinCombiner.class),
+	MAX(MaxCombiner.class),
+	/**
+	 * counts the readings, every reading is stored as 1 and summed up
+	 */
+	COUNT(SummingCombiner.class);
+
+	/**
+	 * base priority of the combiners, each aggregation adds its ordinal; all
+	 * stay below the versioning iterator (20) so every version is combined
+	 */
+	public static final int PRIORITY = 10;
+	/**
+	 * combiner class
+	 */
+	private final Class<? extends LongCombiner> combiner;
+
+	private Aggregation(Class<? extends LongCombiner> combiner) {
+		this.combiner = combiner;
+	}
+
+	/**
+	 * Returns the iterator setting that applies this aggregation to the
+	 * given columns.
+	 * @param columns columns
+	 * @return iterator setting
+	 */
+	public IteratorSetting getIteratorSetting(List<IteratorSetting.Column> columns) {
+		IteratorSetting setting = new IteratorSetting(PRIORITY + this.ordinal(), this.name().toLowerCase(), this.combiner);
+		LongCombiner.setEncodingType(setting, LongCombiner.Type.VARLEN);
+		Combiner.setColumns(setting, columns);
+		return setting;
+	}
+
+	/**
+	 * Returns the value to store for the given reading.
+	 * @param value reading
+	 * @return value
+	 */
+	public Value toValue(long value) {
+		return new Value(encode(this == COUNT ? 1 : value));
+	}
+
+	/**
+	 * Encodes the given long.
+	 * @param value long
+	 * @return encoded value
+	 */
+	public static byte[] encode(long value) {
+		return LongCombiner.VAR_LEN_ENCODER.encode(value);
+	}
+
+	/**
+	 * Decodes the given value.
+	 * @param value value
+	 * @return long
+	 */
+	public static long decode(Value value) {
+		return LongCombiner.VAR_LEN_ENCODER.decode(value.get());
+	}
+
+	/**
+	 * Decodes the given bytes.
+	 * @param value bytes
+	 * @return long
+	 */
+	public static long decode(byte[] value) {
+		return LongCombiner.VAR_LEN_ENCODER.decode(value);
+	}
+}
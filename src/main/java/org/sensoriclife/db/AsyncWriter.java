@@ -0,0 +1,580 @@
+package org.sensoriclife.db;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.accumulo.core.client.MutationsRejectedException;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.Mutation;
+import org.sensoriclife.Logger;
+
+/**
+ * Decouples producers from the batch writers. Mutations are put into a
+ * bounded ring buffer and written by worker threads, so producers only wait
+ * for the buffer and never for a flush. What happens when the buffer is full
+ * is decided by the {@link OverflowPolicy}. Flushes are acknowledged
+ * asynchronously with a {@link FlushFuture} once every mutation added before
+ * the flush is written and the batch writers are flushed.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class AsyncWriter implements AutoCloseable {
+	/**
+	 * What to do with a new mutation when the buffer is full.
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * wait until there is space
+		 */
+		BLOCK,
+		/**
+		 * drop the oldest buffered mutation
+		 */
+		DROP_OLDEST,
+		/**
+		 * throw a {@link RejectedExecutionException}
+		 */
+		FAIL_FAST
+	}
+
+	/**
+	 * Called when a flush is done.
+	 */
+	public interface Callback {
+		/**
+		 * Called when the flush succeeded.
+		 */
+		void onSuccess();
+
+		/**
+		 * Called when a mutation covered by the flush or the flush itself
+		 * failed.
+		 * @param e first error
+		 */
+		void onFailure(Exception e);
+	}
+
+	/**
+	 * Result of a flush. It is done once every mutation added before the
+	 * flush is written and the batch writers are flushed, and fails with the
+	 * first error since the previous flush.
+	 */
+	public static class FlushFuture implements Future<Void> {
+		/**
+		 * sequence number of the last covered mutation
+		 */
+		private final long sequence;
+		/**
+		 * released when done
+		 */
+		private final CountDownLatch done;
+		/**
+		 * callbacks to call when done
+		 */
+		private final List<Callback> callbacks;
+		/**
+		 * error, <code>null</code> on success
+		 */
+		private volatile Exception error;
+		/**
+		 * completed, the callbacks are called before the future is done
+		 */
+		private boolean completed;
+
+		private FlushFuture(long sequence) {
+			this.sequence = sequence;
+			this.done = new CountDownLatch(1);
+			this.callbacks = new ArrayList<>();
+			this.error = null;
+			this.completed = false;
+		}
+
+		/**
+		 * Adds a callback which is called when the flush is done, immediately
+		 * if it is done already.
+		 * @param callback callback
+		 * @return this future
+		 */
+		public FlushFuture addCallback(Callback callback) {
+			synchronized ( this.callbacks ) {
+				if ( !this.completed ) {
+					this.callbacks.add(callback);
+					return this;
+				}
+			}
+
+			this.call(callback);
+			return this;
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			return false;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
+
+		@Override
+		public boolean isDone() {
+			return this.done.getCount() == 0;
+		}
+
+		@Override
+		public Void get() throws InterruptedException, ExecutionException {
+			this.done.await();
+			return this.result();
+		}
+
+		@Override
+		public Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+			if ( !this.done.await(timeout, unit) )
+				throw new TimeoutException();
+
+			return this.result();
+		}
+
+		private Void result() throws ExecutionException {
+			if ( this.error != null )
+				throw new ExecutionException(this.error);
+
+			return null;
+		}
+
+		private void complete(Exception error) {
+			List<Callback> toCall;
+			synchronized ( this.callbacks ) {
+				this.error = error;
+				this.completed = true;
+				toCall = new ArrayList<>(this.callbacks);
+				this.callbacks.clear();
+			}
+
+			for ( Callback callback : toCall )
+				this.call(callback);
+			this.done.countDown();
+		}
+
+		private void call(Callback callback) {
+			try {
+				if ( this.error == null )
+					callback.onSuccess();
+				else
+					callback.onFailure(this.error);
+			}
+			catch ( RuntimeException e ) {
+				Logger.error(AsyncWriter.class, "Flush callback failed: " + e);
+			}
+		}
+	}
+
+	/**
+	 * Buffered mutation.
+	 */
+	private static class Task {
+		private final String table;
+		private final Mutation mutation;
+		private final long sequence;
+
+		private Task(String table, Mutation mutation, long sequence) {
+			this.table = table;
+			this.mutation = mutation;
+			this.sequence = sequence;
+		}
+	}
+
+	/**
+	 * Accumulo
+	 */
+	private final Accumulo accumulo;
+	/**
+	 * overflow policy
+	 */
+	private final OverflowPolicy policy;
+	/**
+	 * ring buffer
+	 */
+	private final Task[] buffer;
+	/**
+	 * guards the buffer, the sequence numbers and the pending flushes
+	 */
+	private final ReentrantLock lock;
+	/**
+	 * signalled when the buffer is not empty
+	 */
+	private final Condition notEmpty;
+	/**
+	 * signalled when the buffer is not full
+	 */
+	private final Condition notFull;
+	/**
+	 * sequence number of the mutation each worker is writing,
+	 * <code>Long.MAX_VALUE</code> for none
+	 */
+	private final long[] inFlight;
+	/**
+	 * flushes waiting for their mutations, in order
+	 */
+	private final Queue<FlushFuture> flushes;
+	/**
+	 * workers
+	 */
+	private final Thread[] workers;
+	/**
+	 * number of written mutations
+	 */
+	private final AtomicLong written;
+	/**
+	 * number of dropped mutations
+	 */
+	private final AtomicLong dropped;
+	/**
+	 * number of failed mutations
+	 */
+	private final AtomicLong failed;
+	/**
+	 * index of the oldest buffered mutation
+	 */
+	private int head;
+	/**
+	 * number of buffered mutations
+	 */
+	private int count;
+	/**
+	 * sequence number of the next mutation
+	 */
+	private long nextSequence;
+	/**
+	 * first error since the last flush
+	 */
+	private Exception error;
+	/**
+	 * closed
+	 */
+	private boolean closed;
+
+	/**
+	 * @param accumulo Accumulo to write to
+	 * @param capacity buffer capacity in mutations
+	 * @param threads number of worker threads
+	 * @param policy overflow policy
+	 */
+	public AsyncWriter(Accumulo accumulo, int capacity, int threads, OverflowPolicy policy) {
+		if ( capacity <= 0 )
+			throw new IllegalArgumentException("The capacity must be positive.");
+		if ( threads <= 0 )
+			throw new IllegalArgumentException("The number of threads must be positive.");
+
+		this.accumulo = accumulo;
+		this.policy = policy;
+		this.buffer = new Task[capacity];
+		this.lock = new ReentrantLock();
+		this.notEmpty = this.lock.newCondition();
+		this.notFull = this.lock.newCondition();
+		this.inFlight = new long[threads];
+		Arrays.fill(this.inFlight, Long.MAX_VALUE);
+		this.flushes = new ArrayDeque<>();
+		this.written = new AtomicLong();
+		this.dropped = new AtomicLong();
+		this.failed = new AtomicLong();
+		this.head = 0;
+		this.count = 0;
+		this.nextSequence = 0;
+		this.error = null;
+		this.closed = false;
+
+		this.workers = new Thread[threads];
+		for ( int i = 0; i < threads; i++ ) {
+			final int worker = i;
+			this.workers[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					AsyncWriter.this.work(worker);
+				}
+			}, "async-writer-" + i);
+			this.workers[i].setDaemon(true);
+			this.workers[i].start();
+		}
+	}
+
+	/**
+	 * @return the overflow policy
+	 */
+	public OverflowPolicy getPolicy() {
+		return this.policy;
+	}
+
+	/**
+	 * @return the number of buffered mutations
+	 */
+	public int getQueued() {
+		this.lock.lock();
+		try {
+			return this.count;
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the number of written mutations
+	 */
+	public long getWritten() {
+		return this.written.get();
+	}
+
+	/**
+	 * @return the number of mutations dropped by {@link OverflowPolicy#DROP_OLDEST}
+	 */
+	public long getDropped() {
+		return this.dropped.get();
+	}
+
+	/**
+	 * @return the number of mutations that could not be written
+	 */
+	public long getFailed() {
+		return this.failed.get();
+	}
+
+	/**
+	 * Adds the mutation to the buffer.
+	 * @param table table
+	 * @param mutation mutation
+	 * @throws InterruptedException if interrupted while waiting for space
+	 * @throws RejectedExecutionException if the buffer is full and the policy is {@link OverflowPolicy#FAIL_FAST}
+	 */
+	public void addMutation(String table, Mutation mutation) throws InterruptedException {
+		this.lock.lockInterruptibly();
+		try {
+			if ( this.closed )
+				throw new IllegalStateException("The async writer is closed.");
+
+			if ( this.count == this.buffer.length ) {
+				switch ( this.policy ) {
+					case BLOCK:
+						while ( this.count == this.buffer.length && !this.closed )
+							this.notFull.await();
+						if ( this.closed )
+							throw new IllegalStateException("The async writer is closed.");
+						break;
+					case DROP_OLDEST:
+						this.dequeue();
+						this.dropped.incrementAndGet();
+						break;
+					case FAIL_FAST:
+						throw new RejectedExecutionException("The async writer buffer is full.");
+				}
+			}
+
+			this.buffer[(this.head + this.count) % this.buffer.length] = new Task(table, mutation, this.nextSequence++);
+			this.count++;
+			this.notEmpty.signal();
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	/**
+	 * Flushes every mutation added so far. The returned future is done once
+	 * they are written and the batch writers are flushed. If everything is
+	 * written already the batch writers are flushed by the calling thread.
+	 * @return flush future
+	 */
+	public FlushFuture flush() {
+		FlushFuture future;
+		List<FlushFuture> ready;
+		Exception e;
+
+		this.lock.lock();
+		try {
+			future = new FlushFuture(this.nextSequence - 1);
+			this.flushes.add(future);
+			ready = this.getReadyFlushes();
+			e = this.takeError(ready);
+		}
+		finally {
+			this.lock.unlock();
+		}
+
+		this.complete(ready, e);
+		return future;
+	}
+
+	/**
+	 * Flushes the buffer, waits until it is written and stops the workers.
+	 * Further mutations are rejected.
+	 * @throws InterruptedException
+	 * @throws ExecutionException if the final flush failed
+	 */
+	@Override
+	public void close() throws InterruptedException, ExecutionException {
+		this.lock.lock();
+		try {
+			if ( this.closed )
+				return;
+
+			this.closed = true;
+			this.notEmpty.signalAll();
+			this.notFull.signalAll();
+		}
+		finally {
+			this.lock.unlock();
+		}
+
+		try {
+			this.flush().get();
+		}
+		finally {
+			for ( Thread worker : this.workers )
+				worker.join();
+		}
+	}
+
+	/**
+	 * Writes the mutation, overwrite to write somewhere else.
+	 * @param table table
+	 * @param mutation mutation
+	 * @throws MutationsRejectedException
+	 * @throws TableNotFoundException
+	 */
+	protected void write(String table, Mutation mutation) throws MutationsRejectedException, TableNotFoundException {
+		this.accumulo.addMutation(table, mutation);
+	}
+
+	/**
+	 * Worker loop, writes buffered mutations until the writer is closed and
+	 * the buffer is empty.
+	 * @param worker index of the worker
+	 */
+	private void work(int worker) {
+		while ( true ) {
+			Task task;
+			this.lock.lock();
+			try {
+				while ( this.count == 0 && !this.closed )
+					this.notEmpty.awaitUninterruptibly();
+				if ( this.count == 0 )
+					return;
+
+				task = this.dequeue();
+				this.inFlight[worker] = task.sequence;
+				this.notFull.signal();
+			}
+			finally {
+				this.lock.unlock();
+			}
+
+			Exception e = null;
+			try {
+				this.write(task.table, task.mutation);
+				this.written.incrementAndGet();
+			}
+			catch ( MutationsRejectedException | TableNotFoundException | RuntimeException ex ) {
+				this.failed.incrementAndGet();
+				Logger.error(AsyncWriter.class, "Could not write mutation to table " + task.table + ": " + ex);
+				e = ex;
+			}
+
+			List<FlushFuture> ready;
+			this.lock.lock();
+			try {
+				this.inFlight[worker] = Long.MAX_VALUE;
+				if ( e != null && this.error == null )
+					this.error = e;
+				ready = this.getReadyFlushes();
+				e = this.takeError(ready);
+			}
+			finally {
+				this.lock.unlock();
+			}
+
+			this.complete(ready, e);
+		}
+	}
+
+	/**
+	 * Removes and returns the oldest buffered mutation. The lock has to be
+	 * held.
+	 * @return oldest mutation
+	 */
+	private Task dequeue() {
+		Task task = this.buffer[this.head];
+		this.buffer[this.head] = null;
+		this.head = (this.head + 1) % this.buffer.length;
+		this.count--;
+		return task;
+	}
+
+	/**
+	 * Removes and returns the flushes whose mutations are all written. The
+	 * lock has to be held.
+	 * @return flushes
+	 */
+	private List<FlushFuture> getReadyFlushes() {
+		if ( this.flushes.isEmpty() )
+			return new ArrayList<>(0);
+
+		long lowest = this.count > 0 ? this.buffer[this.head].sequence : this.nextSequence;
+		for ( long sequence : this.inFlight )
+			lowest = Math.min(lowest, sequence);
+
+		List<FlushFuture> ready = new ArrayList<>();
+		while ( !this.flushes.isEmpty() && this.flushes.peek().sequence < lowest )
+			ready.add(this.flushes.poll());
+
+		return ready;
+	}
+
+	/**
+	 * Returns and resets the first error since the last flush if there are
+	 * flushes to complete. The lock has to be held.
+	 * @param ready flushes to complete
+	 * @return error or <code>null</code>
+	 */
+	private Exception takeError(List<FlushFuture> ready) {
+		if ( ready.isEmpty() )
+			return null;
+
+		Exception e = this.error;
+		this.error = null;
+		return e;
+	}
+
+	/**
+	 * Flushes the batch writers and completes the given flushes.
+	 * @param ready flushes
+	 * @param error first error of the covered mutations or <code>null</code>
+	 */
+	private void complete(List<FlushFuture> ready, Exception error) {
+		if ( ready.isEmpty() )
+			return;
+
+		try {
+			this.accumulo.flushBashWriters();
+		}
+		catch ( MutationsRejectedException | RuntimeException e ) {
+			Logger.error(AsyncWriter.class, "Could not flush batch writers: " + e);
+			if ( error == null )
+				error = e;
+		}
+
+		for ( FlushFuture future : ready )
+			future.complete(error);
+	}
+}
@@ -0,0 +1,124 @@
+package org.sensoriclife.db;
+
+import java.util.Map.Entry;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.sensoriclife.util.BlockDecoder;
+
+/**
+ * Streams the readings of the blocks written by {@link BlockWriter}, one at a
+ * time and without allocating per reading:
+ * <pre>
+ * while ( reader.next() )
+ *     use(reader.getMeterId(), reader.getTimestamp(), reader.getValue());
+ * </pre>
+ * Blocks are returned in scan order, newest first, the readings of a block
+ * oldest first. Readings outside of the given window are skipped.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class BlockReader implements AutoCloseable {
+	/**
+	 * scanned blocks
+	 */
+	private final ScanIterator entries;
+	/**
+	 * schema
+	 */
+	private final TimeSeriesSchema schema;
+	/**
+	 * start timestamp
+	 */
+	private final long from;
+	/**
+	 * end timestamp
+	 */
+	private final long to;
+	/**
+	 * decoder of the current block
+	 */
+	private BlockDecoder decoder;
+	/**
+	 * key of the current block
+	 */
+	private Key key;
+	/**
+	 * meter id of the current block, decoded on demand
+	 */
+	private String meterId;
+
+	/**
+	 * @param entries scanned blocks
+	 * @param schema schema
+	 * @param from start timestamp (inclusive)
+	 * @param to end timestamp (inclusive)
+	 */
+	public BlockReader(ScanIterator entries, TimeSeriesSchema schema, long from, long to) {
+		this.entries = entries;
+		this.schema = schema;
+		this.from = from;
+		this.to = to;
+		this.decoder = null;
+		this.key = null;
+		this.meterId = null;
+	}
+
+	/**
+	 * Moves to the next reading.
+	 * @return <code>false</code> if there are no more readings
+	 */
+	public boolean next() {
+		while ( true ) {
+			if ( this.decoder != null ) {
+				while ( this.decoder.next() ) {
+					long timestamp = this.decoder.getTimestamp();
+					if ( timestamp > this.to )
+						break;
+					if ( timestamp >= this.from )
+						return true;
+				}
+			}
+
+			if ( !this.entries.hasNext() ) {
+				this.decoder = null;
+				return false;
+			}
+
+			Entry<Key, Value> entry = this.entries.next();
+			this.key = entry.getKey();
+			this.meterId = null;
+			this.decoder = new BlockDecoder(entry.getValue().get());
+		}
+	}
+
+	/**
+	 * @return the meter id of the current reading
+	 */
+	public String getMeterId() {
+		if ( this.meterId == null )
+			this.meterId = this.schema.getMeterId(this.key.getRow().toString());
+		return this.meterId;
+	}
+
+	/**
+	 * @return the timestamp of the current reading
+	 */
+	public long getTimestamp() {
+		return this.decoder.getTimestamp();
+	}
+
+	/**
+	 * @return the value of the current reading
+	 */
+	public double getValue() {
+		return this.decoder.getValue();
+	}
+
+	/**
+	 * Closes the scan.
+	 */
+	@Override
+	public void close() {
+		this.entries.close();
+	}
+}
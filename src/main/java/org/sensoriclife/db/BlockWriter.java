@@ -0,0 +1,143 @@
+package org.sensoriclife.db;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.accumulo.core.client.MutationsRejectedException;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.sensoriclife.util.BlockEncoder;
+
+/**
+ * Collects the readings of each meter into compressed blocks, one cell per
+ * meter and time window instead of one cell per reading. A block is written
+ * when a reading of the next window arrives, when a reading is older than the
+ * last one of the block or when the block is full. The cell is stored in the
+ * row and under the column qualifier of the first reading of the block as
+ * given by the {@link TimeSeriesSchema}, its timestamp is the one of the last
+ * reading. Blocks should get a column family of their own, they are read with
+ * {@link BlockReader}. A writer is not thread-safe, use one per thread.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class BlockWriter implements AutoCloseable {
+	/**
+	 * accumulo
+	 */
+	private final Accumulo accumulo;
+	/**
+	 * table
+	 */
+	private final String table;
+	/**
+	 * schema
+	 */
+	private final TimeSeriesSchema schema;
+	/**
+	 * column family of the blocks
+	 */
+	private final String columnFamily;
+	/**
+	 * window size in milliseconds
+	 */
+	private final long window;
+	/**
+	 * maximum number of readings per block
+	 */
+	private final int maxPoints;
+	/**
+	 * open blocks by meter id
+	 */
+	private final Map<String, Block> blocks;
+
+	/**
+	 * @param accumulo accumulo
+	 * @param table table
+	 * @param schema schema
+	 * @param columnFamily column family of the blocks
+	 * @param window window size in milliseconds, has to divide the bucket size of the schema
+	 * @param maxPoints maximum number of readings per block
+	 */
+	public BlockWriter(Accumulo accumulo, String table, TimeSeriesSchema schema, String columnFamily, long window, int maxPoints) {
+		if ( window <= 0 || schema.getBucketSize() % window != 0 )
+			throw new IllegalArgumentException("The window size must be positive and divide the bucket size.");
+		if ( maxPoints <= 0 )
+			throw new IllegalArgumentException("The maximum number of readings must be positive.");
+
+		this.accumulo = accumulo;
+		this.table = table;
+		this.schema = schema;
+		this.columnFamily = columnFamily;
+		this.window = window;
+		this.maxPoints = maxPoints;
+		this.blocks = new HashMap<>();
+	}
+
+	/**
+	 * Adds a reading to the block of the given meter.
+	 * @param meterId meter id
+	 * @param timestamp timestamp
+	 * @param value value
+	 * @throws MutationsRejectedException
+	 * @throws TableNotFoundException
+	 */
+	public void add(String meterId, long timestamp, double value) throws MutationsRejectedException, TableNotFoundException {
+		long start = timestamp - timestamp % this.window;
+		Block block = this.blocks.get(meterId);
+		if ( block == null ) {
+			block = new Block();
+			this.blocks.put(meterId, block);
+		}
+		else if ( block.encoder.getCount() > 0 && (block.start != start || timestamp < block.encoder.getLastTimestamp() || block.encoder.getCount() == this.maxPoints) )
+			this.write(meterId, block);
+
+		if ( block.encoder.getCount() == 0 )
+			block.start = start;
+		block.encoder.append(timestamp, value);
+	}
+
+	/**
+	 * Writes all open blocks and flushes the batch writer of the table.
+	 * @throws MutationsRejectedException
+	 * @throws TableNotFoundException
+	 */
+	public void flush() throws MutationsRejectedException, TableNotFoundException {
+		for ( Map.Entry<String, Block> entry : this.blocks.entrySet() )
+			if ( entry.getValue().encoder.getCount() > 0 )
+				this.write(entry.getKey(), entry.getValue());
+
+		this.accumulo.flushBashWriter(this.table);
+	}
+
+	/**
+	 * Writes the block and clears it.
+	 */
+	private void write(String meterId, Block block) throws MutationsRejectedException, TableNotFoundException {
+		long first = block.encoder.getFirstTimestamp();
+		this.accumulo.addMutation(this.table, this.schema.getRowId(meterId, first), this.columnFamily, this.schema.getColumnQualifier(first), block.encoder.getLastTimestamp(), block.encoder.toByteArray());
+		block.encoder.reset();
+	}
+
+	/**
+	 * Writes all open blocks.
+	 * @throws MutationsRejectedException
+	 * @throws TableNotFoundException
+	 */
+	@Override
+	public void close() throws MutationsRejectedException, TableNotFoundException {
+		this.flush();
+		this.blocks.clear();
+	}
+
+	/**
+	 * Open block of one meter.
+	 */
+	private static class Block {
+		/**
+		 * encoder
+		 */
+		private final BlockEncoder encoder = new BlockEncoder();
+		/**
+		 * window start
+		 */
+		private long start;
+	}
+}
@@ -0,0 +1,252 @@
+package org.sensoriclife.db;
+
+import java.io.IOException;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.Connector;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.conf.AccumuloConfiguration;
+import org.apache.accumulo.core.data.ColumnUpdate;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.file.FileOperations;
+import org.apache.accumulo.core.file.FileSKVWriter;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.sensoriclife.Logger;
+
+/**
+ * Writes sorted RFiles to a local or HDFS directory and bulk imports them into
+ * a table on close. Entries are buffered and sorted in memory; whenever the
+ * buffer exceeds its limit it is written out as a new RFile. A bulk writer is
+ * not thread-safe.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class BulkWriter implements AutoCloseable {
+	/**
+	 * connector
+	 */
+	private final Connector connector;
+	/**
+	 * table
+	 */
+	private final String table;
+	/**
+	 * file system of the work directory
+	 */
+	private final FileSystem fs;
+	/**
+	 * directory for the RFiles
+	 */
+	private final Path files;
+	/**
+	 * directory for the files that failed to import
+	 */
+	private final Path failures;
+	/**
+	 * maximum buffer size in bytes
+	 */
+	private final long maxMemory;
+	/**
+	 * sorted buffer
+	 */
+	private final TreeMap<Key, Value> buffer;
+	/**
+	 * estimated buffer size in bytes
+	 */
+	private long memory;
+	/**
+	 * number of written files
+	 */
+	private int fileCount;
+	/**
+	 * closed
+	 */
+	private boolean closed;
+	/**
+	 * scan cache invalidated after the import, <code>null</code> for none
+	 */
+	private final ScanCache cache;
+
+	/**
+	 * @param connector connector
+	 * @param table table
+	 * @param directory work directory, must not exist
+	 * @param maxMemory maximum buffer size in bytes
+	 * @throws IOException
+	 */
+	public BulkWriter(Connector connector, String table, String directory, long maxMemory) throws IOException {
+		this(connector, null, table, directory, maxMemory);
+	}
+
+	/**
+	 * @param connector connector
+	 * @param cache scan cache to invalidate after the import or <code>null</code>
+	 * @param table table
+	 * @param directory work directory, must not exist
+	 * @param maxMemory maximum buffer size in bytes
+	 * @throws IOException
+	 */
+	public BulkWriter(Connector connector, ScanCache cache, String table, String directory, long maxMemory) throws IOException {
+		this.connector = connector;
+		this.cache = cache;
+		this.table = table;
+		this.maxMemory = maxMemory;
+		this.buffer = new TreeMap<>();
+		this.memory = 0;
+		this.fileCount = 0;
+		this.closed = false;
+
+		Path work = new Path(directory);
+		this.fs = work.getFileSystem(new Configuration());
+		if ( this.fs.exists(work) )
+			throw new IOException("The work directory already exists: " + directory);
+
+		this.files = new Path(work, "files");
+		this.failures = new Path(work, "failures");
+		this.fs.mkdirs(this.files);
+		this.fs.mkdirs(this.failures);
+	}
+
+	/**
+	 * @return the table
+	 */
+	public String getTable() {
+		return this.table;
+	}
+
+	/**
+	 * Adds the entry to the buffer.
+	 * @param rowId row id
+	 * @param columnFamily column family
+	 * @param columnQualifier column qualifier
+	 * @param visibility column visibility
+	 * @param timestamp timestamp
+	 * @param value value
+	 * @throws IOException
+	 */
+	public void addMutation(byte[] rowId, byte[] columnFamily, byte[] columnQualifier, byte[] visibility, long timestamp, byte[] value) throws IOException {
+		this.add(new Key(rowId, columnFamily, columnQualifier, visibility == null ? new byte[0] : visibility, timestamp), new Value(value));
+	}
+
+	/**
+	 * Adds the entry to the buffer.
+	 * @param rowId row id
+	 * @param columnFamily column family
+	 * @param columnQualifier column qualifier
+	 * @param timestamp timestamp
+	 * @param value value
+	 * @throws IOException
+	 */
+	public void addMutation(String rowId, String columnFamily, String columnQualifier, long timestamp, Value value) throws IOException {
+		this.addMutation(rowId, columnFamily, columnQualifier, null, timestamp, value);
+	}
+
+	/**
+	 * Adds the entry to the buffer.
+	 * @param rowId row id
+	 * @param columnFamily column family
+	 * @param columnQualifier column qualifier
+	 * @param visibility column visibility
+	 * @param timestamp timestamp
+	 * @param value value
+	 * @throws IOException
+	 */
+	public void addMutation(String rowId, String columnFamily, String columnQualifier, String visibility, long timestamp, Value value) throws IOException {
+		this.add(new Key(new Text(rowId), new Text(columnFamily), new Text(columnQualifier), new ColumnVisibility(visibility == null ? "" : visibility), timestamp), value);
+	}
+
+	/**
+	 * Adds all updates of the given mutation to the buffer. Updates without a
+	 * timestamp get the current time.
+	 * @param mutation mutation
+	 * @throws IOException
+	 */
+	public void addMutation(Mutation mutation) throws IOException {
+		long now = System.currentTimeMillis();
+		for ( ColumnUpdate update : mutation.getUpdates() ) {
+			Key key = new Key(mutation.getRow(), update.getColumnFamily(), update.getColumnQualifier(), update.getColumnVisibility(), update.hasTimestamp() ? update.getTimestamp() : now, update.isDeleted());
+			this.add(key, new Value(update.getValue()));
+		}
+	}
+
+	/**
+	 * Writes the buffer to a new RFile.
+	 * @throws IOException
+	 */
+	public void flush() throws IOException {
+		if ( this.buffer.isEmpty() )
+			return;
+
+		String file = new Path(this.files, String.format("part-%05d.%s", this.fileCount++, FileOperations.getNewFileExtension(AccumuloConfiguration.getDefaultConfiguration()))).toString();
+		Logger.debug(BulkWriter.class, "Writing " + this.buffer.size() + " entries to: " + file);
+
+		FileSKVWriter writer = FileOperations.getInstance().openWriter(file, this.fs, this.fs.getConf(), AccumuloConfiguration.getDefaultConfiguration());
+		try {
+			writer.startDefaultLocalityGroup();
+			for ( Entry<Key, Value> entry : this.buffer.entrySet() )
+				writer.append(entry.getKey(), entry.getValue());
+		}
+		finally {
+			writer.close();
+		}
+
+		this.buffer.clear();
+		this.memory = 0;
+	}
+
+	/**
+	 * Writes the remaining buffer and imports all written RFiles into the
+	 * table. Files that fail to import are kept in the failures directory,
+	 * otherwise the work directory is deleted.
+	 * @throws IOException
+	 * @throws AccumuloException
+	 * @throws AccumuloSecurityException
+	 * @throws TableNotFoundException
+	 */
+	@Override
+	public void close() throws IOException, AccumuloException, AccumuloSecurityException, TableNotFoundException {
+		if ( this.closed )
+			return;
+
+		this.closed = true;
+		this.flush();
+
+		if ( this.fileCount > 0 ) {
+			this.connector.tableOperations().importDirectory(this.table, this.files.toString(), this.failures.toString(), false);
+			if ( this.cache != null )
+				this.cache.invalidate(this.table);
+		}
+
+		FileStatus[] failed = this.fs.listStatus(this.failures);
+		if ( failed != null && failed.length > 0 )
+			Logger.error(BulkWriter.class, failed.length + " files failed to import into table " + this.table + ", see: " + this.failures);
+		else
+			this.fs.delete(this.files.getParent(), true);
+	}
+
+	/**
+	 * Adds the entry to the buffer and flushes it if it is full.
+	 * @param key key
+	 * @param value value
+	 * @throws IOException
+	 */
+	private void add(Key key, Value value) throws IOException {
+		if ( this.closed )
+			throw new IllegalStateException("The bulk writer is closed.");
+
+		this.buffer.put(key, value);
+		this.memory += key.getSize() + value.getSize();
+
+		if ( this.memory >= this.maxMemory )
+			this.flush();
+	}
+}
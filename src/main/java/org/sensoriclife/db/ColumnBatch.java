@@ -0,0 +1,126 @@
+package org.sensoriclife.db;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Fixed-size batch of decoded readings in primitive columns, filled by a
+ * {@link ColumnReader}. The row of a reading is given as index into the
+ * dictionary of the reader, so the rows can be compared and grouped without
+ * strings. A batch is reused for every chunk of a scan:
+ * <pre>
+ * ColumnBatch batch = new ColumnBatch(1024);
+ * while ( reader.next(batch) )
+ *     for ( int i = 0; i &lt; batch.getSize(); i++ )
+ *         use(batch.getRows()[i], batch.getTimestamps()[i], batch.getValues()[i]);
+ * </pre>
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class ColumnBatch {
+	/**
+	 * dictionary indices of the rows
+	 */
+	private final int[] rows;
+	/**
+	 * timestamps
+	 */
+	private final long[] timestamps;
+	/**
+	 * values
+	 */
+	private final double[] values;
+	/**
+	 * number of readings
+	 */
+	private int size;
+	/**
+	 * row dictionary
+	 */
+	private List<String> dictionary;
+
+	/**
+	 * @param capacity maximum number of readings
+	 */
+	public ColumnBatch(int capacity) {
+		if ( capacity <= 0 )
+			throw new IllegalArgumentException("The capacity must be positive.");
+
+		this.rows = new int[capacity];
+		this.timestamps = new long[capacity];
+		this.values = new double[capacity];
+		this.size = 0;
+		this.dictionary = Collections.emptyList();
+	}
+
+	/**
+	 * @return the maximum number of readings
+	 */
+	public int getCapacity() {
+		return this.rows.length;
+	}
+
+	/**
+	 * @return the number of readings, the columns are valid up to this index
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * @return the dictionary indices of the rows
+	 */
+	public int[] getRows() {
+		return this.rows;
+	}
+
+	/**
+	 * @return the timestamps
+	 */
+	public long[] getTimestamps() {
+		return this.timestamps;
+	}
+
+	/**
+	 * @return the values, <code>NaN</code> for values that could not be decoded
+	 */
+	public double[] getValues() {
+		return this.values;
+	}
+
+	/**
+	 * Returns the row id of the reading at the given index.
+	 * @param index index
+	 * @return row id
+	 */
+	public String getRow(int index) {
+		return this.dictionary.get(this.rows[index]);
+	}
+
+	/**
+	 * @return the row dictionary
+	 */
+	public List<String> getDictionary() {
+		return this.dictionary;
+	}
+
+	/**
+	 * Clears the batch.
+	 * @param dictionary row dictionary
+	 */
+	void clear(List<String> dictionary) {
+		this.size = 0;
+		this.dictionary = dictionary;
+	}
+
+	/**
+	 * Appends a reading.
+	 * @return <code>false</code> if the batch is full afterwards
+	 */
+	boolean add(int row, long timestamp, double value) {
+		this.rows[this.size] = row;
+		this.timestamps[this.size] = timestamp;
+		this.values[this.size] = value;
+		return ++this.size < this.rows.length;
+	}
+}
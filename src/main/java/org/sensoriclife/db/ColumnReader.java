@@ -0,0 +1,238 @@
+package org.sensoriclife.db;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.LongCombiner;
+import org.sensoriclife.db.iterators.ValueEncoding;
+import org.sensoriclife.util.Codec;
+
+/**
+ * Decodes scanned readings into {@link ColumnBatch}es. Timestamps are taken
+ * from the keys or, for a {@link TimeSeriesSchema}, from the reverse
+ * timestamps in the column qualifiers, entries without a valid qualifier are
+ * skipped. Values are decimal strings, variable length encoded longs or 8
+ * byte doubles, see {@link ValueEncoding}. They are parsed from the bytes of
+ * the entries, and a row id is only decoded when the row changes, so no
+ * objects are created per reading.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class ColumnReader implements AutoCloseable {
+	/**
+	 * exactly representable powers of ten
+	 */
+	private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+	/**
+	 * scanned entries
+	 */
+	private final ScanIterator entries;
+	/**
+	 * timestamps from the column qualifiers
+	 */
+	private final boolean qualifier;
+	/**
+	 * encoding of the values
+	 */
+	private final ValueEncoding encoding;
+	/**
+	 * row dictionary
+	 */
+	private final List<String> dictionary;
+	/**
+	 * dictionary indices by row id
+	 */
+	private final Map<String, Integer> indices;
+	/**
+	 * bytes of the last row
+	 */
+	private byte[] lastRow;
+	/**
+	 * length of the last row
+	 */
+	private int lastRowLength;
+	/**
+	 * dictionary index of the last row
+	 */
+	private int lastIndex;
+
+	/**
+	 * @param entries scanned entries
+	 * @param qualifier timestamps from the column qualifiers instead of the keys
+	 * @param encoding encoding of the values
+	 */
+	public ColumnReader(ScanIterator entries, boolean qualifier, ValueEncoding encoding) {
+		this.entries = entries;
+		this.qualifier = qualifier;
+		this.encoding = encoding;
+		this.dictionary = new ArrayList<>();
+		this.indices = new HashMap<>();
+		this.lastRow = new byte[64];
+		this.lastRowLength = -1;
+		this.lastIndex = -1;
+	}
+
+	/**
+	 * Fills the batch with the next readings.
+	 * @param batch batch
+	 * @return <code>false</code> if there are no more readings
+	 */
+	public boolean next(ColumnBatch batch) {
+		batch.clear(Collections.unmodifiableList(this.dictionary));
+		while ( this.entries.hasNext() ) {
+			Entry<Key, Value> entry = this.entries.next();
+			Key key = entry.getKey();
+
+			long timestamp;
+			if ( this.qualifier ) {
+				timestamp = parseLong(key.getColumnQualifierData());
+				if ( timestamp < 0 )
+					continue;
+				timestamp = Long.MAX_VALUE - timestamp;
+			}
+			else
+				timestamp = key.getTimestamp();
+
+			if ( !batch.add(this.getRow(key.getRowData()), timestamp, this.decode(entry.getValue())) )
+				break;
+		}
+
+		return batch.getSize() > 0;
+	}
+
+	/**
+	 * @return the row dictionary
+	 */
+	public List<String> getDictionary() {
+		return Collections.unmodifiableList(this.dictionary);
+	}
+
+	/**
+	 * Returns the dictionary index of the given row.
+	 */
+	private int getRow(ByteSequence row) {
+		int length = row.length();
+		if ( length == this.lastRowLength ) {
+			boolean same = true;
+			for ( int i = 0; i < length && same; i++ )
+				same = this.lastRow[i] == row.byteAt(i);
+			if ( same )
+				return this.lastIndex;
+		}
+
+		if ( length > this.lastRow.length )
+			this.lastRow = new byte[Math.max(length, this.lastRow.length * 2)];
+		for ( int i = 0; i < length; i++ )
+			this.lastRow[i] = row.byteAt(i);
+		this.lastRowLength = length;
+
+		String rowId = new String(this.lastRow, 0, length, StandardCharsets.UTF_8);
+		Integer index = this.indices.get(rowId);
+		if ( index == null ) {
+			index = this.dictionary.size();
+			this.dictionary.add(rowId);
+			this.indices.put(rowId, index);
+		}
+
+		this.lastIndex = index;
+		return this.lastIndex;
+	}
+
+	/**
+	 * Decodes the reading, <code>NaN</code> if it is no valid double.
+	 */
+	private double decode(Value value) {
+		byte[] bytes = value.get();
+		switch ( this.encoding ) {
+			case VARLEN:
+				return LongCombiner.VAR_LEN_ENCODER.decode(bytes);
+			case DOUBLE:
+				return bytes.length == 8 ? Codec.decodeDouble(bytes) : Double.NaN;
+			default:
+				return parseDouble(bytes, 0, bytes.length);
+		}
+	}
+
+	/**
+	 * Parses a non-negative decimal number.
+	 * @param bytes digits
+	 * @return number or <code>-1</code> if the bytes are no valid number or too large
+	 */
+	static long parseLong(ByteSequence bytes) {
+		int length = bytes.length();
+		if ( length == 0 || length > 19 )
+			return -1;
+
+		long value = 0;
+		for ( int i = 0; i < length; i++ ) {
+			int digit = bytes.byteAt(i) - '0';
+			if ( digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10 )
+				return -1;
+			value = value * 10 + digit;
+		}
+
+		return value;
+	}
+
+	/**
+	 * Parses a decimal string. Plain numbers with up to 15 significant
+	 * digits are parsed directly, all others with {@link Double#parseDouble}.
+	 * @param bytes array
+	 * @param offset offset
+	 * @param length length
+	 * @return number or <code>NaN</code> if the bytes are no valid number
+	 */
+	static double parseDouble(byte[] bytes, int offset, int length) {
+		int i = offset, end = offset + length;
+		boolean negative = i < end && bytes[i] == '-';
+		if ( negative || (i < end && bytes[i] == '+') )
+			i++;
+
+		long mantissa = 0;
+		int digits = 0, scale = 0;
+		boolean point = false, plain = true, any = false;
+		for ( ; i < end && plain; i++ ) {
+			byte b = bytes[i];
+			if ( b >= '0' && b <= '9' ) {
+				any = true;
+				if ( mantissa != 0 || b != '0' )
+					digits++;
+				mantissa = mantissa * 10 + (b - '0');
+				if ( point )
+					scale++;
+			}
+			else if ( b == '.' && !point )
+				point = true;
+			else
+				plain = false;
+		}
+
+		if ( plain && any && digits <= 15 && scale < POWERS_OF_TEN.length ) {
+			double value = mantissa / POWERS_OF_TEN[scale];
+			return negative ? -value : value;
+		}
+
+		try {
+			return Double.parseDouble(new String(Arrays.copyOfRange(bytes, offset, end), StandardCharsets.UTF_8));
+		}
+		catch ( NumberFormatException e ) {
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * Closes the scan.
+	 */
+	@Override
+	public void close() {
+		this.entries.close();
+	}
+}
@@ -0,0 +1,136 @@
+package org.sensoriclife.db;
+
+import java.util.Calendar;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.apache.hadoop.io.Text;
+import org.sensoriclife.Logger;
+
+/**
+ * Triggers daily range compactions of tables at an off-peak hour, so the
+ * age-off filters of the {@link RetentionPolicy} remove expired entries from
+ * the files. Every table has at most one schedule.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class CompactionScheduler {
+	/**
+	 * one day in milliseconds
+	 */
+	private static final long DAY = 24 * 60 * 60 * 1000;
+	/**
+	 * client
+	 */
+	private final Accumulo accumulo;
+	/**
+	 * scheduled compactions per table
+	 */
+	private final Map<String, ScheduledFuture<?>> compactions;
+	/**
+	 * scheduler
+	 */
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * @param accumulo client
+	 */
+	public CompactionScheduler(Accumulo accumulo) {
+		this.accumulo = accumulo;
+		this.compactions = new ConcurrentHashMap<>();
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "accumulo-compaction-scheduler");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Compacts the whole table every day at the given hour.
+	 * @param table table
+	 * @param hour hour of the day, local time
+	 */
+	public void schedule(String table, int hour) {
+		this.schedule(table, null, null, hour);
+	}
+
+	/**
+	 * Compacts the given row range of the table every day at the given hour.
+	 * @param table table
+	 * @param start start row (exclusive) or <code>null</code> for the first
+	 * @param end end row (inclusive) or <code>null</code> for the last
+	 * @param hour hour of the day, local time
+	 */
+	public void schedule(final String table, final Text start, final Text end, int hour) {
+		if ( hour < 0 || hour > 23 )
+			throw new IllegalArgumentException("The hour must be between 0 and 23.");
+
+		ScheduledFuture<?> compaction = this.scheduler.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					CompactionScheduler.this.accumulo.compact(table, start, end, false);
+				}
+				catch ( Exception e ) {
+					Logger.error(CompactionScheduler.class, "Compaction of table " + table + " failed: " + e);
+				}
+			}
+		}, getDelay(Calendar.getInstance(), hour), DAY, TimeUnit.MILLISECONDS);
+
+		ScheduledFuture<?> previous = this.compactions.put(table, compaction);
+		if ( previous != null )
+			previous.cancel(false);
+	}
+
+	/**
+	 * Cancels the scheduled compactions of the given table.
+	 * @param table table
+	 */
+	public void cancel(String table) {
+		ScheduledFuture<?> compaction = this.compactions.remove(table);
+		if ( compaction != null )
+			compaction.cancel(false);
+	}
+
+	/**
+	 * @param table table
+	 * @return whether compactions of the given table are scheduled
+	 */
+	public boolean isScheduled(String table) {
+		return this.compactions.containsKey(table);
+	}
+
+	/**
+	 * Cancels all scheduled compactions.
+	 */
+	public void stop() {
+		this.compactions.clear();
+		this.scheduler.shutdownNow();
+	}
+
+	/**
+	 * Returns the milliseconds from the given time to the next start of the
+	 * given hour.
+	 * @param now current time
+	 * @param hour hour of the day
+	 * @return delay in milliseconds
+	 */
+	static long getDelay(Calendar now, int hour) {
+		Calendar next = (Calendar)now.clone();
+		next.set(Calendar.HOUR_OF_DAY, hour);
+		next.set(Calendar.MINUTE, 0);
+		next.set(Calendar.SECOND, 0);
+		next.set(Calendar.MILLISECOND, 0);
+		if ( !next.after(now) )
+			next.add(Calendar.DAY_OF_MONTH, 1);
+
+		return next.getTimeInMillis() - now.getTimeInMillis();
+	}
+}
@@ -0,0 +1,19 @@
+package org.sensoriclife.db;
+
+import org.apache.accumulo.core.data.Mutation;
+
+/**
+ * Receives mutations that could not be written, neither at first nor after
+ * all retries.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public interface DeadLetterSink {
+	/**
+	 * Called for every mutation that could not be written.
+	 * @param table table
+	 * @param mutation mutation
+	 * @param cause last error
+	 */
+	void accept(String table, Mutation mutation, Exception cause);
+}
@@ -0,0 +1,144 @@
+package org.sensoriclife.db;
+
+import java.nio.ByteBuffer;
+import java.util.Map.Entry;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.sensoriclife.db.iterators.DownsamplingIterator;
+import org.sensoriclife.db.iterators.ValueEncoding;
+
+/**
+ * Minimum, maximum, average and count of the readings of one row and column
+ * family in one time window, as returned by the {@link DownsamplingIterator}.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class Downsample {
+	/**
+	 * priority of the downsampling iterator, after the {@link Filters}
+	 */
+	public static final int PRIORITY = Filters.PRIORITY + 20;
+	/**
+	 * row id
+	 */
+	private final String rowId;
+	/**
+	 * column family
+	 */
+	private final String columnFamily;
+	/**
+	 * start of the window
+	 */
+	private final long start;
+	/**
+	 * number of readings
+	 */
+	private final long count;
+	/**
+	 * minimum
+	 */
+	private final double min;
+	/**
+	 * maximum
+	 */
+	private final double max;
+	/**
+	 * sum
+	 */
+	private final double sum;
+
+	/**
+	 * @param rowId row id
+	 * @param columnFamily column family
+	 * @param start start of the window
+	 * @param count number of readings
+	 * @param min minimum
+	 * @param max maximum
+	 * @param sum sum
+	 */
+	public Downsample(String rowId, String columnFamily, long start, long count, double min, double max, double sum) {
+		this.rowId = rowId;
+		this.columnFamily = columnFamily;
+		this.start = start;
+		this.count = count;
+		this.min = min;
+		this.max = max;
+		this.sum = sum;
+	}
+
+	/**
+	 * Returns the iterator setting for downsampling into windows of the given
+	 * size.
+	 * @param window window size in milliseconds
+	 * @param qualifier timestamps are reverse timestamps in the column
+	 * qualifier, as in the {@link TimeSeriesSchema}
+	 * @param encoding encoding of the values
+	 * @return iterator setting
+	 */
+	public static IteratorSetting getIteratorSetting(long window, boolean qualifier, ValueEncoding encoding) {
+		IteratorSetting setting = new IteratorSetting(PRIORITY, "downsampling", DownsamplingIterator.class);
+		DownsamplingIterator.setOptions(setting, window, qualifier, encoding);
+		return setting;
+	}
+
+	/**
+	 * Decodes an entry returned by the downsampling iterator.
+	 * @param entry entry
+	 * @return downsample
+	 */
+	public static Downsample decode(Entry<Key, Value> entry) {
+		ByteBuffer buffer = ByteBuffer.wrap(entry.getValue().get());
+		if ( buffer.remaining() != DownsamplingIterator.VALUE_LENGTH )
+			throw new IllegalArgumentException("The value is no downsampled window.");
+
+		return new Downsample(entry.getKey().getRow().toString(), entry.getKey().getColumnFamily().toString(), buffer.getLong(), buffer.getLong(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+	}
+
+	/**
+	 * Returns the combination of this and the given downsample of the same
+	 * window.
+	 * @param other downsample
+	 * @return combined downsample
+	 */
+	public Downsample merge(Downsample other) {
+		return new Downsample(this.rowId, this.columnFamily, this.start, this.count + other.count, Math.min(this.min, other.min), Math.max(this.max, other.max), this.sum + other.sum);
+	}
+
+	public String getRowId() {
+		return this.rowId;
+	}
+
+	public String getColumnFamily() {
+		return this.columnFamily;
+	}
+
+	public long getStart() {
+		return this.start;
+	}
+
+	public long getCount() {
+		return this.count;
+	}
+
+	public double getMin() {
+		return this.min;
+	}
+
+	public double getMax() {
+		return this.max;
+	}
+
+	public double getSum() {
+		return this.sum;
+	}
+
+	public double getAvg() {
+		return this.sum / this.count;
+	}
+
+	@Override
+	public String toString() {
+		return this.rowId + " " + this.columnFamily + " " + this.start + ": count=" + this.count + ", min=" + this.min + ", max=" + this.max + ", avg=" + this.getAvg();
+	}
+}
@@ -0,0 +1,120 @@
+package org.sensoriclife.db;
+
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.iterators.user.RegExFilter;
+import org.apache.accumulo.core.iterators.user.TimestampFilter;
+import org.sensoriclife.db.iterators.FirstEntriesInRowIterator;
+import org.sensoriclife.db.iterators.ValueEncoding;
+import org.sensoriclife.db.iterators.ValueRangeFilter;
+
+/**
+ * Iterator settings for server-side filtering of scans, so the tablet servers
+ * drop unwanted entries before they are sent. The filters run after the
+ * versioning iterator (20) in the order timestamp, regex, value and first
+ * entries per row; each filter can be used once per scan.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public final class Filters {
+	/**
+	 * base priority of the filters
+	 */
+	public static final int PRIORITY = 30;
+
+	private Filters() {}
+
+	/**
+	 * Returns a filter for the entries with a timestamp between the given
+	 * timestamps (inclusive).
+	 * @param from start timestamp
+	 * @param to end timestamp
+	 * @return iterator setting
+	 */
+	public static IteratorSetting timestampRange(long from, long to) {
+		IteratorSetting setting = new IteratorSetting(PRIORITY, "timestamp", TimestampFilter.class);
+		TimestampFilter.setRange(setting, from, true, to, true);
+		return setting;
+	}
+
+	/**
+	 * Returns a filter for the entries with a timestamp of at least the given
+	 * timestamp.
+	 * @param from start timestamp
+	 * @return iterator setting
+	 */
+	public static IteratorSetting since(long from) {
+		IteratorSetting setting = new IteratorSetting(PRIORITY, "timestamp", TimestampFilter.class);
+		TimestampFilter.setStart(setting, from, true);
+		return setting;
+	}
+
+	/**
+	 * Returns a filter for the entries whose row id matches the given regular
+	 * expression.
+	 * @param rowRegex regular expression
+	 * @return iterator setting
+	 */
+	public static IteratorSetting rowRegex(String rowRegex) {
+		return regex(rowRegex, null, null, null);
+	}
+
+	/**
+	 * Returns a filter for the entries whose column family and column
+	 * qualifier match the given regular expressions.
+	 * @param columnFamilyRegex regular expression or <code>null</code> for all
+	 * @param columnQualifierRegex regular expression or <code>null</code> for all
+	 * @return iterator setting
+	 */
+	public static IteratorSetting columnRegex(String columnFamilyRegex, String columnQualifierRegex) {
+		return regex(null, columnFamilyRegex, columnQualifierRegex, null);
+	}
+
+	/**
+	 * Returns a filter for the entries that match all given regular
+	 * expressions. The expressions have to match the whole field.
+	 * @param rowRegex regular expression or <code>null</code> for all
+	 * @param columnFamilyRegex regular expression or <code>null</code> for all
+	 * @param columnQualifierRegex regular expression or <code>null</code> for all
+	 * @param valueRegex regular expression or <code>null</code> for all
+	 * @return iterator setting
+	 */
+	public static IteratorSetting regex(String rowRegex, String columnFamilyRegex, String columnQualifierRegex, String valueRegex) {
+		IteratorSetting setting = new IteratorSetting(PRIORITY + 1, "regex", RegExFilter.class);
+		RegExFilter.setRegexs(setting, rowRegex, columnFamilyRegex, columnQualifierRegex, valueRegex, false);
+		return setting;
+	}
+
+	/**
+	 * Returns a filter for the readings of at least the given threshold.
+	 * Values are decimal strings.
+	 * @param threshold threshold
+	 * @return iterator setting
+	 */
+	public static IteratorSetting valueAbove(double threshold) {
+		return valueRange(threshold, Double.POSITIVE_INFINITY, ValueEncoding.STRING);
+	}
+
+	/**
+	 * Returns a filter for the readings between the given values (inclusive).
+	 * @param min minimum
+	 * @param max maximum
+	 * @param encoding encoding of the values
+	 * @return iterator setting
+	 */
+	public static IteratorSetting valueRange(double min, double max, ValueEncoding encoding) {
+		IteratorSetting setting = new IteratorSetting(PRIORITY + 2, "value", ValueRangeFilter.class);
+		ValueRangeFilter.setRange(setting, min, max, encoding);
+		return setting;
+	}
+
+	/**
+	 * Returns an iterator that returns only the first entries of each row.
+	 * @param entries number of entries per row
+	 * @return iterator setting
+	 */
+	public static IteratorSetting firstEntriesPerRow(int entries) {
+		IteratorSetting setting = new IteratorSetting(PRIORITY + 10, "first_entries", FirstEntriesInRowIterator.class);
+		FirstEntriesInRowIterator.setEntries(setting, entries);
+		return setting;
+	}
+}
@@ -0,0 +1,83 @@
+package org.sensoriclife.db;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Time periods of the rollups, from the finest to the coarsest. Days, months
+ * and years start at midnight UTC, so every period starts at the start of a
+ * period of each finer granularity.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public enum Granularity {
+	MINUTE(60000L),
+	HOUR(3600000L),
+	DAY(86400000L),
+	MONTH(0),
+	YEAR(0);
+
+	/**
+	 * time zone of the periods
+	 */
+	private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+	/**
+	 * length of the period in milliseconds, <code>0</code> for calendar periods
+	 */
+	private final long length;
+
+	private Granularity(long length) {
+		this.length = length;
+	}
+
+	/**
+	 * Returns the start of the period of the given timestamp.
+	 * @param timestamp timestamp
+	 * @return period start
+	 */
+	public long getStart(long timestamp) {
+		if ( this.length > 0 ) {
+			long offset = timestamp % this.length;
+			return timestamp - (offset < 0 ? offset + this.length : offset);
+		}
+
+		Calendar calendar = Calendar.getInstance(UTC);
+		calendar.setTimeInMillis(timestamp);
+		calendar.set(Calendar.HOUR_OF_DAY, 0);
+		calendar.set(Calendar.MINUTE, 0);
+		calendar.set(Calendar.SECOND, 0);
+		calendar.set(Calendar.MILLISECOND, 0);
+		calendar.set(Calendar.DAY_OF_MONTH, 1);
+		if ( this == YEAR )
+			calendar.set(Calendar.MONTH, Calendar.JANUARY);
+
+		return calendar.getTimeInMillis();
+	}
+
+	/**
+	 * Returns the start of the period after the period of the given
+	 * timestamp.
+	 * @param timestamp timestamp
+	 * @return start of the next period
+	 */
+	public long getNext(long timestamp) {
+		long start = this.getStart(timestamp);
+		if ( this.length > 0 )
+			return start + this.length;
+
+		Calendar calendar = Calendar.getInstance(UTC);
+		calendar.setTimeInMillis(start);
+		calendar.add(this == YEAR ? Calendar.YEAR : Calendar.MONTH, 1);
+		return calendar.getTimeInMillis();
+	}
+
+	/**
+	 * Returns the first period start at or after the given timestamp.
+	 * @param timestamp timestamp
+	 * @return period start
+	 */
+	public long getCeiling(long timestamp) {
+		long start = this.getStart(timestamp);
+		return start == timestamp ? start : this.getNext(timestamp);
+	}
+}
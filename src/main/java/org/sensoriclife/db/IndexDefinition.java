@@ -0,0 +1,219 @@
+package org.sensoriclife.db;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.apache.accumulo.core.data.ColumnUpdate;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.hadoop.io.Text;
+import org.sensoriclife.util.Codec;
+
+/**
+ * Secondary index over the values or column qualifiers of a column. Every
+ * indexed update of a table writes an entry into the index table
+ * <code>&lt;table&gt;_idx_&lt;name&gt;</code>:
+ * <pre>term : rowId : columnQualifier [visibility] timestamp</pre>
+ * with the visibility and timestamp of the update. Numbers are stored as
+ * sortable doubles of {@link Codec}, so the index can be scanned by range.
+ * Index entries are never removed, queries check the rows they return
+ * against the term instead.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class IndexDefinition {
+	/**
+	 * part of an update that is indexed
+	 */
+	public enum Source {
+		VALUE,
+		QUALIFIER
+	}
+
+	/**
+	 * encoding of the indexed terms
+	 */
+	public enum Type {
+		/**
+		 * terms as they are, for exact lookups
+		 */
+		TERM,
+		/**
+		 * decimal numbers, for range lookups
+		 */
+		NUMBER
+	}
+
+	/**
+	 * empty value of the index entries
+	 */
+	private static final Value EMPTY = new Value(new byte[0]);
+	/**
+	 * name
+	 */
+	private final String name;
+	/**
+	 * indexed column family
+	 */
+	private final byte[] columnFamily;
+	/**
+	 * indexed column qualifier, <code>null</code> for all
+	 */
+	private final byte[] columnQualifier;
+	/**
+	 * indexed part
+	 */
+	private final Source source;
+	/**
+	 * term encoding
+	 */
+	private final Type type;
+
+	/**
+	 * @param name name
+	 * @param columnFamily indexed column family
+	 * @param columnQualifier indexed column qualifier or <code>null</code> for all
+	 * @param source indexed part of the updates
+	 * @param type term encoding
+	 */
+	public IndexDefinition(String name, String columnFamily, String columnQualifier, Source source, Type type) {
+		this.name = name;
+		this.columnFamily = columnFamily.getBytes(StandardCharsets.UTF_8);
+		this.columnQualifier = columnQualifier == null ? null : columnQualifier.getBytes(StandardCharsets.UTF_8);
+		this.source = source;
+		this.type = type;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	public Type getType() {
+		return this.type;
+	}
+
+	/**
+	 * Returns the index table of the given table.
+	 * @param table table
+	 * @return index table
+	 */
+	public String getIndexTable(String table) {
+		return table + "_idx_" + this.name;
+	}
+
+	/**
+	 * Returns the index mutations of the given mutation, one per term.
+	 * Deletions are not indexed.
+	 * @param mutation mutation
+	 * @return index mutations
+	 */
+	public List<Mutation> getIndexMutations(Mutation mutation) {
+		List<Mutation> mutations = new ArrayList<>();
+		Text rowId = null;
+		for ( ColumnUpdate update : mutation.getUpdates() ) {
+			if ( update.isDeleted() || !this.isIndexed(update.getColumnFamily(), update.getColumnQualifier()) )
+				continue;
+
+			byte[] term = this.encode(this.source == Source.VALUE ? update.getValue() : update.getColumnQualifier());
+			if ( term == null )
+				continue;
+
+			if ( rowId == null )
+				rowId = new Text(mutation.getRow());
+
+			Mutation m = new Mutation(term);
+			if ( update.hasTimestamp() )
+				m.put(rowId, new Text(update.getColumnQualifier()), MutationBuilder.getColumnVisibility(update.getColumnVisibility()), update.getTimestamp(), EMPTY);
+			else
+				m.put(rowId, new Text(update.getColumnQualifier()), MutationBuilder.getColumnVisibility(update.getColumnVisibility()), EMPTY);
+			mutations.add(m);
+		}
+
+		return mutations;
+	}
+
+	/**
+	 * Returns the index range of the given term.
+	 * @param term term
+	 * @return range
+	 */
+	public Range getRange(String term) {
+		byte[] encoded = this.encode(term.getBytes(StandardCharsets.UTF_8));
+		if ( encoded == null )
+			throw new IllegalArgumentException("The term is no number: " + term);
+
+		return Range.exact(new Text(encoded));
+	}
+
+	/**
+	 * Returns the index range of the numbers between the given bounds
+	 * (inclusive).
+	 * @param min minimum
+	 * @param max maximum
+	 * @return range
+	 */
+	public Range getRange(double min, double max) {
+		if ( this.type != Type.NUMBER )
+			throw new IllegalStateException("Only number indexes have ranges.");
+
+		return new Range(new Text(encodeNumber(min)), true, new Text(encodeNumber(max)), true);
+	}
+
+	/**
+	 * Returns whether the given row has an indexed column whose term lies in
+	 * the given index range.
+	 * @param row entries of one row
+	 * @param range index range
+	 * @return matches
+	 */
+	public boolean matches(Map<Key, Value> row, Range range) {
+		for ( Map.Entry<Key, Value> entry : row.entrySet() ) {
+			Key key = entry.getKey();
+			if ( !this.isIndexed(key.getColumnFamilyData().toArray(), key.getColumnQualifierData().toArray()) )
+				continue;
+
+			byte[] term = this.encode(this.source == Source.VALUE ? entry.getValue().get() : key.getColumnQualifierData().toArray());
+			if ( term != null && range.contains(new Key(new Text(term))) )
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns whether the given column is indexed.
+	 */
+	private boolean isIndexed(byte[] columnFamily, byte[] columnQualifier) {
+		return Arrays.equals(this.columnFamily, columnFamily) && (this.columnQualifier == null || Arrays.equals(this.columnQualifier, columnQualifier));
+	}
+
+	/**
+	 * Encodes the given term, <code>null</code> if it is no number in a
+	 * number index.
+	 */
+	private byte[] encode(byte[] term) {
+		if ( this.type == Type.TERM )
+			return term;
+
+		try {
+			return encodeNumber(Double.parseDouble(new String(term, StandardCharsets.UTF_8)));
+		}
+		catch ( NumberFormatException e ) {
+			return null;
+		}
+	}
+
+	/**
+	 * Encodes the given number with {@link Codec#encodeSortableDouble(double)},
+	 * with <code>-0.0</code> as <code>0.0</code>.
+	 * @param number number
+	 * @return encoded number
+	 */
+	static byte[] encodeNumber(double number) {
+		return Codec.encodeSortableDouble(number == 0 ? 0.0 : number);
+	}
+}
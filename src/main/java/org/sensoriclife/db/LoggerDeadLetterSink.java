@@ -0,0 +1,16 @@
+package org.sensoriclife.db;
+
+import org.apache.accumulo.core.data.Mutation;
+import org.sensoriclife.Logger;
+
+/**
+ * Logs dead letters with error level.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class LoggerDeadLetterSink implements DeadLetterSink {
+	@Override
+	public void accept(String table, Mutation mutation, Exception cause) {
+		Logger.error(LoggerDeadLetterSink.class, "Could not write mutation with row " + new String(mutation.getRow()) + " and " + mutation.size() + " updates to table " + table + ": " + cause);
+	}
+}
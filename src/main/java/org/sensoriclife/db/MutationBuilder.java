@@ -0,0 +1,292 @@
+package org.sensoriclife.db;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.ColumnVisibility;
+import org.apache.hadoop.io.Text;
+
+/**
+ * Builds one mutation per row with any number of column updates, reusing its
+ * buffers between rows. Column families and qualifiers can be given as array
+ * slices or byte buffers and are copied into reusable buffers, small value
+ * slices likewise. Parsed column visibilities are cached. A builder is not
+ * thread-safe, use one per thread.
+ * <pre>
+ * Mutation m = builder.row(rowId).timestamp(t).put(family, qualifier, null, value).put(...).build();
+ * </pre>
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class MutationBuilder {
+	/**
+	 * empty column visibility
+	 */
+	public static final ColumnVisibility EMPTY_VISIBILITY = new ColumnVisibility();
+	/**
+	 * maximum number of cached column visibilities
+	 */
+	private static final int MAX_CACHED_VISIBILITIES = 1024;
+	/**
+	 * maximum length of value slices copied into reusable arrays
+	 */
+	private static final int MAX_SCRATCH_LENGTH = 64;
+	/**
+	 * cached column visibilities
+	 */
+	private static final ConcurrentMap<String, ColumnVisibility> visibilities = new ConcurrentHashMap<>();
+	/**
+	 * column family buffer
+	 */
+	private final Text family;
+	/**
+	 * column qualifier buffer
+	 */
+	private final Text qualifier;
+	/**
+	 * value wrapper
+	 */
+	private final Value value;
+	/**
+	 * reusable arrays for small value slices, by length
+	 */
+	private final byte[][] scratch;
+	/**
+	 * current mutation
+	 */
+	private Mutation mutation;
+	/**
+	 * timestamp of the next updates
+	 */
+	private long timestamp;
+
+	public MutationBuilder() {
+		this.family = new Text();
+		this.qualifier = new Text();
+		this.value = new Value();
+		this.scratch = new byte[MAX_SCRATCH_LENGTH + 1][];
+		this.mutation = null;
+		this.timestamp = 0;
+	}
+
+	/**
+	 * Returns the parsed column visibility of the given expression.
+	 * @param visibility column visibility expression, may be <code>null</code>
+	 * @return column visibility
+	 */
+	public static ColumnVisibility getColumnVisibility(String visibility) {
+		if ( visibility == null || visibility.isEmpty() )
+			return EMPTY_VISIBILITY;
+
+		ColumnVisibility colVis = visibilities.get(visibility);
+		if ( colVis == null ) {
+			colVis = new ColumnVisibility(visibility);
+			if ( visibilities.size() < MAX_CACHED_VISIBILITIES )
+				visibilities.putIfAbsent(visibility, colVis);
+		}
+
+		return colVis;
+	}
+
+	/**
+	 * Returns the parsed column visibility of the given expression.
+	 * @param visibility column visibility expression, may be <code>null</code>
+	 * @return column visibility
+	 */
+	public static ColumnVisibility getColumnVisibility(byte[] visibility) {
+		if ( visibility == null || visibility.length == 0 )
+			return EMPTY_VISIBILITY;
+
+		return getColumnVisibility(new String(visibility, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Starts a new row with the current time as timestamp.
+	 * @param rowId row id
+	 * @return this builder
+	 */
+	public MutationBuilder row(String rowId) {
+		this.mutation = new Mutation(rowId);
+		this.timestamp = System.currentTimeMillis();
+		return this;
+	}
+
+	/**
+	 * Starts a new row with the current time as timestamp.
+	 * @param rowId row id
+	 * @return this builder
+	 */
+	public MutationBuilder row(byte[] rowId) {
+		return this.row(rowId, 0, rowId.length);
+	}
+
+	/**
+	 * Starts a new row with the current time as timestamp.
+	 * @param rowId array with the row id
+	 * @param offset offset of the row id
+	 * @param length length of the row id
+	 * @return this builder
+	 */
+	public MutationBuilder row(byte[] rowId, int offset, int length) {
+		this.mutation = new Mutation(rowId, offset, length);
+		this.timestamp = System.currentTimeMillis();
+		return this;
+	}
+
+	/**
+	 * Starts a new row with the current time as timestamp.
+	 * @param rowId row id, from position to limit
+	 * @return this builder
+	 */
+	public MutationBuilder row(ByteBuffer rowId) {
+		if ( rowId.hasArray() )
+			return this.row(rowId.array(), rowId.arrayOffset() + rowId.position(), rowId.remaining());
+
+		byte[] bytes = new byte[rowId.remaining()];
+		rowId.duplicate().get(bytes);
+		return this.row(bytes);
+	}
+
+	/**
+	 * Sets the timestamp of the following updates.
+	 * @param timestamp timestamp
+	 * @return this builder
+	 */
+	public MutationBuilder timestamp(long timestamp) {
+		this.timestamp = timestamp;
+		return this;
+	}
+
+	/**
+	 * Adds a column update to the current row.
+	 * @param columnFamily column family
+	 * @param columnQualifier column qualifier
+	 * @param visibility column visibility or <code>null</code>
+	 * @param value value
+	 * @return this builder
+	 */
+	public MutationBuilder put(String columnFamily, String columnQualifier, String visibility, byte[] value) {
+		this.value.set(value);
+		this.mutation.put(columnFamily, columnQualifier, getColumnVisibility(visibility), this.timestamp, this.value);
+		return this;
+	}
+
+	/**
+	 * Adds a column update to the current row.
+	 * @param columnFamily column family
+	 * @param columnQualifier column qualifier
+	 * @param visibility column visibility or <code>null</code>
+	 * @param value value
+	 * @return this builder
+	 */
+	public MutationBuilder put(byte[] columnFamily, byte[] columnQualifier, String visibility, byte[] value) {
+		this.mutation.put(columnFamily, columnQualifier, getColumnVisibility(visibility), this.timestamp, value);
+		return this;
+	}
+
+	/**
+	 * Adds a column update to the current row.
+	 * @param columnFamily array with the column family
+	 * @param familyOffset offset of the column family
+	 * @param familyLength length of the column family
+	 * @param columnQualifier array with the column qualifier
+	 * @param qualifierOffset offset of the column qualifier
+	 * @param qualifierLength length of the column qualifier
+	 * @param visibility column visibility or <code>null</code>
+	 * @param value array with the value
+	 * @param valueOffset offset of the value
+	 * @param valueLength length of the value
+	 * @return this builder
+	 */
+	public MutationBuilder put(byte[] columnFamily, int familyOffset, int familyLength, byte[] columnQualifier, int qualifierOffset, int qualifierLength, String visibility, byte[] value, int valueOffset, int valueLength) {
+		this.family.set(columnFamily, familyOffset, familyLength);
+		this.qualifier.set(columnQualifier, qualifierOffset, qualifierLength);
+		this.value.set(this.slice(value, valueOffset, valueLength));
+		this.mutation.put(this.family, this.qualifier, getColumnVisibility(visibility), this.timestamp, this.value);
+		return this;
+	}
+
+	/**
+	 * Adds a column update to the current row.
+	 * @param columnFamily column family, from position to limit
+	 * @param columnQualifier column qualifier, from position to limit
+	 * @param visibility column visibility or <code>null</code>
+	 * @param value value, from position to limit
+	 * @return this builder
+	 */
+	public MutationBuilder put(ByteBuffer columnFamily, ByteBuffer columnQualifier, String visibility, ByteBuffer value) {
+		this.set(this.family, columnFamily);
+		this.set(this.qualifier, columnQualifier);
+
+		if ( value.hasArray() )
+			this.value.set(this.slice(value.array(), value.arrayOffset() + value.position(), value.remaining()));
+		else {
+			byte[] bytes = value.remaining() <= MAX_SCRATCH_LENGTH ? this.getScratch(value.remaining()) : new byte[value.remaining()];
+			value.duplicate().get(bytes);
+			this.value.set(bytes);
+		}
+
+		this.mutation.put(this.family, this.qualifier, getColumnVisibility(visibility), this.timestamp, this.value);
+		return this;
+	}
+
+	/**
+	 * Returns the mutation of the current row. The builder has to be started
+	 * with a new row afterwards.
+	 * @return mutation
+	 */
+	public Mutation build() {
+		Mutation m = this.mutation;
+		this.mutation = null;
+		return m;
+	}
+
+	/**
+	 * Returns the given slice as array, without copying if it spans the
+	 * whole array.
+	 */
+	private byte[] slice(byte[] bytes, int offset, int length) {
+		if ( offset == 0 && length == bytes.length )
+			return bytes;
+
+		if ( length <= MAX_SCRATCH_LENGTH ) {
+			byte[] s = this.getScratch(length);
+			System.arraycopy(bytes, offset, s, 0, length);
+			return s;
+		}
+
+		return Arrays.copyOfRange(bytes, offset, offset + length);
+	}
+
+	/**
+	 * Returns the reusable array of the given length.
+	 */
+	private byte[] getScratch(int length) {
+		if ( this.scratch[length] == null )
+			this.scratch[length] = new byte[length];
+
+		return this.scratch[length];
+	}
+
+	/**
+	 * Copies the given buffer into the text.
+	 */
+	private void set(Text text, ByteBuffer buffer) {
+		if ( buffer.hasArray() )
+			text.set(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+		else {
+			text.clear();
+			ByteBuffer b = buffer.duplicate();
+			byte[] bytes = this.getScratch(Math.min(b.remaining(), MAX_SCRATCH_LENGTH));
+			while ( b.hasRemaining() ) {
+				int length = Math.min(b.remaining(), bytes.length);
+				b.get(bytes, 0, length);
+				text.append(bytes, 0, length);
+			}
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package org.sensoriclife.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.accumulo.core.data.Mutation;
+
+/**
+ * Keeps the mutations added to a batch writer since its last successful
+ * flush, so they can be written again if the writer fails. Every mutation
+ * gets a sequence number, so a flush only trims the mutations added before
+ * it started, even if the buffer was drained and refilled in between.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+class ReplayBuffer {
+	/**
+	 * size limit in bytes
+	 */
+	private final long maxBytes;
+	/**
+	 * mutations in the order they were added
+	 */
+	private List<Mutation> mutations;
+	/**
+	 * size of the mutations in bytes
+	 */
+	private long bytes;
+	/**
+	 * sequence number of the oldest mutation
+	 */
+	private long first;
+	/**
+	 * sequence number of the next mutation
+	 */
+	private long next;
+
+	/**
+	 * @param maxBytes size limit in bytes
+	 */
+	ReplayBuffer(long maxBytes) {
+		this.maxBytes = maxBytes;
+		this.mutations = new ArrayList<>();
+		this.bytes = 0;
+		this.first = 0;
+		this.next = 0;
+	}
+
+	/**
+	 * Adds the mutation.
+	 * @param mutation mutation
+	 * @return whether the buffer exceeds its limit and has to be flushed
+	 */
+	synchronized boolean add(Mutation mutation) {
+		this.mutations.add(mutation);
+		this.bytes += mutation.numBytes();
+		this.next++;
+		return this.bytes > this.maxBytes;
+	}
+
+	/**
+	 * @return number of mutations
+	 */
+	synchronized int size() {
+		return this.mutations.size();
+	}
+
+	/**
+	 * Returns the sequence number of the next mutation, taken before a flush
+	 * to trim the mutations it covers.
+	 * @return sequence number
+	 */
+	synchronized long mark() {
+		return this.next;
+	}
+
+	/**
+	 * Removes the mutations added before the given mark after they are
+	 * flushed. Mutations already drained are skipped.
+	 * @param mark mark taken before the flush
+	 */
+	synchronized void trim(long mark) {
+		if ( mark <= this.first )
+			return;
+
+		int count = (int)Math.min(mark - this.first, this.mutations.size());
+		this.first += count;
+		if ( count == this.mutations.size() ) {
+			this.mutations = new ArrayList<>();
+			this.bytes = 0;
+			return;
+		}
+
+		List<Mutation> flushed = this.mutations.subList(0, count);
+		for ( Mutation mutation : flushed )
+			this.bytes -= mutation.numBytes();
+		flushed.clear();
+	}
+
+	/**
+	 * Removes and returns all mutations.
+	 * @return mutations
+	 */
+	synchronized List<Mutation> drain() {
+		List<Mutation> drained = this.mutations;
+		this.mutations = new ArrayList<>();
+		this.bytes = 0;
+		this.first = this.next;
+		return drained;
+	}
+}
@@ -0,0 +1,169 @@
+package org.sensoriclife.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.iterators.user.AgeOffFilter;
+import org.apache.accumulo.core.iterators.user.ColumnAgeOffFilter;
+import org.sensoriclife.Config;
+
+/**
+ * Retention of a table: a time to live for all entries, time to lives per
+ * column family and the maximum number of versions. Expired entries are
+ * hidden from scans and removed by compactions. A table's policy is read from
+ * the config with the keys
+ * <pre>
+ * accumulo.retention.&lt;table&gt;.ttl = 31536000000
+ * accumulo.retention.&lt;table&gt;.family_ttl = electricity:2592000000,water:86400000
+ * accumulo.retention.&lt;table&gt;.max_versions = 1
+ * </pre>
+ * Time to lives are in milliseconds and relative to the key timestamps.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class RetentionPolicy {
+	/**
+	 * priority of the age-off filters, before the aggregations so expired
+	 * readings are not combined
+	 */
+	public static final int PRIORITY = 5;
+	/**
+	 * name of the age-off filter of all entries
+	 */
+	public static final String AGE_OFF = "ageoff";
+	/**
+	 * name of the age-off filter per column family
+	 */
+	public static final String COLUMN_AGE_OFF = "columnageoff";
+	/**
+	 * time to live of all entries, <code>0</code> for none
+	 */
+	private long ttl;
+	/**
+	 * time to live per column family
+	 */
+	private final Map<String, Long> familyTtls;
+	/**
+	 * maximum number of versions, <code>0</code> to keep the table setting
+	 */
+	private int maxVersions;
+
+	public RetentionPolicy() {
+		this.ttl = 0;
+		this.familyTtls = new LinkedHashMap<>();
+		this.maxVersions = 0;
+	}
+
+	/**
+	 * Reads the policy of the given table from the config.
+	 * @param table table
+	 * @return retention policy
+	 */
+	public static RetentionPolicy fromConfig(String table) {
+		RetentionPolicy policy = new RetentionPolicy();
+
+		String value = getProperty(table, "ttl");
+		if ( value != null )
+			policy.setTtl(Long.parseLong(value));
+
+		value = getProperty(table, "family_ttl");
+		if ( value != null ) {
+			for ( String family : value.split(",") ) {
+				int separator = family.lastIndexOf(':');
+				if ( separator == -1 )
+					throw new IllegalArgumentException("Invalid column family time to live: " + family);
+				policy.setTtl(family.substring(0, separator).trim(), Long.parseLong(family.substring(separator + 1).trim()));
+			}
+		}
+
+		value = getProperty(table, "max_versions");
+		if ( value != null )
+			policy.setMaxVersions(Integer.parseInt(value));
+
+		return policy;
+	}
+
+	/**
+	 * Returns the given retention property or <code>null</code> if it is not
+	 * set.
+	 */
+	private static String getProperty(String table, String key) {
+		String value = Config.getProperty("accumulo.retention." + table + "." + key);
+		return value == null || value.trim().isEmpty() ? null : value.trim();
+	}
+
+	/**
+	 * Sets the time to live of all entries.
+	 * @param ttl time to live in milliseconds, <code>0</code> for none
+	 * @return this policy
+	 */
+	public RetentionPolicy setTtl(long ttl) {
+		if ( ttl < 0 )
+			throw new IllegalArgumentException("The time to live must not be negative.");
+		this.ttl = ttl;
+		return this;
+	}
+
+	/**
+	 * Sets the time to live of the entries in the given column family.
+	 * @param columnFamily column family
+	 * @param ttl time to live in milliseconds
+	 * @return this policy
+	 */
+	public RetentionPolicy setTtl(String columnFamily, long ttl) {
+		if ( ttl <= 0 )
+			throw new IllegalArgumentException("The time to live must be positive.");
+		this.familyTtls.put(columnFamily, ttl);
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of versions per key.
+	 * @param maxVersions maximum number of versions, <code>0</code> to keep
+	 * the table setting
+	 * @return this policy
+	 */
+	public RetentionPolicy setMaxVersions(int maxVersions) {
+		if ( maxVersions < 0 )
+			throw new IllegalArgumentException("The maximum number of versions must not be negative.");
+		this.maxVersions = maxVersions;
+		return this;
+	}
+
+	public long getTtl() {
+		return this.ttl;
+	}
+
+	public Map<String, Long> getFamilyTtls() {
+		return Collections.unmodifiableMap(this.familyTtls);
+	}
+
+	public int getMaxVersions() {
+		return this.maxVersions;
+	}
+
+	/**
+	 * Returns the age-off filters of this policy.
+	 * @return iterator settings
+	 */
+	public List<IteratorSetting> getIteratorSettings() {
+		List<IteratorSetting> settings = new ArrayList<>();
+		if ( this.ttl > 0 ) {
+			IteratorSetting setting = new IteratorSetting(PRIORITY, AGE_OFF, AgeOffFilter.class);
+			AgeOffFilter.setTTL(setting, this.ttl);
+			settings.add(setting);
+		}
+
+		if ( !this.familyTtls.isEmpty() ) {
+			IteratorSetting setting = new IteratorSetting(PRIORITY + 1, COLUMN_AGE_OFF, ColumnAgeOffFilter.class);
+			for ( Map.Entry<String, Long> family : this.familyTtls.entrySet() )
+				ColumnAgeOffFilter.addTTL(setting, new IteratorSetting.Column(family.getKey()), family.getValue());
+			settings.add(setting);
+		}
+
+		return settings;
+	}
+}
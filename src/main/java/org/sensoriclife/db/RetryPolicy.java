@@ -0,0 +1,59 @@
+package org.sensoriclife.db;
+
+/**
+ * Exponential backoff for replaying rejected mutations: the n-th attempt
+ * waits <code>initialBackoff * 2^(n-1)</code> milliseconds, at most
+ * <code>maxBackoff</code>.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class RetryPolicy {
+	/**
+	 * maximum number of attempts
+	 */
+	private final int maxAttempts;
+	/**
+	 * backoff before the first attempt in milliseconds
+	 */
+	private final long initialBackoff;
+	/**
+	 * maximum backoff in milliseconds
+	 */
+	private final long maxBackoff;
+
+	/**
+	 * @param maxAttempts maximum number of attempts
+	 * @param initialBackoff backoff before the first attempt in milliseconds
+	 * @param maxBackoff maximum backoff in milliseconds
+	 */
+	public RetryPolicy(int maxAttempts, long initialBackoff, long maxBackoff) {
+		if ( maxAttempts <= 0 )
+			throw new IllegalArgumentException("The number of attempts must be positive.");
+		if ( initialBackoff < 0 || maxBackoff < initialBackoff )
+			throw new IllegalArgumentException("The backoff must not be negative and not exceed the maximum backoff.");
+
+		this.maxAttempts = maxAttempts;
+		this.initialBackoff = initialBackoff;
+		this.maxBackoff = maxBackoff;
+	}
+
+	/**
+	 * @return the maximum number of attempts
+	 */
+	public int getMaxAttempts() {
+		return this.maxAttempts;
+	}
+
+	/**
+	 * Returns the backoff before the given attempt.
+	 * @param attempt attempt, starting with <code>1</code>
+	 * @return backoff in milliseconds
+	 */
+	public long getBackoff(int attempt) {
+		long backoff = this.initialBackoff;
+		for ( int i = 1; i < attempt && backoff < this.maxBackoff; i++ )
+			backoff = backoff > this.maxBackoff / 2 ? this.maxBackoff : backoff * 2;
+
+		return backoff;
+	}
+}
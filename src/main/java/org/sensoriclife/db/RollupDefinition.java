@@ -0,0 +1,293 @@
+package org.sensoriclife.db;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.apache.accumulo.core.data.ColumnUpdate;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.apache.hadoop.io.Text;
+import org.sensoriclife.Config;
+
+/**
+ * Pre-aggregated readings of one column family per meter and period. For
+ * every granularity the readings are aggregated into the rollup table
+ * <code>&lt;table&gt;_rollup_&lt;family&gt;_&lt;granularity&gt;</code>:
+ * <pre>meterId : family_aggregation : periodStart</pre>
+ * where the combiners of the {@link Aggregation}s merge the increments of all
+ * writers. Every write is counted, so the source table must keep all
+ * versions of a reading. A write that the batch writer of a rollup table
+ * rejects is written again from its replay buffer (see
+ * {@link Accumulo#setRetryPolicy(RetryPolicy)}), and increments that had
+ * already reached the tablet servers before the failure are then counted
+ * twice.
+ * <p>
+ * Readings are decimal strings. They are multiplied with the scale and
+ * rolled up as longs, so with a scale of <code>1000</code> readings in kWh
+ * are rolled up in Wh. Readings that are no whole number after scaling are
+ * rejected. A definition is read from the config with the keys
+ * <pre>
+ * accumulo.rollup.&lt;table&gt;.&lt;family&gt;.granularities = hour,day,month
+ * accumulo.rollup.&lt;table&gt;.&lt;family&gt;.aggregations = sum,count
+ * accumulo.rollup.&lt;table&gt;.&lt;family&gt;.scale = 1000
+ * </pre>
+ * where the scale is optional and defaults to <code>1</code>.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class RollupDefinition {
+	/**
+	 * rolled up column family
+	 */
+	private final String columnFamily;
+	/**
+	 * granularities
+	 */
+	private final Set<Granularity> granularities;
+	/**
+	 * aggregations
+	 */
+	private final Set<Aggregation> aggregations;
+	/**
+	 * schema of the source table, <code>null</code> if the row ids are the
+	 * meter ids and the key timestamps the reading times
+	 */
+	private final TimeSeriesSchema schema;
+	/**
+	 * factor of the readings to the rolled up unit
+	 */
+	private final long scale;
+	/**
+	 * column family per aggregation in the rollup tables
+	 */
+	private final Map<Aggregation, Text> families;
+
+	/**
+	 * @param columnFamily rolled up column family
+	 * @param granularities granularities
+	 * @param aggregations aggregations
+	 * @param schema schema of the source table or <code>null</code> if the
+	 * row ids are the meter ids and the key timestamps the reading times
+	 */
+	public RollupDefinition(String columnFamily, Set<Granularity> granularities, Set<Aggregation> aggregations, TimeSeriesSchema schema) {
+		this(columnFamily, granularities, aggregations, schema, 1);
+	}
+
+	/**
+	 * @param columnFamily rolled up column family
+	 * @param granularities granularities
+	 * @param aggregations aggregations
+	 * @param schema schema of the source table or <code>null</code> if the
+	 * row ids are the meter ids and the key timestamps the reading times
+	 * @param scale factor of the readings to the rolled up unit
+	 */
+	public RollupDefinition(String columnFamily, Set<Granularity> granularities, Set<Aggregation> aggregations, TimeSeriesSchema schema, long scale) {
+		if ( granularities.isEmpty() || aggregations.isEmpty() )
+			throw new IllegalArgumentException("A rollup needs at least one granularity and aggregation.");
+		if ( scale <= 0 )
+			throw new IllegalArgumentException("The scale must be positive.");
+
+		this.columnFamily = columnFamily;
+		this.granularities = EnumSet.copyOf(granularities);
+		this.aggregations = EnumSet.copyOf(aggregations);
+		this.schema = schema;
+		this.scale = scale;
+		this.families = new EnumMap<>(Aggregation.class);
+		for ( Aggregation aggregation : this.aggregations )
+			this.families.put(aggregation, new Text(columnFamily + "_" + aggregation.name().toLowerCase()));
+	}
+
+	/**
+	 * Reads the rollup of the given column family of the given table from the
+	 * config.
+	 * @param table table
+	 * @param columnFamily column family
+	 * @param schema schema of the table or <code>null</code>
+	 * @return rollup definition
+	 */
+	public static RollupDefinition fromConfig(String table, String columnFamily, TimeSeriesSchema schema) {
+		Set<Granularity> granularities = EnumSet.noneOf(Granularity.class);
+		for ( String granularity : Config.getProperty("accumulo.rollup." + table + "." + columnFamily + ".granularities").split(",") )
+			granularities.add(Granularity.valueOf(granularity.trim().toUpperCase()));
+
+		Set<Aggregation> aggregations = EnumSet.noneOf(Aggregation.class);
+		for ( String aggregation : Config.getProperty("accumulo.rollup." + table + "." + columnFamily + ".aggregations").split(",") )
+			aggregations.add(Aggregation.valueOf(aggregation.trim().toUpperCase()));
+
+		String scale = Config.getProperty("accumulo.rollup." + table + "." + columnFamily + ".scale");
+		return new RollupDefinition(columnFamily, granularities, aggregations, schema, scale == null || scale.isEmpty() ? 1 : Long.parseLong(scale.trim()));
+	}
+
+	public String getColumnFamily() {
+		return this.columnFamily;
+	}
+
+	public Set<Granularity> getGranularities() {
+		return this.granularities;
+	}
+
+	public Set<Aggregation> getAggregations() {
+		return this.aggregations;
+	}
+
+	public TimeSeriesSchema getSchema() {
+		return this.schema;
+	}
+
+	public long getScale() {
+		return this.scale;
+	}
+
+	/**
+	 * Returns the rollup table of the given table and granularity.
+	 * @param table table
+	 * @param granularity granularity
+	 * @return rollup table
+	 */
+	public String getRollupTable(String table, Granularity granularity) {
+		return table + "_rollup_" + this.columnFamily + "_" + granularity.name().toLowerCase();
+	}
+
+	/**
+	 * Returns the column family of the given aggregation in the rollup
+	 * tables.
+	 * @param aggregation aggregation
+	 * @return column family
+	 */
+	public Text getColumnFamily(Aggregation aggregation) {
+		return this.families.get(aggregation);
+	}
+
+	/**
+	 * Returns the aggregations per rollup column family, for the creation of
+	 * the rollup tables.
+	 * @return aggregation per column family
+	 */
+	public Map<String, Aggregation> getColumnAggregations() {
+		Map<String, Aggregation> columns = new LinkedHashMap<>();
+		for ( Map.Entry<Aggregation, Text> family : this.families.entrySet() )
+			columns.put(family.getValue().toString(), family.getKey());
+		return columns;
+	}
+
+	/**
+	 * Returns the increments of the given mutation per granularity.
+	 * @param mutation mutation of the source table
+	 * @return rollup mutation per granularity, empty if nothing is rolled up
+	 * @throws IllegalArgumentException if a reading is no whole number after
+	 * scaling
+	 */
+	public Map<Granularity, Mutation> getRollupMutations(Mutation mutation) {
+		Map<Granularity, Mutation> mutations = new EnumMap<>(Granularity.class);
+		byte[] family = this.columnFamily.getBytes(StandardCharsets.UTF_8);
+		String meterId = null;
+		for ( ColumnUpdate update : mutation.getUpdates() ) {
+			if ( update.isDeleted() || !Arrays.equals(family, update.getColumnFamily()) )
+				continue;
+
+			Long reading = this.parse(update.getValue());
+			if ( reading == null )
+				continue;
+
+			long timestamp;
+			if ( this.schema == null )
+				timestamp = update.hasTimestamp() ? update.getTimestamp() : System.currentTimeMillis();
+			else {
+				try {
+					timestamp = Long.MAX_VALUE - Long.parseLong(new String(update.getColumnQualifier(), StandardCharsets.UTF_8));
+				}
+				catch ( NumberFormatException e ) {
+					continue;
+				}
+			}
+
+			if ( meterId == null ) {
+				String rowId = new String(mutation.getRow(), StandardCharsets.UTF_8);
+				meterId = this.schema == null ? rowId : this.schema.getMeterId(rowId);
+			}
+
+			for ( Granularity granularity : this.granularities ) {
+				Mutation m = mutations.get(granularity);
+				if ( m == null ) {
+					m = new Mutation(meterId);
+					mutations.put(granularity, m);
+				}
+
+				Text period = getColumnQualifier(granularity.getStart(timestamp));
+				for ( Aggregation aggregation : this.aggregations )
+					m.put(this.families.get(aggregation), period, aggregation.toValue(reading));
+			}
+		}
+
+		return mutations;
+	}
+
+	/**
+	 * Returns the column qualifier of the period with the given start.
+	 * @param start period start
+	 * @return column qualifier
+	 */
+	public static Text getColumnQualifier(long start) {
+		return new Text(String.format("%019d", start));
+	}
+
+	/**
+	 * Returns the period start of the given rollup key.
+	 * @param key key
+	 * @return period start
+	 */
+	public static long getStart(Key key) {
+		return Long.parseLong(key.getColumnQualifier().toString());
+	}
+
+	/**
+	 * Parses a reading and multiplies it with the scale, <code>null</code> if
+	 * it is no number.
+	 * @param value reading
+	 * @return scaled reading
+	 * @throws IllegalArgumentException if the reading is no whole number
+	 * after scaling or too large
+	 */
+	public Long parse(byte[] value) {
+		String reading = new String(value, StandardCharsets.UTF_8).trim();
+		if ( this.scale == 1 ) {
+			try {
+				return Long.parseLong(reading);
+			}
+			catch ( NumberFormatException e ) {}
+		}
+
+		BigDecimal number;
+		try {
+			number = new BigDecimal(reading);
+		}
+		catch ( NumberFormatException e ) {
+			return null;
+		}
+
+		try {
+			return number.multiply(BigDecimal.valueOf(this.scale)).longValueExact();
+		}
+		catch ( ArithmeticException e ) {
+			throw new IllegalArgumentException("Reading " + reading + " of " + this.columnFamily + " is no whole number with scale " + this.scale + ".");
+		}
+	}
+
+	/**
+	 * Parses a reading and multiplies it with the scale, <code>null</code> if
+	 * it is no number.
+	 * @param value reading
+	 * @return scaled reading
+	 * @throws IllegalArgumentException if the reading is no whole number
+	 * after scaling or too large
+	 */
+	public Long parse(Value value) {
+		return this.parse(value.get());
+	}
+}
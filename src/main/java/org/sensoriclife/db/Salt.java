@@ -0,0 +1,122 @@
+package org.sensoriclife.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import org.apache.accumulo.core.data.Range;
+import org.apache.hadoop.io.Text;
+
+/**
+ * Spreads row ids over a fixed number of buckets by prefixing them with a
+ * zero-padded bucket number derived from a hash:
+ * <pre>bucket SEPARATOR rowId</pre>
+ * Tables pre-split with {@link #getSplits()} start with one tablet per bucket,
+ * so monotonically increasing row ids are written to all tablets at once.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class Salt {
+	/**
+	 * separator between bucket and row id
+	 */
+	public static final char SEPARATOR = '\u0000';
+	/**
+	 * number of buckets
+	 */
+	private final int buckets;
+	/**
+	 * format of the bucket numbers
+	 */
+	private final String format;
+
+	/**
+	 * @param buckets number of buckets
+	 */
+	public Salt(int buckets) {
+		if ( buckets <= 0 )
+			throw new IllegalArgumentException("The number of buckets must be positive.");
+
+		this.buckets = buckets;
+		this.format = "%0" + String.valueOf(buckets - 1).length() + "d";
+	}
+
+	/**
+	 * @return the number of buckets
+	 */
+	public int getBuckets() {
+		return this.buckets;
+	}
+
+	/**
+	 * Returns the bucket of the given key.
+	 * @param key key
+	 * @return bucket
+	 */
+	public int getBucket(String key) {
+		return (key.hashCode() & Integer.MAX_VALUE) % this.buckets;
+	}
+
+	/**
+	 * Returns the prefix of the given bucket.
+	 * @param bucket bucket
+	 * @return prefix
+	 */
+	public String getPrefix(int bucket) {
+		return String.format(this.format, bucket) + SEPARATOR;
+	}
+
+	/**
+	 * Returns the prefix for the given key.
+	 * @param key key
+	 * @return prefix
+	 */
+	public String getPrefix(String key) {
+		return this.getPrefix(this.getBucket(key));
+	}
+
+	/**
+	 * Returns the salted row id.
+	 * @param rowId row id
+	 * @return salted row id
+	 */
+	public String salt(String rowId) {
+		return this.getPrefix(rowId) + rowId;
+	}
+
+	/**
+	 * Returns the row id without the salt.
+	 * @param rowId salted row id
+	 * @return row id
+	 */
+	public String unsalt(String rowId) {
+		return rowId.substring(rowId.indexOf(SEPARATOR) + 1);
+	}
+
+	/**
+	 * Returns the split points that give every bucket its own tablet.
+	 * @return split points
+	 */
+	public SortedSet<Text> getSplits() {
+		SortedSet<Text> splits = new TreeSet<>();
+		for ( int i = 1; i < this.buckets; i++ )
+			splits.add(new Text(String.format(this.format, i)));
+
+		return splits;
+	}
+
+	/**
+	 * Returns the ranges that cover the given (unsalted) row ids in every
+	 * bucket, to be scanned with a batch scanner.
+	 * @param startRow first row id (inclusive)
+	 * @param endRow last row id (inclusive)
+	 * @return ranges
+	 */
+	public List<Range> getRanges(String startRow, String endRow) {
+		List<Range> ranges = new ArrayList<>();
+		for ( int i = 0; i < this.buckets; i++ )
+			ranges.add(new Range(this.getPrefix(i) + startRow, true, this.getPrefix(i) + endRow, true));
+
+		return ranges;
+	}
+}
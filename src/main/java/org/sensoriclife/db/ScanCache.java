@@ -0,0 +1,578 @@
+package org.sensoriclife.db;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.PartialKey;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.hadoop.io.Text;
+
+/**
+ * Client-side cache of scan results keyed by table, range, columns,
+ * authorizations and entry limit. The least recently used results are
+ * evicted once the number of results or their total size exceeds its limit,
+ * and results expire after a time to live. Writes through {@link Accumulo}
+ * invalidate every cached result and every running scan whose range
+ * overlaps the written row. A write only becomes visible once the batch
+ * writer flushes it, so the rows written since the last explicit flush are
+ * invalidated again once the flush succeeded. A result cached between a
+ * write and a flush done by the batch writer on its own can return the old
+ * state until the next explicit flush or until it expires.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class ScanCache implements ScanCacheMXBean {
+	/**
+	 * Identifies a scan.
+	 */
+	private static class CacheKey {
+		private final String table;
+		private final Authorizations auths;
+		private final Range range;
+		private final String columnFamily;
+		private final String columnQualifier;
+		private final int limit;
+
+		private CacheKey(String table, Authorizations auths, Range range, String columnFamily, String columnQualifier, int limit) {
+			this.table = table;
+			this.auths = auths;
+			this.range = range;
+			this.columnFamily = columnFamily;
+			this.columnQualifier = columnQualifier;
+			this.limit = limit;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = this.table.hashCode();
+			hash = 31 * hash + this.auths.hashCode();
+			hash = 31 * hash + this.range.hashCode();
+			hash = 31 * hash + (this.columnFamily == null ? 0 : this.columnFamily.hashCode());
+			hash = 31 * hash + (this.columnQualifier == null ? 0 : this.columnQualifier.hashCode());
+			return 31 * hash + this.limit;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if ( !(obj instanceof CacheKey) )
+				return false;
+
+			CacheKey other = (CacheKey)obj;
+			return this.table.equals(other.table) && this.auths.equals(other.auths) && this.range.equals(other.range) && this.limit == other.limit
+					&& (this.columnFamily == null ? other.columnFamily == null : this.columnFamily.equals(other.columnFamily))
+					&& (this.columnQualifier == null ? other.columnQualifier == null : this.columnQualifier.equals(other.columnQualifier));
+		}
+	}
+
+	/**
+	 * Cached result.
+	 */
+	private static class CachedScan {
+		private final List<Entry<Key, Value>> entries;
+		private final long bytes;
+		private final long expires;
+
+		private CachedScan(List<Entry<Key, Value>> entries, long bytes, long expires) {
+			this.entries = entries;
+			this.bytes = bytes;
+			this.expires = expires;
+		}
+	}
+
+	/**
+	 * Cached results and running scans of one table.
+	 */
+	private static class TableIndex {
+		private final Set<CacheKey> keys = new HashSet<>();
+		private final Set<Recorder> recorders = new HashSet<>();
+	}
+
+	/**
+	 * Collects the entries of a running scan and caches them once the scan is
+	 * complete, unless a write to its range happened in between.
+	 */
+	class Recorder {
+		private final CacheKey key;
+		private final List<Entry<Key, Value>> entries;
+		private long bytes;
+		private boolean stale;
+		private boolean done;
+
+		private Recorder(CacheKey key) {
+			this.key = key;
+			this.entries = new ArrayList<>();
+			this.bytes = 0;
+			this.stale = false;
+			this.done = false;
+		}
+
+		/**
+		 * Adds the entry, the result is not cached if it gets too large.
+		 * @param entry entry
+		 */
+		void add(Entry<Key, Value> entry) {
+			if ( this.done )
+				return;
+
+			this.bytes += entry.getKey().getSize() + entry.getValue().getSize();
+			if ( this.bytes > ScanCache.this.maxResultBytes )
+				this.abandon();
+			else
+				this.entries.add(new SimpleImmutableEntry<>(entry.getKey(), entry.getValue()));
+		}
+
+		/**
+		 * @return whether the entry limit is reached
+		 */
+		boolean isFull() {
+			return this.key.limit > 0 && this.entries.size() >= this.key.limit;
+		}
+
+		/**
+		 * Caches the collected entries.
+		 */
+		void finish() {
+			ScanCache.this.finish(this);
+		}
+
+		/**
+		 * Discards the collected entries.
+		 */
+		void abandon() {
+			ScanCache.this.abandon(this);
+		}
+	}
+
+	/**
+	 * Rows of one table written since the last explicit flush. Writers add
+	 * to it without a lock; once a flush took it, writers move on to a new
+	 * one.
+	 */
+	static class PendingRows {
+		private final Set<ByteBuffer> rows = Collections.newSetFromMap(new ConcurrentHashMap<ByteBuffer, Boolean>());
+		private final AtomicInteger size = new AtomicInteger();
+		private volatile boolean overflow = false;
+		private volatile boolean taken = false;
+
+		/**
+		 * Adds the row, beyond the maximum only the overflow is kept.
+		 * @param row row id
+		 * @return <code>false</code> if a flush took the rows meanwhile
+		 */
+		private boolean add(byte[] row) {
+			if ( !this.overflow && this.rows.add(ByteBuffer.wrap(row)) && this.size.incrementAndGet() > MAX_PENDING_ROWS ) {
+				this.overflow = true;
+				this.rows.clear();
+			}
+
+			return !this.taken;
+		}
+	}
+
+	/**
+	 * maximum number of pending rows per table, beyond the whole table is
+	 * invalidated on flush
+	 */
+	private static final int MAX_PENDING_ROWS = 4096;
+	/**
+	 * maximum number of cached results
+	 */
+	private final int maxEntries;
+	/**
+	 * maximum size of all cached results in bytes
+	 */
+	private final long maxBytes;
+	/**
+	 * maximum size of one cached result in bytes, an eighth of the cache
+	 */
+	private final long maxResultBytes;
+	/**
+	 * time to live in milliseconds
+	 */
+	private final long ttl;
+	/**
+	 * cached results in access order
+	 */
+	private final LinkedHashMap<CacheKey, CachedScan> cache;
+	/**
+	 * cached results and running scans per table
+	 */
+	private final ConcurrentMap<String, TableIndex> tables;
+	/**
+	 * hits
+	 */
+	private final AtomicLong hits;
+	/**
+	 * misses
+	 */
+	private final AtomicLong misses;
+	/**
+	 * evictions because of size or age
+	 */
+	private final AtomicLong evictions;
+	/**
+	 * invalidated results
+	 */
+	private final AtomicLong invalidations;
+	/**
+	 * rows written since the last explicit flush per table
+	 */
+	private final ConcurrentMap<String, PendingRows> pending;
+	/**
+	 * size of all cached results in bytes
+	 */
+	private long bytes;
+
+	/**
+	 * @param maxEntries maximum number of cached results
+	 * @param maxBytes maximum size of all cached results in bytes
+	 * @param ttl time to live in milliseconds
+	 */
+	public ScanCache(int maxEntries, long maxBytes, long ttl) {
+		if ( maxEntries <= 0 || maxBytes <= 0 || ttl <= 0 )
+			throw new IllegalArgumentException("The cache limits and time to live must be positive.");
+
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+		this.maxResultBytes = Math.max(1, maxBytes / 8);
+		this.ttl = ttl;
+		this.cache = new LinkedHashMap<>(16, 0.75f, true);
+		this.tables = new ConcurrentHashMap<>();
+		this.hits = new AtomicLong();
+		this.misses = new AtomicLong();
+		this.evictions = new AtomicLong();
+		this.invalidations = new AtomicLong();
+		this.pending = new ConcurrentHashMap<>();
+		this.bytes = 0;
+	}
+
+	/**
+	 * Returns the cached result of the given scan.
+	 * @param table table
+	 * @param auths authorizations
+	 * @param range range
+	 * @param columnFamily column family or <code>null</code> for all
+	 * @param columnQualifier column qualifier or <code>null</code> for all
+	 * @param limit maximum number of entries, <code>0</code> for all
+	 * @return entries or <code>null</code> if not cached
+	 */
+	public synchronized List<Entry<Key, Value>> get(String table, Authorizations auths, Range range, String columnFamily, String columnQualifier, int limit) {
+		CacheKey key = new CacheKey(table, auths, range, columnFamily, columnQualifier, limit);
+		CachedScan cached = this.cache.get(key);
+		if ( cached != null && cached.expires < System.currentTimeMillis() ) {
+			this.remove(key);
+			this.evictions.incrementAndGet();
+			cached = null;
+		}
+
+		if ( cached == null ) {
+			this.misses.incrementAndGet();
+			return null;
+		}
+
+		this.hits.incrementAndGet();
+		return cached.entries;
+	}
+
+	/**
+	 * Removes every cached result of the given table whose range overlaps the
+	 * given row, and keeps running scans over it from being cached.
+	 * @param table table
+	 * @param row row id
+	 */
+	public void invalidate(String table, byte[] row) {
+		if ( !this.tables.containsKey(table) )
+			return;
+
+		Key first = new Key(new Text(row));
+		Key next = first.followingKey(PartialKey.ROW);
+		synchronized ( this ) {
+			TableIndex index = this.tables.get(table);
+			if ( index == null )
+				return;
+
+			for ( Recorder recorder : index.recorders )
+				if ( overlaps(recorder.key.range, first, next) )
+					recorder.stale = true;
+
+			List<CacheKey> invalid = new ArrayList<>();
+			for ( CacheKey key : index.keys )
+				if ( overlaps(key.range, first, next) )
+					invalid.add(key);
+
+			for ( CacheKey key : invalid )
+				this.remove(key);
+			this.invalidations.addAndGet(invalid.size());
+		}
+	}
+
+	/**
+	 * Invalidates the given written row and keeps it until the next flush of
+	 * the table, see {@link #takePending(String)}. The cache lock is only
+	 * taken if the table has cached results or running scans.
+	 * @param table table
+	 * @param row row id
+	 */
+	public void written(String table, byte[] row) {
+		this.invalidate(table, row);
+
+		while ( true ) {
+			PendingRows rows = this.pending.get(table);
+			if ( rows == null ) {
+				rows = new PendingRows();
+				PendingRows existing = this.pending.putIfAbsent(table, rows);
+				if ( existing != null )
+					rows = existing;
+			}
+
+			if ( rows.add(row) )
+				return;
+		}
+	}
+
+	/**
+	 * Removes and returns the rows of the given table written since the last
+	 * flush, to be invalidated once the flush started now succeeded.
+	 * @param table table
+	 * @return pending rows or <code>null</code> if there are none
+	 */
+	PendingRows takePending(String table) {
+		PendingRows rows = this.pending.remove(table);
+		if ( rows != null )
+			rows.taken = true;
+
+		return rows;
+	}
+
+	/**
+	 * Removes and returns the rows of all tables written since the last
+	 * flush.
+	 * @return pending rows per table
+	 */
+	Map<String, PendingRows> takePending() {
+		Map<String, PendingRows> rows = new HashMap<>();
+		for ( String table : this.pending.keySet() ) {
+			PendingRows tableRows = this.takePending(table);
+			if ( tableRows != null )
+				rows.put(table, tableRows);
+		}
+
+		return rows;
+	}
+
+	/**
+	 * Invalidates the given rows after they were flushed.
+	 * @param table table
+	 * @param rows pending rows or <code>null</code>
+	 */
+	void flushed(String table, PendingRows rows) {
+		if ( rows == null )
+			return;
+
+		if ( rows.overflow )
+			this.invalidate(table);
+		else
+			for ( ByteBuffer row : rows.rows )
+				this.invalidate(table, row.array());
+	}
+
+	/**
+	 * Removes every cached result of the given table.
+	 * @param table table
+	 */
+	public synchronized void invalidate(String table) {
+		TableIndex index = this.tables.get(table);
+		if ( index == null )
+			return;
+
+		for ( Recorder recorder : index.recorders )
+			recorder.stale = true;
+
+		List<CacheKey> invalid = new ArrayList<>(index.keys);
+		for ( CacheKey key : invalid )
+			this.remove(key);
+		this.invalidations.addAndGet(invalid.size());
+	}
+
+	@Override
+	public synchronized void clear() {
+		for ( TableIndex index : this.tables.values() )
+			for ( Recorder recorder : index.recorders )
+				recorder.stale = true;
+
+		this.invalidations.addAndGet(this.cache.size());
+		for ( CacheKey key : new ArrayList<>(this.cache.keySet()) )
+			this.remove(key);
+	}
+
+	@Override
+	public long getHits() {
+		return this.hits.get();
+	}
+
+	@Override
+	public long getMisses() {
+		return this.misses.get();
+	}
+
+	@Override
+	public double getHitRate() {
+		long h = this.hits.get();
+		long total = h + this.misses.get();
+		return total == 0 ? 0 : (double)h / total;
+	}
+
+	@Override
+	public long getEvictions() {
+		return this.evictions.get();
+	}
+
+	@Override
+	public long getInvalidations() {
+		return this.invalidations.get();
+	}
+
+	@Override
+	public synchronized int getSize() {
+		return this.cache.size();
+	}
+
+	@Override
+	public synchronized long getBytes() {
+		return this.bytes;
+	}
+
+	@Override
+	public String toString() {
+		return "ScanCache: size=" + this.getSize() + ", bytes=" + this.getBytes() + ", hits=" + this.getHits() + ", misses=" + this.getMisses()
+				+ ", hitRate=" + this.getHitRate() + ", evictions=" + this.getEvictions() + ", invalidations=" + this.getInvalidations();
+	}
+
+	/**
+	 * Starts recording a scan, its result is cached once it is complete.
+	 * @param table table
+	 * @param auths authorizations
+	 * @param range range
+	 * @param columnFamily column family or <code>null</code> for all
+	 * @param columnQualifier column qualifier or <code>null</code> for all
+	 * @param limit maximum number of entries, <code>0</code> for all
+	 * @return recorder
+	 */
+	synchronized Recorder record(String table, Authorizations auths, Range range, String columnFamily, String columnQualifier, int limit) {
+		Recorder recorder = new Recorder(new CacheKey(table, auths, range, columnFamily, columnQualifier, limit));
+		this.getIndex(table).recorders.add(recorder);
+		return recorder;
+	}
+
+	/**
+	 * Caches the result of the given recorder unless it is stale.
+	 * @param recorder recorder
+	 */
+	private synchronized void finish(Recorder recorder) {
+		if ( recorder.done )
+			return;
+
+		this.abandon(recorder);
+		if ( recorder.stale )
+			return;
+
+		this.remove(recorder.key);
+		this.cache.put(recorder.key, new CachedScan(Collections.unmodifiableList(recorder.entries), recorder.bytes, System.currentTimeMillis() + this.ttl));
+		this.getIndex(recorder.key.table).keys.add(recorder.key);
+		this.bytes += recorder.bytes;
+
+		Iterator<Entry<CacheKey, CachedScan>> eldest = this.cache.entrySet().iterator();
+		while ( this.cache.size() > this.maxEntries || this.bytes > this.maxBytes ) {
+			Entry<CacheKey, CachedScan> entry = eldest.next();
+			eldest.remove();
+			this.bytes -= entry.getValue().bytes;
+			this.unindex(entry.getKey());
+			this.evictions.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Stops recording.
+	 * @param recorder recorder
+	 */
+	private synchronized void abandon(Recorder recorder) {
+		if ( recorder.done )
+			return;
+
+		recorder.done = true;
+		TableIndex index = this.tables.get(recorder.key.table);
+		if ( index != null ) {
+			index.recorders.remove(recorder);
+			if ( index.recorders.isEmpty() && index.keys.isEmpty() )
+				this.tables.remove(recorder.key.table);
+		}
+	}
+
+	/**
+	 * Removes the cached result. The lock has to be held.
+	 * @param key key
+	 */
+	private void remove(CacheKey key) {
+		CachedScan cached = this.cache.remove(key);
+		if ( cached != null ) {
+			this.bytes -= cached.bytes;
+			this.unindex(key);
+		}
+	}
+
+	/**
+	 * Removes the cached result from the table index. The lock has to be
+	 * held.
+	 * @param key key
+	 */
+	private void unindex(CacheKey key) {
+		TableIndex index = this.tables.get(key.table);
+		if ( index != null ) {
+			index.keys.remove(key);
+			if ( index.recorders.isEmpty() && index.keys.isEmpty() )
+				this.tables.remove(key.table);
+		}
+	}
+
+	/**
+	 * Returns the index of the given table. The lock has to be held.
+	 * @param table table
+	 * @return index
+	 */
+	private TableIndex getIndex(String table) {
+		TableIndex index = this.tables.get(table);
+		if ( index == null ) {
+			index = new TableIndex();
+			this.tables.put(table, index);
+		}
+
+		return index;
+	}
+
+	/**
+	 * Returns whether the range overlaps the row between the given keys.
+	 * @param range range
+	 * @param first first key of the row
+	 * @param next first key of the following row
+	 * @return overlaps
+	 */
+	private static boolean overlaps(Range range, Key first, Key next) {
+		return !range.afterEndKey(first) && !range.beforeStartKey(next);
+	}
+}
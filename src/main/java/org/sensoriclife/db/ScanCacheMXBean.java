@@ -0,0 +1,24 @@
+package org.sensoriclife.db;
+
+/**
+ * JMX view of the scan cache.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public interface ScanCacheMXBean {
+	long getHits();
+
+	long getMisses();
+
+	double getHitRate();
+
+	long getEvictions();
+
+	long getInvalidations();
+
+	int getSize();
+
+	long getBytes();
+
+	void clear();
+}
@@ -0,0 +1,167 @@
+package org.sensoriclife.db;
+
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import org.apache.accumulo.core.client.ScannerBase;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.sensoriclife.db.metrics.TableMetrics;
+
+/**
+ * Streams the entries of a scanner or of a cached scan result. The scanner
+ * stays open until the iterator is exhausted or closed, whichever comes
+ * first. Scanned entries and bytes are counted locally and added to the table
+ * metrics on close.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class ScanIterator implements Iterator<Entry<Key, Value>>, AutoCloseable {
+	/**
+	 * scanner, <code>null</code> for cached results
+	 */
+	private final ScannerBase scanner;
+	/**
+	 * table metrics, <code>null</code> for none
+	 */
+	private final TableMetrics metrics;
+	/**
+	 * start of the scan in nanoseconds
+	 */
+	private final long start;
+	/**
+	 * number of returned entries
+	 */
+	private long entries;
+	/**
+	 * bytes of the returned entries
+	 */
+	private long bytes;
+	/**
+	 * iterator, created on first access
+	 */
+	private Iterator<Entry<Key, Value>> iterator;
+	/**
+	 * records the entries for the scan cache, <code>null</code> for none
+	 */
+	private ScanCache.Recorder recorder;
+	/**
+	 * closed
+	 */
+	private boolean closed;
+
+	public ScanIterator(ScannerBase scanner) {
+		this(scanner, null);
+	}
+
+	/**
+	 * @param scanner scanner
+	 * @param metrics table metrics, <code>null</code> for none
+	 */
+	public ScanIterator(ScannerBase scanner, TableMetrics metrics) {
+		this.scanner = scanner;
+		this.metrics = metrics;
+		this.start = System.nanoTime();
+		this.entries = 0;
+		this.bytes = 0;
+		this.iterator = null;
+		this.recorder = null;
+		this.closed = false;
+
+		if ( this.metrics != null )
+			this.metrics.scanStarted();
+	}
+
+	/**
+	 * @param entries cached entries
+	 */
+	public ScanIterator(Iterator<Entry<Key, Value>> entries) {
+		this(null, null);
+		this.iterator = entries;
+	}
+
+	/**
+	 * @param scanner scanner
+	 * @param metrics table metrics, <code>null</code> for none
+	 * @param recorder records the entries for the scan cache
+	 */
+	ScanIterator(ScannerBase scanner, TableMetrics metrics, ScanCache.Recorder recorder) {
+		this(scanner, metrics);
+		this.recorder = recorder;
+	}
+
+	/**
+	 * @return the scanner, <code>null</code> for cached results
+	 */
+	public ScannerBase getScanner() {
+		return this.scanner;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if ( this.closed )
+			return false;
+
+		if ( this.iterator == null )
+			this.iterator = this.scanner.iterator();
+
+		if ( this.iterator.hasNext() )
+			return true;
+
+		if ( this.recorder != null ) {
+			this.recorder.finish();
+			this.recorder = null;
+		}
+		this.close();
+		return false;
+	}
+
+	@Override
+	public Entry<Key, Value> next() {
+		if ( !this.hasNext() )
+			throw new NoSuchElementException();
+
+		Entry<Key, Value> entry = this.iterator.next();
+		if ( this.metrics != null ) {
+			if ( this.entries == 0 )
+				this.metrics.firstEntry(System.nanoTime() - this.start);
+			this.entries++;
+			this.bytes += entry.getKey().getSize() + entry.getValue().getSize();
+		}
+
+		if ( this.recorder != null ) {
+			this.recorder.add(entry);
+			if ( this.recorder.isFull() ) {
+				this.recorder.finish();
+				this.recorder = null;
+			}
+		}
+
+		return entry;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Closes the scanner. Calling this more than once has no effect.
+	 */
+	@Override
+	public void close() {
+		if ( !this.closed ) {
+			this.closed = true;
+			this.iterator = null;
+			if ( this.scanner != null )
+				this.scanner.close();
+			if ( this.recorder != null ) {
+				this.recorder.abandon();
+				this.recorder = null;
+			}
+
+			if ( this.metrics != null )
+				this.metrics.scanned(this.entries, this.bytes);
+		}
+	}
+}
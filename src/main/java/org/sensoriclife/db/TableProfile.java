@@ -0,0 +1,191 @@
+package org.sensoriclife.db;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.apache.accumulo.core.conf.Property;
+import org.apache.hadoop.io.Text;
+import org.sensoriclife.Config;
+
+/**
+ * Storage settings of a table: locality groups, bloom filters on the row ids,
+ * compression codec, index and data block cache and split threshold. A named
+ * profile is read from the config with the keys
+ * <pre>
+ * accumulo.table_profile.&lt;name&gt;.locality_groups = electricity;usage:water,heat
+ * accumulo.table_profile.&lt;name&gt;.bloom_filter = true
+ * accumulo.table_profile.&lt;name&gt;.compression = snappy
+ * accumulo.table_profile.&lt;name&gt;.index_cache = true
+ * accumulo.table_profile.&lt;name&gt;.data_cache = true
+ * accumulo.table_profile.&lt;name&gt;.split_threshold = 1G
+ * </pre>
+ * Locality groups are separated by semicolons, a group without a name is
+ * named after its only column family. Settings that are not given keep the
+ * table defaults.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class TableProfile {
+	/**
+	 * name
+	 */
+	private final String name;
+	/**
+	 * column families per locality group
+	 */
+	private final Map<String, Set<Text>> localityGroups;
+	/**
+	 * table properties
+	 */
+	private final Map<String, String> properties;
+
+	/**
+	 * @param name name
+	 */
+	public TableProfile(String name) {
+		this.name = name;
+		this.localityGroups = new LinkedHashMap<>();
+		this.properties = new LinkedHashMap<>();
+	}
+
+	/**
+	 * Reads the profile with the given name from the config.
+	 * @param name name
+	 * @return profile
+	 */
+	public static TableProfile fromConfig(String name) {
+		TableProfile profile = new TableProfile(name);
+
+		String groups = getProperty(name, "locality_groups");
+		if ( groups != null ) {
+			for ( String group : groups.split(";") ) {
+				group = group.trim();
+				if ( group.isEmpty() )
+					continue;
+
+				int separator = group.indexOf(':');
+				String[] families = group.substring(separator + 1).split(",");
+				profile.setLocalityGroup(separator == -1 ? families[0].trim() : group.substring(0, separator).trim(), families);
+			}
+		}
+
+		String value = getProperty(name, "bloom_filter");
+		if ( value != null )
+			profile.setBloomFilter(Boolean.valueOf(value));
+		value = getProperty(name, "compression");
+		if ( value != null )
+			profile.setCompression(value);
+		value = getProperty(name, "index_cache");
+		if ( value != null )
+			profile.setIndexCache(Boolean.valueOf(value));
+		value = getProperty(name, "data_cache");
+		if ( value != null )
+			profile.setDataCache(Boolean.valueOf(value));
+		value = getProperty(name, "split_threshold");
+		if ( value != null )
+			profile.setSplitThreshold(value);
+
+		return profile;
+	}
+
+	/**
+	 * Returns the given profile property or <code>null</code> if it is not set.
+	 */
+	private static String getProperty(String name, String key) {
+		String value = Config.getProperty("accumulo.table_profile." + name + "." + key);
+		return value == null || value.trim().isEmpty() ? null : value.trim();
+	}
+
+	/**
+	 * @return the name
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Stores the given column families in their own locality group, so scans
+	 * of these families do not read the others.
+	 * @param group group name
+	 * @param columnFamilies column families
+	 * @return this profile
+	 */
+	public TableProfile setLocalityGroup(String group, String... columnFamilies) {
+		Set<Text> families = new HashSet<>();
+		for ( String columnFamily : columnFamilies )
+			if ( !columnFamily.trim().isEmpty() )
+				families.add(new Text(columnFamily.trim()));
+
+		this.localityGroups.put(group, families);
+		return this;
+	}
+
+	/**
+	 * Enables or disables bloom filters on the row ids, which let point
+	 * lookups skip files without the row.
+	 * @param enabled enabled
+	 * @return this profile
+	 */
+	public TableProfile setBloomFilter(boolean enabled) {
+		this.properties.put(Property.TABLE_BLOOM_ENABLED.getKey(), Boolean.toString(enabled));
+		if ( enabled )
+			this.properties.put(Property.TABLE_BLOOM_KEY_FUNCTOR.getKey(), "org.apache.accumulo.core.file.keyfunctor.RowFunctor");
+		return this;
+	}
+
+	/**
+	 * Sets the compression codec of the table files.
+	 * @param codec <code>gz</code>, <code>lzo</code>, <code>snappy</code> or <code>none</code>
+	 * @return this profile
+	 */
+	public TableProfile setCompression(String codec) {
+		this.properties.put(Property.TABLE_FILE_COMPRESSION_TYPE.getKey(), codec);
+		return this;
+	}
+
+	/**
+	 * Enables or disables the index block cache.
+	 * @param enabled enabled
+	 * @return this profile
+	 */
+	public TableProfile setIndexCache(boolean enabled) {
+		this.properties.put(Property.TABLE_INDEXCACHE_ENABLED.getKey(), Boolean.toString(enabled));
+		return this;
+	}
+
+	/**
+	 * Enables or disables the data block cache.
+	 * @param enabled enabled
+	 * @return this profile
+	 */
+	public TableProfile setDataCache(boolean enabled) {
+		this.properties.put(Property.TABLE_BLOCKCACHE_ENABLED.getKey(), Boolean.toString(enabled));
+		return this;
+	}
+
+	/**
+	 * Sets the size at which a tablet is split.
+	 * @param threshold size, e.g. <code>512M</code> or <code>1G</code>
+	 * @return this profile
+	 */
+	public TableProfile setSplitThreshold(String threshold) {
+		this.properties.put(Property.TABLE_SPLIT_THRESHOLD.getKey(), threshold);
+		return this;
+	}
+
+	/**
+	 * @return the column families per locality group
+	 */
+	public Map<String, Set<Text>> getLocalityGroups() {
+		return Collections.unmodifiableMap(this.localityGroups);
+	}
+
+	/**
+	 * @return the table properties
+	 */
+	public Map<String, String> getProperties() {
+		return Collections.unmodifiableMap(this.properties);
+	}
+}
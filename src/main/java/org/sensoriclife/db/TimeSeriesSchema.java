@@ -0,0 +1,218 @@
+package org.sensoriclife.db;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.PartialKey;
+import org.apache.accumulo.core.data.Range;
+import org.apache.hadoop.io.Text;
+
+/**
+ * Row key layout for meter readings. A row holds all readings of one meter in
+ * one time bucket:
+ * <pre>[salt] meterId SEPARATOR reverseBucket</pre>
+ * and the column qualifier is the reverse timestamp of the reading. Newer
+ * buckets sort before older ones and inside a row newer readings sort before
+ * older ones, so the latest reading of a meter is the first entry of its
+ * range. The optional {@link Salt} is derived from the meter id, so all rows of one
+ * meter stay contiguous while different meters spread over the salt buckets.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class TimeSeriesSchema {
+	/**
+	 * separator between meter id and bucket
+	 */
+	public static final char SEPARATOR = '\u0000';
+	/**
+	 * bucket size in milliseconds
+	 */
+	private final long bucketSize;
+	/**
+	 * salt, <code>null</code> for none
+	 */
+	private final Salt salt;
+
+	/**
+	 * @param bucketSize bucket size in milliseconds
+	 */
+	public TimeSeriesSchema(long bucketSize) {
+		this(bucketSize, 0);
+	}
+
+	/**
+	 * @param bucketSize bucket size in milliseconds
+	 * @param saltBuckets number of salt buckets, <code>0</code> for none
+	 */
+	public TimeSeriesSchema(long bucketSize, int saltBuckets) {
+		if ( bucketSize <= 0 )
+			throw new IllegalArgumentException("The bucket size must be positive.");
+		if ( saltBuckets < 0 )
+			throw new IllegalArgumentException("The number of salt buckets must not be negative.");
+
+		this.bucketSize = bucketSize;
+		this.salt = saltBuckets == 0 ? null : new Salt(saltBuckets);
+	}
+
+	/**
+	 * @return the bucket size
+	 */
+	public long getBucketSize() {
+		return this.bucketSize;
+	}
+
+	/**
+	 * @return the number of salt buckets
+	 */
+	public int getSaltBuckets() {
+		return this.salt == null ? 0 : this.salt.getBuckets();
+	}
+
+	/**
+	 * Returns the split points that give every salt bucket its own tablet.
+	 * @return split points
+	 */
+	public SortedSet<Text> getSplits() {
+		return this.salt == null ? new TreeSet<Text>() : this.salt.getSplits();
+	}
+
+	/**
+	 * Returns the start of the bucket of the given timestamp.
+	 * @param timestamp timestamp
+	 * @return bucket start
+	 */
+	public long getBucket(long timestamp) {
+		return timestamp - timestamp % this.bucketSize;
+	}
+
+	/**
+	 * Returns the row id of the given meter for the given timestamp.
+	 * @param meterId meter id
+	 * @param timestamp timestamp
+	 * @return row id
+	 */
+	public String getRowId(String meterId, long timestamp) {
+		return this.getRowPrefix(meterId) + reverse(this.getBucket(timestamp));
+	}
+
+	/**
+	 * Returns the column qualifier for the given timestamp.
+	 * @param timestamp timestamp
+	 * @return column qualifier
+	 */
+	public String getColumnQualifier(long timestamp) {
+		return reverse(timestamp);
+	}
+
+	/**
+	 * Returns the meter id of the given row id.
+	 * @param rowId row id
+	 * @return meter id
+	 */
+	public String getMeterId(String rowId) {
+		int start = this.salt == null ? 0 : rowId.indexOf(Salt.SEPARATOR) + 1;
+		return rowId.substring(start, rowId.lastIndexOf(SEPARATOR));
+	}
+
+	/**
+	 * Returns the timestamp of the reading stored under the given key.
+	 * @param key key
+	 * @return timestamp
+	 */
+	public long getTimestamp(Key key) {
+		return Long.MAX_VALUE - Long.parseLong(key.getColumnQualifier().toString());
+	}
+
+	/**
+	 * Returns the range of all readings of the given meter.
+	 * @param meterId meter id
+	 * @return range
+	 */
+	public Range getRange(String meterId) {
+		return Range.prefix(this.getRowPrefix(meterId));
+	}
+
+	/**
+	 * Returns the range of the rows that hold the readings of the given meter
+	 * between the given timestamps (inclusive). The first and last row may
+	 * hold readings outside of the window.
+	 * @param meterId meter id
+	 * @param from start timestamp
+	 * @param to end timestamp
+	 * @return range
+	 */
+	public Range getRange(String meterId, long from, long to) {
+		return new Range(this.getRowId(meterId, to), true, this.getRowId(meterId, from), true);
+	}
+
+	/**
+	 * Returns the range of the readings in the given column family of the
+	 * given meter between the given timestamps (inclusive). Scans over this
+	 * range have to fetch the column family to exclude the other families
+	 * of the first and last row.
+	 * @param meterId meter id
+	 * @param from start timestamp
+	 * @param to end timestamp
+	 * @param columnFamily column family
+	 * @return range
+	 */
+	public Range getRange(String meterId, long from, long to, String columnFamily) {
+		Key start = new Key(new Text(this.getRowId(meterId, to)), new Text(columnFamily), new Text(this.getColumnQualifier(to)));
+		Key end = new Key(new Text(this.getRowId(meterId, from)), new Text(columnFamily), new Text(this.getColumnQualifier(from)));
+		return new Range(start, true, end.followingKey(PartialKey.ROW_COLFAM_COLQUAL), false);
+	}
+
+	/**
+	 * Returns the ranges of the rows that hold the readings of the given
+	 * meters between the given timestamps (inclusive).
+	 * @param meterIds meter ids
+	 * @param from start timestamp
+	 * @param to end timestamp
+	 * @return ranges
+	 */
+	public List<Range> getRanges(Collection<String> meterIds, long from, long to) {
+		List<Range> ranges = new ArrayList<>();
+		for ( String meterId : meterIds )
+			ranges.add(this.getRange(meterId, from, to));
+
+		return Range.mergeOverlapping(ranges);
+	}
+
+	/**
+	 * Returns the ranges of the readings in the given column family of the
+	 * given meters between the given timestamps (inclusive).
+	 * @param meterIds meter ids
+	 * @param from start timestamp
+	 * @param to end timestamp
+	 * @param columnFamily column family
+	 * @return ranges
+	 */
+	public List<Range> getRanges(Collection<String> meterIds, long from, long to, String columnFamily) {
+		List<Range> ranges = new ArrayList<>();
+		for ( String meterId : meterIds )
+			ranges.add(this.getRange(meterId, from, to, columnFamily));
+
+		return Range.mergeOverlapping(ranges);
+	}
+
+	/**
+	 * Returns the row prefix of the given meter.
+	 * @param meterId meter id
+	 * @return row prefix
+	 */
+	private String getRowPrefix(String meterId) {
+		return (this.salt == null ? "" : this.salt.getPrefix(meterId)) + meterId + SEPARATOR;
+	}
+
+	/**
+	 * Returns the fixed width reverse of the given timestamp.
+	 * @param timestamp timestamp
+	 * @return reverse timestamp
+	 */
+	private static String reverse(long timestamp) {
+		return String.format("%019d", Long.MAX_VALUE - timestamp);
+	}
+}
@@ -0,0 +1,222 @@
+package org.sensoriclife.db.iterators;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.PartialKey;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.OptionDescriber;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.WrappingIterator;
+
+/**
+ * Buckets the readings of each row and column into fixed time windows and
+ * returns one entry per window with the window start, count, minimum, maximum
+ * and sum of the readings. The timestamp of a reading is the key timestamp,
+ * or the reverse timestamp in the column qualifier for tables with the
+ * {@link org.sensoriclife.db.TimeSeriesSchema} layout. A window entry has the
+ * key of the last reading of the window, so a scan that is continued after it
+ * starts with the next window. Readings that are no numbers or have no valid
+ * timestamp are skipped.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class DownsamplingIterator extends WrappingIterator implements OptionDescriber {
+	/**
+	 * option for the window size in milliseconds
+	 */
+	public static final String WINDOW = "window";
+	/**
+	 * option for the timestamp source, <code>key</code> or <code>qualifier</code>
+	 */
+	public static final String TIMESTAMP = "timestamp";
+	/**
+	 * option for the encoding, <code>string</code>, <code>varlen</code> or
+	 * <code>double</code>, see {@link ValueEncoding}
+	 */
+	public static final String ENCODING = "encoding";
+	/**
+	 * length of an encoded window
+	 */
+	public static final int VALUE_LENGTH = 40;
+	/**
+	 * window size in milliseconds
+	 */
+	private long window;
+	/**
+	 * timestamps are reverse timestamps in the column qualifier
+	 */
+	private boolean qualifier;
+	/**
+	 * encoding of the values
+	 */
+	private ValueEncoding encoding;
+	/**
+	 * top key
+	 */
+	private Key topKey;
+	/**
+	 * top value
+	 */
+	private Value topValue;
+
+	/**
+	 * Sets the options of the iterator.
+	 * @param setting iterator setting
+	 * @param window window size in milliseconds
+	 * @param qualifier timestamps are reverse timestamps in the column qualifier
+	 * @param encoding encoding of the values
+	 */
+	public static void setOptions(IteratorSetting setting, long window, boolean qualifier, ValueEncoding encoding) {
+		if ( window <= 0 )
+			throw new IllegalArgumentException("The window size must be positive.");
+
+		setting.addOption(WINDOW, Long.toString(window));
+		setting.addOption(TIMESTAMP, qualifier ? "qualifier" : "key");
+		setting.addOption(ENCODING, encoding.getOption());
+	}
+
+	@Override
+	public void init(SortedKeyValueIterator<Key, Value> source, Map<String, String> options, IteratorEnvironment env) throws IOException {
+		super.init(source, options, env);
+		this.window = Long.parseLong(options.get(WINDOW));
+		this.qualifier = "qualifier".equals(options.get(TIMESTAMP));
+		this.encoding = ValueEncoding.fromOption(options.get(ENCODING));
+	}
+
+	@Override
+	public SortedKeyValueIterator<Key, Value> deepCopy(IteratorEnvironment env) {
+		DownsamplingIterator copy = new DownsamplingIterator();
+		copy.setSource(this.getSource().deepCopy(env));
+		copy.window = this.window;
+		copy.qualifier = this.qualifier;
+		copy.encoding = this.encoding;
+		return copy;
+	}
+
+	@Override
+	public boolean hasTop() {
+		return this.topKey != null;
+	}
+
+	@Override
+	public Key getTopKey() {
+		return this.topKey;
+	}
+
+	@Override
+	public Value getTopValue() {
+		return this.topValue;
+	}
+
+	@Override
+	public void next() throws IOException {
+		this.findTop();
+	}
+
+	@Override
+	public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) throws IOException {
+		super.seek(range, columnFamilies, inclusive);
+		this.findTop();
+	}
+
+	/**
+	 * Aggregates the readings of the next window.
+	 */
+	private void findTop() throws IOException {
+		this.topKey = null;
+		this.topValue = null;
+
+		SortedKeyValueIterator<Key, Value> source = this.getSource();
+		while ( source.hasTop() ) {
+			Key first = new Key(source.getTopKey());
+			PartialKey group = this.qualifier ? PartialKey.ROW_COLFAM : PartialKey.ROW_COLFAM_COLQUAL;
+			long start = this.getWindow(first);
+
+			long count = 0;
+			double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY, sum = 0;
+			Key last = first;
+			while ( source.hasTop() ) {
+				Key key = source.getTopKey();
+				if ( !key.equals(first, group) || this.getWindow(key) != start )
+					break;
+
+				if ( start != Long.MIN_VALUE ) {
+					try {
+						double value = this.decode(source.getTopValue());
+						min = Math.min(min, value);
+						max = Math.max(max, value);
+						sum += value;
+						count++;
+					}
+					catch ( RuntimeException e ) {}
+				}
+
+				last = new Key(key);
+				source.next();
+			}
+
+			if ( count > 0 ) {
+				this.topKey = last;
+				this.topValue = new Value(ByteBuffer.allocate(VALUE_LENGTH).putLong(start).putLong(count).putDouble(min).putDouble(max).putDouble(sum).array());
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns the start of the window of the given key, keys without a valid
+	 * timestamp get <code>Long.MIN_VALUE</code>.
+	 */
+	private long getWindow(Key key) {
+		long timestamp;
+		if ( this.qualifier ) {
+			try {
+				timestamp = Long.MAX_VALUE - Long.parseLong(key.getColumnQualifier().toString());
+			}
+			catch ( NumberFormatException e ) {
+				return Long.MIN_VALUE;
+			}
+		}
+		else
+			timestamp = key.getTimestamp();
+
+		return timestamp - timestamp % this.window;
+	}
+
+	/**
+	 * Decodes the reading.
+	 */
+	private double decode(Value value) {
+		return this.encoding.decode(value.get());
+	}
+
+	@Override
+	public IteratorOptions describeOptions() {
+		Map<String, String> options = new LinkedHashMap<>();
+		options.put(WINDOW, "window size in milliseconds");
+		options.put(TIMESTAMP, "key or qualifier");
+		options.put(ENCODING, "string, varlen or double");
+		return new IteratorOptions("downsampling", "aggregates the readings of each row and column per time window", options, null);
+	}
+
+	@Override
+	public boolean validateOptions(Map<String, String> options) {
+		try {
+			if ( Long.parseLong(options.get(WINDOW)) <= 0 )
+				return false;
+		}
+		catch ( NumberFormatException e ) {
+			return false;
+		}
+
+		return (!options.containsKey(TIMESTAMP) || "key".equals(options.get(TIMESTAMP)) || "qualifier".equals(options.get(TIMESTAMP))) && ValueEncoding.isOption(options.get(ENCODING));
+	}
+}
@@ -0,0 +1,161 @@
+package org.sensoriclife.db.iterators;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.PartialKey;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.OptionDescriber;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+import org.apache.accumulo.core.iterators.WrappingIterator;
+import org.apache.hadoop.io.Text;
+
+/**
+ * Returns the first entries of each row and seeks to the next row once
+ * enough entries are returned. When the scan is continued in the middle of a
+ * row, the entries before the range are counted as well, so a row never
+ * returns more than the given number of entries.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class FirstEntriesInRowIterator extends WrappingIterator implements OptionDescriber {
+	/**
+	 * option for the number of entries per row
+	 */
+	public static final String ENTRIES = "entries";
+	/**
+	 * number of entries per row
+	 */
+	private int entries;
+	/**
+	 * seeked range
+	 */
+	private Range range;
+	/**
+	 * seeked column families
+	 */
+	private Collection<ByteSequence> columnFamilies;
+	/**
+	 * whether the column families are included or excluded
+	 */
+	private boolean inclusive;
+	/**
+	 * current row
+	 */
+	private Text row;
+	/**
+	 * entries seen in the current row
+	 */
+	private int count;
+	/**
+	 * the end of the range is reached
+	 */
+	private boolean finished;
+
+	public FirstEntriesInRowIterator() {
+		this.entries = 1;
+		this.row = null;
+		this.count = 0;
+		this.finished = false;
+	}
+
+	/**
+	 * Sets the number of entries per row.
+	 * @param setting iterator setting
+	 * @param entries number of entries per row
+	 */
+	public static void setEntries(IteratorSetting setting, int entries) {
+		if ( entries <= 0 )
+			throw new IllegalArgumentException("The number of entries must be positive.");
+		setting.addOption(ENTRIES, Integer.toString(entries));
+	}
+
+	@Override
+	public void init(SortedKeyValueIterator<Key, Value> source, Map<String, String> options, IteratorEnvironment env) throws IOException {
+		super.init(source, options, env);
+		if ( options.containsKey(ENTRIES) )
+			this.entries = Integer.parseInt(options.get(ENTRIES));
+	}
+
+	@Override
+	public SortedKeyValueIterator<Key, Value> deepCopy(IteratorEnvironment env) {
+		FirstEntriesInRowIterator copy = new FirstEntriesInRowIterator();
+		copy.setSource(this.getSource().deepCopy(env));
+		copy.entries = this.entries;
+		return copy;
+	}
+
+	@Override
+	public boolean hasTop() {
+		return !this.finished && super.hasTop();
+	}
+
+	@Override
+	public void next() throws IOException {
+		this.count++;
+		super.next();
+		this.findTop();
+	}
+
+	@Override
+	public void seek(Range range, Collection<ByteSequence> columnFamilies, boolean inclusive) throws IOException {
+		this.range = range;
+		this.columnFamilies = columnFamilies;
+		this.inclusive = inclusive;
+		this.row = null;
+		this.count = 0;
+		this.finished = false;
+
+		Key start = range.getStartKey();
+		super.seek(new Range(start == null ? null : new Key(start.getRow()), true, range.getEndKey(), range.isEndKeyInclusive()), columnFamilies, inclusive);
+		this.findTop();
+	}
+
+	/**
+	 * Skips the entries before the range and the rows with enough entries.
+	 */
+	private void findTop() throws IOException {
+		while ( !this.finished && this.getSource().hasTop() ) {
+			Key key = this.getSource().getTopKey();
+			if ( this.row == null || key.compareRow(this.row) != 0 ) {
+				this.row = key.getRow();
+				this.count = 0;
+			}
+
+			if ( this.count >= this.entries ) {
+				Key next = key.followingKey(PartialKey.ROW);
+				if ( this.range.afterEndKey(next) )
+					this.finished = true;
+				else
+					this.getSource().seek(new Range(next, true, this.range.getEndKey(), this.range.isEndKeyInclusive()), this.columnFamilies, this.inclusive);
+			}
+			else if ( this.range.beforeStartKey(key) ) {
+				this.count++;
+				this.getSource().next();
+			}
+			else
+				return;
+		}
+	}
+
+	@Override
+	public IteratorOptions describeOptions() {
+		return new IteratorOptions("firstEntriesInRow", "returns the first entries of each row", Collections.singletonMap(ENTRIES, "number of entries per row"), null);
+	}
+
+	@Override
+	public boolean validateOptions(Map<String, String> options) {
+		try {
+			return !options.containsKey(ENTRIES) || Integer.parseInt(options.get(ENTRIES)) > 0;
+		}
+		catch ( NumberFormatException e ) {
+			return false;
+		}
+	}
+}
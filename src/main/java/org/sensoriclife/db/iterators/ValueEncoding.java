@@ -0,0 +1,84 @@
+package org.sensoriclife.db.iterators;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import org.apache.accumulo.core.iterators.LongCombiner;
+import org.sensoriclife.util.Codec;
+
+/**
+ * Encodings of numeric readings, used by the iterators and readers that
+ * decode values. The option value of an encoding is its lower case name.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public enum ValueEncoding {
+	/**
+	 * decimal strings
+	 */
+	STRING,
+	/**
+	 * variable length encoded longs, as in aggregated columns
+	 */
+	VARLEN,
+	/**
+	 * 8 byte doubles, see {@link Codec#encodeDouble(double)}
+	 */
+	DOUBLE;
+
+	/**
+	 * @return option value
+	 */
+	public String getOption() {
+		return this.name().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Decodes the given value.
+	 * @param bytes value
+	 * @return number
+	 * @throws IllegalArgumentException if the value is no valid number
+	 */
+	public double decode(byte[] bytes) {
+		switch ( this ) {
+			case VARLEN:
+				return LongCombiner.VAR_LEN_ENCODER.decode(bytes);
+			case DOUBLE:
+				if ( bytes.length != 8 )
+					throw new IllegalArgumentException("A double needs 8 bytes, got " + bytes.length + ".");
+				return Codec.decodeDouble(bytes);
+			default:
+				return Double.parseDouble(new String(bytes, StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * Returns the encoding of the given option value.
+	 * @param option option value or <code>null</code> for {@link #STRING}
+	 * @return encoding
+	 * @throws IllegalArgumentException if the option value is unknown
+	 */
+	public static ValueEncoding fromOption(String option) {
+		if ( option == null )
+			return STRING;
+
+		for ( ValueEncoding encoding : values() )
+			if ( encoding.getOption().equals(option) )
+				return encoding;
+
+		throw new IllegalArgumentException("Unknown value encoding: " + option);
+	}
+
+	/**
+	 * @param option option value or <code>null</code>
+	 * @return whether the option value is valid
+	 */
+	public static boolean isOption(String option) {
+		try {
+			fromOption(option);
+			return true;
+		}
+		catch ( IllegalArgumentException e ) {
+			return false;
+		}
+	}
+}
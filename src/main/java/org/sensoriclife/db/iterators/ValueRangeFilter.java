@@ -0,0 +1,121 @@
+package org.sensoriclife.db.iterators;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.Filter;
+import org.apache.accumulo.core.iterators.IteratorEnvironment;
+import org.apache.accumulo.core.iterators.SortedKeyValueIterator;
+
+/**
+ * Accepts the entries whose numeric value lies between a minimum and a
+ * maximum (inclusive). Values are decimal strings, variable length encoded
+ * longs for aggregated columns or 8 byte doubles, see {@link ValueEncoding}.
+ * Values that cannot be decoded are dropped.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class ValueRangeFilter extends Filter {
+	/**
+	 * option for the minimum
+	 */
+	public static final String MIN = "min";
+	/**
+	 * option for the maximum
+	 */
+	public static final String MAX = "max";
+	/**
+	 * option for the encoding, <code>string</code>, <code>varlen</code> or
+	 * <code>double</code>
+	 */
+	public static final String ENCODING = "encoding";
+	/**
+	 * minimum
+	 */
+	private double min;
+	/**
+	 * maximum
+	 */
+	private double max;
+	/**
+	 * encoding of the values
+	 */
+	private ValueEncoding encoding;
+
+	/**
+	 * Sets the range of accepted values.
+	 * @param setting iterator setting
+	 * @param min minimum, inclusive
+	 * @param max maximum, inclusive
+	 * @param encoding encoding of the values
+	 */
+	public static void setRange(IteratorSetting setting, double min, double max, ValueEncoding encoding) {
+		setting.addOption(MIN, Double.toString(min));
+		setting.addOption(MAX, Double.toString(max));
+		setting.addOption(ENCODING, encoding.getOption());
+	}
+
+	@Override
+	public void init(SortedKeyValueIterator<Key, Value> source, Map<String, String> options, IteratorEnvironment env) throws IOException {
+		super.init(source, options, env);
+		this.min = options.containsKey(MIN) ? Double.parseDouble(options.get(MIN)) : Double.NEGATIVE_INFINITY;
+		this.max = options.containsKey(MAX) ? Double.parseDouble(options.get(MAX)) : Double.POSITIVE_INFINITY;
+		this.encoding = ValueEncoding.fromOption(options.get(ENCODING));
+	}
+
+	@Override
+	public SortedKeyValueIterator<Key, Value> deepCopy(IteratorEnvironment env) {
+		ValueRangeFilter copy = (ValueRangeFilter)super.deepCopy(env);
+		copy.min = this.min;
+		copy.max = this.max;
+		copy.encoding = this.encoding;
+		return copy;
+	}
+
+	@Override
+	public boolean accept(Key k, Value v) {
+		double value;
+		try {
+			value = this.encoding.decode(v.get());
+		}
+		catch ( RuntimeException e ) {
+			return false;
+		}
+
+		return value >= this.min && value <= this.max;
+	}
+
+	@Override
+	public IteratorOptions describeOptions() {
+		IteratorOptions io = super.describeOptions();
+		io.setName("valueRange");
+		io.setDescription("accepts the entries whose numeric value lies in a range");
+		Map<String, String> options = new LinkedHashMap<>(io.getNamedOptions());
+		options.put(MIN, "minimum, inclusive");
+		options.put(MAX, "maximum, inclusive");
+		options.put(ENCODING, "string, varlen or double");
+		io.setNamedOptions(options);
+		return io;
+	}
+
+	@Override
+	public boolean validateOptions(Map<String, String> options) {
+		if ( !super.validateOptions(options) )
+			return false;
+
+		try {
+			if ( options.containsKey(MIN) )
+				Double.parseDouble(options.get(MIN));
+			if ( options.containsKey(MAX) )
+				Double.parseDouble(options.get(MAX));
+		}
+		catch ( NumberFormatException e ) {
+			return false;
+		}
+
+		return ValueEncoding.isOption(options.get(ENCODING));
+	}
+}
@@ -0,0 +1,109 @@
+package org.sensoriclife.db.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations in microseconds with power of two
+ * buckets. Percentiles are reported as the upper bound of their bucket.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class Histogram {
+	/**
+	 * number of buckets, the last one covers everything above 2^38 us
+	 */
+	private static final int BUCKETS = 40;
+	/**
+	 * counts per bucket
+	 */
+	private final AtomicLongArray buckets;
+	/**
+	 * number of recorded values
+	 */
+	private final AtomicLong count;
+	/**
+	 * sum of recorded values
+	 */
+	private final AtomicLong sum;
+	/**
+	 * maximum recorded value
+	 */
+	private final AtomicLong max;
+
+	public Histogram() {
+		this.buckets = new AtomicLongArray(BUCKETS);
+		this.count = new AtomicLong();
+		this.sum = new AtomicLong();
+		this.max = new AtomicLong();
+	}
+
+	/**
+	 * Records the given duration.
+	 * @param micros duration in microseconds
+	 */
+	public void record(long micros) {
+		int bucket = micros <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+		this.buckets.incrementAndGet(bucket);
+		this.count.incrementAndGet();
+		this.sum.addAndGet(micros);
+
+		long current = this.max.get();
+		while ( micros > current && !this.max.compareAndSet(current, micros) )
+			current = this.max.get();
+	}
+
+	/**
+	 * @return number of recorded values
+	 */
+	public long getCount() {
+		return this.count.get();
+	}
+
+	/**
+	 * @return mean in microseconds
+	 */
+	public double getMean() {
+		long c = this.count.get();
+		return c == 0 ? 0 : (double)this.sum.get() / c;
+	}
+
+	/**
+	 * @return maximum in microseconds
+	 */
+	public long getMax() {
+		return this.max.get();
+	}
+
+	/**
+	 * Returns the upper bound of the bucket that holds the given percentile.
+	 * @param percentile percentile between 0 and 1
+	 * @return percentile in microseconds
+	 */
+	public long getPercentile(double percentile) {
+		long c = this.count.get();
+		if ( c == 0 )
+			return 0;
+
+		long rank = (long)Math.ceil(percentile * c);
+		long seen = 0;
+		for ( int i = 0; i < BUCKETS; i++ ) {
+			seen += this.buckets.get(i);
+			if ( seen >= rank )
+				return Math.min(1l << i, this.max.get());
+		}
+
+		return this.max.get();
+	}
+
+	/**
+	 * Resets the histogram.
+	 */
+	public void reset() {
+		for ( int i = 0; i < BUCKETS; i++ )
+			this.buckets.set(i, 0);
+		this.count.set(0);
+		this.sum.set(0);
+		this.max.set(0);
+	}
+}
@@ -0,0 +1,25 @@
+package org.sensoriclife.db.metrics;
+
+import java.util.Collection;
+import org.sensoriclife.Logger;
+
+/**
+ * Logs the table metrics with info level.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class LoggerMetricsReporter implements MetricsReporter {
+	@Override
+	public void report(Collection<TableMetrics> metrics) {
+		if ( metrics.isEmpty() )
+			return;
+
+		String[] lines = new String[metrics.size() + 1];
+		lines[0] = "Accumulo metrics";
+		int i = 1;
+		for ( TableMetrics m : metrics )
+			lines[i++] = m.toString();
+
+		Logger.info(LoggerMetricsReporter.class, lines);
+	}
+}
@@ -0,0 +1,195 @@
+package org.sensoriclife.db.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import org.sensoriclife.Logger;
+
+/**
+ * Registry of the table metrics of one client. Every table gets its metrics
+ * on first use, which are registered as MXBean
+ * <code>org.sensoriclife.db:type=TableMetrics,client=&lt;client&gt;,name=&lt;table&gt;</code>,
+ * in place of the metrics of an earlier client of the same name. Reporters can be called on demand or periodically.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class Metrics {
+	/**
+	 * JMX domain
+	 */
+	public static final String DOMAIN = "org.sensoriclife.db";
+	/**
+	 * client name
+	 */
+	private final String client;
+	/**
+	 * metrics per table
+	 */
+	private final ConcurrentMap<String, TableMetrics> tables;
+	/**
+	 * reporters
+	 */
+	private final List<MetricsReporter> reporters;
+	/**
+	 * scheduler for periodic reports
+	 */
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * @param client client name
+	 */
+	public Metrics(String client) {
+		this.client = client;
+		this.tables = new ConcurrentHashMap<>();
+		this.reporters = new CopyOnWriteArrayList<>();
+		this.scheduler = null;
+	}
+
+	/**
+	 * Returns the JMX name of an MXBean of the given client.
+	 * @param type type
+	 * @param client client name
+	 * @param name name or <code>null</code>
+	 * @return object name
+	 * @throws MalformedObjectNameException
+	 */
+	public static ObjectName getObjectName(String type, String client, String name) throws MalformedObjectNameException {
+		return new ObjectName(DOMAIN + ":type=" + type + ",client=" + ObjectName.quote(client) + (name == null ? "" : ",name=" + ObjectName.quote(name)));
+	}
+
+	/**
+	 * @return the client name
+	 */
+	public String getClient() {
+		return this.client;
+	}
+
+	/**
+	 * Returns the metrics of the given table.
+	 * @param table table
+	 * @return metrics
+	 */
+	public TableMetrics getTableMetrics(String table) {
+		TableMetrics metrics = this.tables.get(table);
+		if ( metrics != null )
+			return metrics;
+
+		metrics = new TableMetrics(table);
+		TableMetrics existing = this.tables.putIfAbsent(table, metrics);
+		if ( existing != null )
+			return existing;
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName name = getObjectName("TableMetrics", this.client, table);
+			if ( server.isRegistered(name) )
+				server.unregisterMBean(name);
+			server.registerMBean(metrics, name);
+		}
+		catch ( JMException e ) {
+			Logger.warn(Metrics.class, "Could not register metrics of table " + table + ": " + e);
+		}
+
+		return metrics;
+	}
+
+	/**
+	 * Unregisters the MXBeans of all tables and drops their metrics, tables
+	 * used afterwards start with new metrics.
+	 */
+	public void unregister() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for ( String table : this.tables.keySet() ) {
+			try {
+				ObjectName name = getObjectName("TableMetrics", this.client, table);
+				if ( server.isRegistered(name) )
+					server.unregisterMBean(name);
+			}
+			catch ( JMException e ) {
+				Logger.warn(Metrics.class, "Could not unregister metrics of table " + table + ": " + e);
+			}
+			this.tables.remove(table);
+		}
+	}
+
+	/**
+	 * @return the metrics of all tables
+	 */
+	public Collection<TableMetrics> getTableMetrics() {
+		return Collections.unmodifiableCollection(this.tables.values());
+	}
+
+	/**
+	 * @param reporter reporter to add
+	 */
+	public void addReporter(MetricsReporter reporter) {
+		this.reporters.add(reporter);
+	}
+
+	/**
+	 * @param reporter reporter to remove
+	 */
+	public void removeReporter(MetricsReporter reporter) {
+		this.reporters.remove(reporter);
+	}
+
+	/**
+	 * Reports the metrics of all tables to all reporters.
+	 */
+	public void report() {
+		Collection<TableMetrics> metrics = this.getTableMetrics();
+		for ( MetricsReporter reporter : this.reporters ) {
+			try {
+				reporter.report(metrics);
+			}
+			catch ( RuntimeException e ) {
+				Logger.error(Metrics.class, "Metrics reporter failed: " + e);
+			}
+		}
+	}
+
+	/**
+	 * Reports the metrics periodically until {@link #stop()} is called.
+	 * @param period period
+	 * @param unit time unit
+	 */
+	public synchronized void start(long period, TimeUnit unit) {
+		this.stop();
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "accumulo-metrics-reporter");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.scheduler.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				Metrics.this.report();
+			}
+		}, period, period, unit);
+	}
+
+	/**
+	 * Stops the periodic reports.
+	 */
+	public synchronized void stop() {
+		if ( this.scheduler != null ) {
+			this.scheduler.shutdown();
+			this.scheduler = null;
+		}
+	}
+}
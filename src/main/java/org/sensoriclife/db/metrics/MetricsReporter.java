@@ -0,0 +1,16 @@
+package org.sensoriclife.db.metrics;
+
+import java.util.Collection;
+
+/**
+ * Receives the table metrics periodically or on demand.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public interface MetricsReporter {
+	/**
+	 * Reports the given metrics.
+	 * @param metrics metrics of all tables
+	 */
+	void report(Collection<TableMetrics> metrics);
+}
@@ -0,0 +1,263 @@
+package org.sensoriclife.db.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write, flush and scan metrics of one table.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class TableMetrics implements TableMetricsMXBean {
+	/**
+	 * table
+	 */
+	private final String table;
+	/**
+	 * number of added mutations
+	 */
+	private final AtomicLong mutations;
+	/**
+	 * bytes of all added mutations
+	 */
+	private final AtomicLong bytesAdded;
+	/**
+	 * bytes of the mutations added since the last explicit flush, flushes
+	 * the batch writer does on its own are not seen
+	 */
+	private final AtomicLong bytesSinceFlush;
+	/**
+	 * number of rejected writes
+	 */
+	private final AtomicLong rejections;
+	/**
+	 * number of replay attempts of rejected mutations
+	 */
+	private final AtomicLong retries;
+	/**
+	 * number of mutations sent to the dead letter sink
+	 */
+	private final AtomicLong deadLetters;
+	/**
+	 * flush latencies
+	 */
+	private final Histogram flushLatency;
+	/**
+	 * number of scans
+	 */
+	private final AtomicLong scans;
+	/**
+	 * number of scanned entries
+	 */
+	private final AtomicLong scanEntries;
+	/**
+	 * bytes of scanned entries
+	 */
+	private final AtomicLong scanBytes;
+	/**
+	 * times from scan start to first entry
+	 */
+	private final Histogram timeToFirstEntry;
+
+	public TableMetrics(String table) {
+		this.table = table;
+		this.mutations = new AtomicLong();
+		this.bytesAdded = new AtomicLong();
+		this.bytesSinceFlush = new AtomicLong();
+		this.rejections = new AtomicLong();
+		this.retries = new AtomicLong();
+		this.deadLetters = new AtomicLong();
+		this.flushLatency = new Histogram();
+		this.scans = new AtomicLong();
+		this.scanEntries = new AtomicLong();
+		this.scanBytes = new AtomicLong();
+		this.timeToFirstEntry = new Histogram();
+	}
+
+	/**
+	 * Records an added mutation.
+	 * @param bytes size of the mutation
+	 */
+	public void mutationAdded(long bytes) {
+		this.mutations.incrementAndGet();
+		this.bytesAdded.addAndGet(bytes);
+		this.bytesSinceFlush.addAndGet(bytes);
+	}
+
+	/**
+	 * Records a rejected write.
+	 */
+	public void rejected() {
+		this.rejections.incrementAndGet();
+	}
+
+	/**
+	 * Records a replay attempt of rejected mutations.
+	 */
+	public void retried() {
+		this.retries.incrementAndGet();
+	}
+
+	/**
+	 * Records mutations sent to the dead letter sink.
+	 * @param mutations number of mutations
+	 */
+	public void deadLettered(long mutations) {
+		this.deadLetters.addAndGet(mutations);
+	}
+
+	/**
+	 * Records an explicit flush.
+	 * @param nanos duration in nanoseconds
+	 */
+	public void flushed(long nanos) {
+		this.flushLatency.record(nanos / 1000);
+		this.bytesSinceFlush.set(0);
+	}
+
+	/**
+	 * Records a started scan.
+	 */
+	public void scanStarted() {
+		this.scans.incrementAndGet();
+	}
+
+	/**
+	 * Records the time until the first entry of a scan arrived.
+	 * @param nanos duration in nanoseconds
+	 */
+	public void firstEntry(long nanos) {
+		this.timeToFirstEntry.record(nanos / 1000);
+	}
+
+	/**
+	 * Records the entries returned by a scan.
+	 * @param entries number of entries
+	 * @param bytes bytes of the entries
+	 */
+	public void scanned(long entries, long bytes) {
+		this.scanEntries.addAndGet(entries);
+		this.scanBytes.addAndGet(bytes);
+	}
+
+	/**
+	 * @return the flush latency histogram
+	 */
+	public Histogram getFlushLatency() {
+		return this.flushLatency;
+	}
+
+	/**
+	 * @return the time to first entry histogram
+	 */
+	public Histogram getTimeToFirstEntry() {
+		return this.timeToFirstEntry;
+	}
+
+	@Override
+	public String getTable() {
+		return this.table;
+	}
+
+	@Override
+	public long getMutations() {
+		return this.mutations.get();
+	}
+
+	@Override
+	public long getBytesAdded() {
+		return this.bytesAdded.get();
+	}
+
+	@Override
+	public long getBytesSinceFlush() {
+		return this.bytesSinceFlush.get();
+	}
+
+	@Override
+	public long getRejections() {
+		return this.rejections.get();
+	}
+
+	@Override
+	public long getRetries() {
+		return this.retries.get();
+	}
+
+	@Override
+	public long getDeadLetters() {
+		return this.deadLetters.get();
+	}
+
+	@Override
+	public long getFlushes() {
+		return this.flushLatency.getCount();
+	}
+
+	@Override
+	public double getFlushLatencyMean() {
+		return this.flushLatency.getMean() / 1000;
+	}
+
+	@Override
+	public double getFlushLatency99thPercentile() {
+		return this.flushLatency.getPercentile(0.99) / 1000.0;
+	}
+
+	@Override
+	public double getFlushLatencyMax() {
+		return this.flushLatency.getMax() / 1000.0;
+	}
+
+	@Override
+	public long getScans() {
+		return this.scans.get();
+	}
+
+	@Override
+	public long getScanEntries() {
+		return this.scanEntries.get();
+	}
+
+	@Override
+	public long getScanBytes() {
+		return this.scanBytes.get();
+	}
+
+	@Override
+	public double getTimeToFirstEntryMean() {
+		return this.timeToFirstEntry.getMean() / 1000;
+	}
+
+	@Override
+	public double getTimeToFirstEntry99thPercentile() {
+		return this.timeToFirstEntry.getPercentile(0.99) / 1000.0;
+	}
+
+	@Override
+	public double getTimeToFirstEntryMax() {
+		return this.timeToFirstEntry.getMax() / 1000.0;
+	}
+
+	@Override
+	public void reset() {
+		this.mutations.set(0);
+		this.bytesAdded.set(0);
+		this.bytesSinceFlush.set(0);
+		this.rejections.set(0);
+		this.retries.set(0);
+		this.deadLetters.set(0);
+		this.flushLatency.reset();
+		this.scans.set(0);
+		this.scanEntries.set(0);
+		this.scanBytes.set(0);
+		this.timeToFirstEntry.reset();
+	}
+
+	@Override
+	public String toString() {
+		return this.table + ": mutations=" + this.getMutations() + ", bytesAdded=" + this.getBytesAdded() + ", bytesSinceFlush=" + this.getBytesSinceFlush() + ", rejections=" + this.getRejections() + ", retries=" + this.getRetries() + ", deadLetters=" + this.getDeadLetters()
+				+ ", flushes=" + this.getFlushes() + ", flushLatencyMean=" + this.getFlushLatencyMean() + "ms, flushLatency99=" + this.getFlushLatency99thPercentile() + "ms"
+				+ ", scans=" + this.getScans() + ", scanEntries=" + this.getScanEntries() + ", scanBytes=" + this.getScanBytes()
+				+ ", timeToFirstEntryMean=" + this.getTimeToFirstEntryMean() + "ms, timeToFirstEntry99=" + this.getTimeToFirstEntry99thPercentile() + "ms";
+	}
+}
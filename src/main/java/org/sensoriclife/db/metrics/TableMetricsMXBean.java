@@ -0,0 +1,44 @@
+package org.sensoriclife.db.metrics;
+
+/**
+ * JMX view of the metrics of one table. Durations are in milliseconds.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public interface TableMetricsMXBean {
+	String getTable();
+
+	long getMutations();
+
+	long getBytesAdded();
+
+	long getBytesSinceFlush();
+
+	long getRejections();
+
+	long getRetries();
+
+	long getDeadLetters();
+
+	long getFlushes();
+
+	double getFlushLatencyMean();
+
+	double getFlushLatency99thPercentile();
+
+	double getFlushLatencyMax();
+
+	long getScans();
+
+	long getScanEntries();
+
+	long getScanBytes();
+
+	double getTimeToFirstEntryMean();
+
+	double getTimeToFirstEntry99thPercentile();
+
+	double getTimeToFirstEntryMax();
+
+	void reset();
+}
@@ -0,0 +1,62 @@
+package org.sensoriclife.util;
+
+/**
+ * Reads a bit stream written by {@link BitOutput}.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class BitInput {
+	/**
+	 * bytes
+	 */
+	private final byte[] bytes;
+	/**
+	 * position of the next bit
+	 */
+	private long position;
+	/**
+	 * position after the last bit
+	 */
+	private final long end;
+
+	/**
+	 * @param bytes array
+	 * @param offset offset of the stream
+	 * @param length length of the stream in bytes
+	 */
+	public BitInput(byte[] bytes, int offset, int length) {
+		this.bytes = bytes;
+		this.position = (long)offset << 3;
+		this.end = (long)(offset + length) << 3;
+	}
+
+	/**
+	 * Reads one bit.
+	 * @return bit
+	 */
+	public boolean readBit() {
+		return this.readBits(1) != 0;
+	}
+
+	/**
+	 * Reads the given number of bits, the highest first.
+	 * @param bits number of bits, <code>0</code> to <code>64</code>
+	 * @return value
+	 */
+	public long readBits(int bits) {
+		if ( this.position + bits > this.end )
+			throw new IndexOutOfBoundsException("The bit stream has ended.");
+
+		long value = 0;
+		while ( bits > 0 ) {
+			int available = 8 - (int)(this.position & 7);
+			int take = Math.min(available, bits);
+			int chunk = (this.bytes[(int)(this.position >>> 3)] >>> (available - take)) & ((1 << take) - 1);
+			value = (value << take) | chunk;
+			this.position += take;
+			bits -= take;
+		}
+
+		return value;
+	}
+}
@@ -0,0 +1,92 @@
+package org.sensoriclife.util;
+
+import java.util.Arrays;
+
+/**
+ * Growable bit stream, the bits of a byte are written from the most
+ * significant to the least significant.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class BitOutput {
+	/**
+	 * buffer
+	 */
+	private byte[] buffer;
+	/**
+	 * number of written bits
+	 */
+	private long position;
+
+	/**
+	 * @param capacity initial capacity in bytes
+	 */
+	public BitOutput(int capacity) {
+		this.buffer = new byte[Math.max(capacity, 1)];
+		this.position = 0;
+	}
+
+	/**
+	 * Writes one bit.
+	 * @param bit bit
+	 */
+	public void writeBit(boolean bit) {
+		this.writeBits(bit ? 1 : 0, 1);
+	}
+
+	/**
+	 * Writes the given number of low bits of the value, the highest first.
+	 * @param value value
+	 * @param bits number of bits, <code>0</code> to <code>64</code>
+	 */
+	public void writeBits(long value, int bits) {
+		this.ensureCapacity(this.position + bits);
+		while ( bits > 0 ) {
+			int free = 8 - (int)(this.position & 7);
+			int take = Math.min(free, bits);
+			int chunk = (int)(value >>> (bits - take)) & ((1 << take) - 1);
+			this.buffer[(int)(this.position >>> 3)] |= chunk << (free - take);
+			this.position += take;
+			bits -= take;
+		}
+	}
+
+	/**
+	 * @return the number of written bits
+	 */
+	public long getPosition() {
+		return this.position;
+	}
+
+	/**
+	 * @return the number of bytes holding the written bits
+	 */
+	public int getLength() {
+		return (int)((this.position + 7) >>> 3);
+	}
+
+	/**
+	 * Copies the written bytes into the given array.
+	 * @param bytes array
+	 * @param offset offset
+	 * @return offset after the copied bytes
+	 */
+	public int copyTo(byte[] bytes, int offset) {
+		System.arraycopy(this.buffer, 0, bytes, offset, this.getLength());
+		return offset + this.getLength();
+	}
+
+	/**
+	 * Clears the stream and keeps its buffer.
+	 */
+	public void reset() {
+		Arrays.fill(this.buffer, 0, this.getLength(), (byte)0);
+		this.position = 0;
+	}
+
+	private void ensureCapacity(long bits) {
+		int bytes = (int)((bits + 7) >>> 3);
+		if ( bytes > this.buffer.length )
+			this.buffer = Arrays.copyOf(this.buffer, Math.max(bytes, this.buffer.length * 2));
+	}
+}
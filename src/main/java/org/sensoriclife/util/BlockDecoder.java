@@ -0,0 +1,135 @@
+package org.sensoriclife.util;
+
+/**
+ * Decodes a block written by {@link BlockEncoder} one reading at a time:
+ * <pre>
+ * while ( decoder.next() )
+ *     use(decoder.getTimestamp(), decoder.getValue());
+ * </pre>
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class BlockDecoder {
+	/**
+	 * bits of the points after the first one
+	 */
+	private final BitInput bits;
+	/**
+	 * number of points
+	 */
+	private final int count;
+	/**
+	 * number of decoded points
+	 */
+	private int decoded;
+	/**
+	 * current timestamp
+	 */
+	private long timestamp;
+	/**
+	 * current timestamp delta
+	 */
+	private long delta;
+	/**
+	 * bits of the current value
+	 */
+	private long value;
+	/**
+	 * leading zeros of the last stored XOR
+	 */
+	private int leading;
+	/**
+	 * trailing zeros of the last stored XOR
+	 */
+	private int trailing;
+
+	/**
+	 * @param block encoded block
+	 */
+	public BlockDecoder(byte[] block) {
+		this(block, 0, block.length);
+	}
+
+	/**
+	 * @param bytes array
+	 * @param offset offset of the block
+	 * @param length length of the block
+	 */
+	public BlockDecoder(byte[] bytes, int offset, int length) {
+		long count = Codec.getVarLong(bytes, offset);
+		int header = Codec.varLongSize(count);
+		this.count = (int)count;
+		this.timestamp = Codec.getLong(bytes, offset + header);
+		this.value = Codec.getLong(bytes, offset + header + 8);
+		this.bits = new BitInput(bytes, offset + header + 16, length - header - 16);
+		this.decoded = 0;
+		this.delta = 0;
+		this.leading = 0;
+		this.trailing = 0;
+	}
+
+	/**
+	 * @return the number of readings in the block
+	 */
+	public int getCount() {
+		return this.count;
+	}
+
+	/**
+	 * Moves to the next reading.
+	 * @return <code>false</code> if the block has no more readings
+	 */
+	public boolean next() {
+		if ( this.decoded == this.count )
+			return false;
+
+		if ( this.decoded > 0 ) {
+			this.delta += this.readDeltaOfDelta();
+			this.timestamp += this.delta;
+
+			if ( this.bits.readBit() ) {
+				if ( this.bits.readBit() ) {
+					this.leading = (int)this.bits.readBits(5);
+					int significant = (int)this.bits.readBits(6);
+					if ( significant == 0 )
+						significant = 64;
+					this.trailing = 64 - this.leading - significant;
+				}
+
+				this.value ^= this.bits.readBits(64 - this.leading - this.trailing) << this.trailing;
+			}
+		}
+
+		this.decoded++;
+		return true;
+	}
+
+	/**
+	 * Reads a difference of timestamp deltas.
+	 */
+	private long readDeltaOfDelta() {
+		if ( !this.bits.readBit() )
+			return 0;
+		if ( !this.bits.readBit() )
+			return this.bits.readBits(7) - 63;
+		if ( !this.bits.readBit() )
+			return this.bits.readBits(9) - 255;
+		if ( !this.bits.readBit() )
+			return this.bits.readBits(12) - 2047;
+		return this.bits.readBits(64);
+	}
+
+	/**
+	 * @return the timestamp of the current reading
+	 */
+	public long getTimestamp() {
+		return this.timestamp;
+	}
+
+	/**
+	 * @return the value of the current reading
+	 */
+	public double getValue() {
+		return Double.longBitsToDouble(this.value);
+	}
+}
@@ -0,0 +1,185 @@
+package org.sensoriclife.util;
+
+/**
+ * Encodes a block of readings in the Gorilla format: the first timestamp and
+ * value are stored as they are, the following timestamps as the difference of
+ * their deltas in 1 to 68 bits and the following values as the XOR with the
+ * previous value, of which only the meaningful bits are stored. Regular
+ * readings with slowly changing values take about two bytes each. The block
+ * layout is
+ * <pre>count (var long) firstTimestamp (8 bytes) firstValue (8 bytes) bits</pre>
+ * An encoder can be reused after {@link #reset()}.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class BlockEncoder {
+	/**
+	 * bits of the points after the first one
+	 */
+	private final BitOutput bits;
+	/**
+	 * number of points
+	 */
+	private int count;
+	/**
+	 * first timestamp
+	 */
+	private long firstTimestamp;
+	/**
+	 * first value
+	 */
+	private long firstValue;
+	/**
+	 * last timestamp
+	 */
+	private long lastTimestamp;
+	/**
+	 * last timestamp delta
+	 */
+	private long lastDelta;
+	/**
+	 * bits of the last value
+	 */
+	private long lastValue;
+	/**
+	 * leading zeros of the last stored XOR, <code>-1</code> for none
+	 */
+	private int leading;
+	/**
+	 * trailing zeros of the last stored XOR
+	 */
+	private int trailing;
+
+	public BlockEncoder() {
+		this.bits = new BitOutput(256);
+		this.reset();
+	}
+
+	/**
+	 * Appends a reading.
+	 * @param timestamp timestamp
+	 * @param value value
+	 */
+	public void append(long timestamp, double value) {
+		long v = Double.doubleToRawLongBits(value);
+		if ( this.count == 0 ) {
+			this.firstTimestamp = timestamp;
+			this.firstValue = v;
+			this.lastTimestamp = timestamp;
+			this.lastDelta = 0;
+			this.lastValue = v;
+			this.count = 1;
+			return;
+		}
+
+		long delta = timestamp - this.lastTimestamp;
+		this.writeDeltaOfDelta(delta - this.lastDelta);
+		this.lastDelta = delta;
+		this.lastTimestamp = timestamp;
+
+		long xor = v ^ this.lastValue;
+		if ( xor == 0 )
+			this.bits.writeBit(false);
+		else {
+			this.bits.writeBit(true);
+			int lz = Math.min(Long.numberOfLeadingZeros(xor), 31);
+			int tz = Long.numberOfTrailingZeros(xor);
+			if ( this.leading != -1 && lz >= this.leading && tz >= this.trailing ) {
+				this.bits.writeBit(false);
+				this.bits.writeBits(xor >>> this.trailing, 64 - this.leading - this.trailing);
+			}
+			else {
+				int significant = 64 - lz - tz;
+				this.bits.writeBit(true);
+				this.bits.writeBits(lz, 5);
+				this.bits.writeBits(significant == 64 ? 0 : significant, 6);
+				this.bits.writeBits(xor >>> tz, significant);
+				this.leading = lz;
+				this.trailing = tz;
+			}
+		}
+
+		this.lastValue = v;
+		this.count++;
+	}
+
+	/**
+	 * Writes a difference of timestamp deltas with a prefix code.
+	 */
+	private void writeDeltaOfDelta(long dod) {
+		if ( dod == 0 )
+			this.bits.writeBit(false);
+		else if ( dod >= -63 && dod <= 64 ) {
+			this.bits.writeBits(0b10, 2);
+			this.bits.writeBits(dod + 63, 7);
+		}
+		else if ( dod >= -255 && dod <= 256 ) {
+			this.bits.writeBits(0b110, 3);
+			this.bits.writeBits(dod + 255, 9);
+		}
+		else if ( dod >= -2047 && dod <= 2048 ) {
+			this.bits.writeBits(0b1110, 4);
+			this.bits.writeBits(dod + 2047, 12);
+		}
+		else {
+			this.bits.writeBits(0b1111, 4);
+			this.bits.writeBits(dod, 64);
+		}
+	}
+
+	/**
+	 * @return the number of readings
+	 */
+	public int getCount() {
+		return this.count;
+	}
+
+	/**
+	 * @return the first timestamp
+	 */
+	public long getFirstTimestamp() {
+		return this.firstTimestamp;
+	}
+
+	/**
+	 * @return the last timestamp
+	 */
+	public long getLastTimestamp() {
+		return this.lastTimestamp;
+	}
+
+	/**
+	 * @return the size of the encoded block in bytes
+	 */
+	public int getSize() {
+		return Codec.varLongSize(this.count) + 16 + this.bits.getLength();
+	}
+
+	/**
+	 * Returns the encoded block.
+	 * @return block
+	 */
+	public byte[] toByteArray() {
+		byte[] block = new byte[this.getSize()];
+		int offset = Codec.putVarLong(block, 0, this.count);
+		offset = Codec.putLong(block, offset, this.firstTimestamp);
+		offset = Codec.putLong(block, offset, this.firstValue);
+		this.bits.copyTo(block, offset);
+		return block;
+	}
+
+	/**
+	 * Clears the block.
+	 */
+	public void reset() {
+		this.bits.reset();
+		this.count = 0;
+		this.firstTimestamp = 0;
+		this.firstValue = 0;
+		this.lastTimestamp = 0;
+		this.lastDelta = 0;
+		this.lastValue = 0;
+		this.leading = -1;
+		this.trailing = 0;
+	}
+}
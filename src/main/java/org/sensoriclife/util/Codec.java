@@ -0,0 +1,285 @@
+package org.sensoriclife.util;
+
+/**
+ * Compact binary encodings for meter values as a replacement for
+ * {@link Helpers#toByteArray(Object)}. All fixed width encodings are big
+ * endian. The sortable encodings compare with unsigned byte order (as
+ * Accumulo sorts row ids and column qualifiers) in the same order as the
+ * encoded numbers. The <code>encode</code> methods allocate nothing but the
+ * returned array, the <code>put</code> methods write into a given array.
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public final class Codec {
+	private Codec() {}
+
+	/**
+	 * Writes the given int to the array.
+	 * @param bytes array
+	 * @param offset offset
+	 * @param value int
+	 * @return offset after the written bytes
+	 */
+	public static int putInt(byte[] bytes, int offset, int value) {
+		bytes[offset] = (byte)(value >>> 24);
+		bytes[offset + 1] = (byte)(value >>> 16);
+		bytes[offset + 2] = (byte)(value >>> 8);
+		bytes[offset + 3] = (byte)value;
+		return offset + 4;
+	}
+
+	/**
+	 * Writes the given long to the array.
+	 * @param bytes array
+	 * @param offset offset
+	 * @param value long
+	 * @return offset after the written bytes
+	 */
+	public static int putLong(byte[] bytes, int offset, long value) {
+		for ( int i = 7; i >= 0; i-- ) {
+			bytes[offset + i] = (byte)value;
+			value >>>= 8;
+		}
+
+		return offset + 8;
+	}
+
+	/**
+	 * Reads an int from the array.
+	 * @param bytes array
+	 * @param offset offset
+	 * @return int
+	 */
+	public static int getInt(byte[] bytes, int offset) {
+		return (bytes[offset] & 0xff) << 24 | (bytes[offset + 1] & 0xff) << 16 | (bytes[offset + 2] & 0xff) << 8 | (bytes[offset + 3] & 0xff);
+	}
+
+	/**
+	 * Reads a long from the array.
+	 * @param bytes array
+	 * @param offset offset
+	 * @return long
+	 */
+	public static long getLong(byte[] bytes, int offset) {
+		long value = 0;
+		for ( int i = 0; i < 8; i++ )
+			value = value << 8 | (bytes[offset + i] & 0xff);
+
+		return value;
+	}
+
+	/**
+	 * Encodes the given int with 4 bytes.
+	 * @param value int
+	 * @return bytes
+	 */
+	public static byte[] encodeInt(int value) {
+		byte[] bytes = new byte[4];
+		putInt(bytes, 0, value);
+		return bytes;
+	}
+
+	/**
+	 * @param bytes bytes
+	 * @return int
+	 */
+	public static int decodeInt(byte[] bytes) {
+		return getInt(bytes, 0);
+	}
+
+	/**
+	 * Encodes the given long with 8 bytes.
+	 * @param value long
+	 * @return bytes
+	 */
+	public static byte[] encodeLong(long value) {
+		byte[] bytes = new byte[8];
+		putLong(bytes, 0, value);
+		return bytes;
+	}
+
+	/**
+	 * @param bytes bytes
+	 * @return long
+	 */
+	public static long decodeLong(byte[] bytes) {
+		return getLong(bytes, 0);
+	}
+
+	/**
+	 * Encodes the given float with 4 bytes.
+	 * @param value float
+	 * @return bytes
+	 */
+	public static byte[] encodeFloat(float value) {
+		return encodeInt(Float.floatToIntBits(value));
+	}
+
+	/**
+	 * @param bytes bytes
+	 * @return float
+	 */
+	public static float decodeFloat(byte[] bytes) {
+		return Float.intBitsToFloat(getInt(bytes, 0));
+	}
+
+	/**
+	 * Encodes the given double with 8 bytes.
+	 * @param value double
+	 * @return bytes
+	 */
+	public static byte[] encodeDouble(double value) {
+		return encodeLong(Double.doubleToLongBits(value));
+	}
+
+	/**
+	 * @param bytes bytes
+	 * @return double
+	 */
+	public static double decodeDouble(byte[] bytes) {
+		return Double.longBitsToDouble(getLong(bytes, 0));
+	}
+
+	/**
+	 * Returns the number of bytes of the variable length encoding of the
+	 * given long.
+	 * @param value long
+	 * @return number of bytes
+	 */
+	public static int varLongSize(long value) {
+		long zigzag = (value << 1) ^ (value >> 63);
+		int size = 1;
+		while ( (zigzag >>>= 7) != 0 )
+			size++;
+
+		return size;
+	}
+
+	/**
+	 * Writes the given long zigzag and variable length encoded to the array,
+	 * small absolute values take few bytes (1 byte for -64 to 63).
+	 * @param bytes array
+	 * @param offset offset
+	 * @param value long
+	 * @return offset after the written bytes
+	 */
+	public static int putVarLong(byte[] bytes, int offset, long value) {
+		long zigzag = (value << 1) ^ (value >> 63);
+		while ( (zigzag & ~0x7fL) != 0 ) {
+			bytes[offset++] = (byte)((zigzag & 0x7f) | 0x80);
+			zigzag >>>= 7;
+		}
+		bytes[offset++] = (byte)zigzag;
+		return offset;
+	}
+
+	/**
+	 * Reads a zigzag and variable length encoded long from the array.
+	 * @param bytes array
+	 * @param offset offset
+	 * @return long
+	 */
+	public static long getVarLong(byte[] bytes, int offset) {
+		long zigzag = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = bytes[offset++];
+			zigzag |= (long)(b & 0x7f) << shift;
+			shift += 7;
+		} while ( (b & 0x80) != 0 );
+
+		return (zigzag >>> 1) ^ -(zigzag & 1);
+	}
+
+	/**
+	 * Encodes the given long zigzag and variable length encoded.
+	 * @param value long
+	 * @return bytes
+	 */
+	public static byte[] encodeVarLong(long value) {
+		byte[] bytes = new byte[varLongSize(value)];
+		putVarLong(bytes, 0, value);
+		return bytes;
+	}
+
+	/**
+	 * @param bytes bytes
+	 * @return long
+	 */
+	public static long decodeVarLong(byte[] bytes) {
+		return getVarLong(bytes, 0);
+	}
+
+	/**
+	 * Encodes the given int sortable with 4 bytes.
+	 * @param value int
+	 * @return bytes
+	 */
+	public static byte[] encodeSortableInt(int value) {
+		return encodeInt(value ^ Integer.MIN_VALUE);
+	}
+
+	/**
+	 * @param bytes bytes
+	 * @return int
+	 */
+	public static int decodeSortableInt(byte[] bytes) {
+		return getInt(bytes, 0) ^ Integer.MIN_VALUE;
+	}
+
+	/**
+	 * Encodes the given long sortable with 8 bytes.
+	 * @param value long
+	 * @return bytes
+	 */
+	public static byte[] encodeSortableLong(long value) {
+		return encodeLong(value ^ Long.MIN_VALUE);
+	}
+
+	/**
+	 * @param bytes bytes
+	 * @return long
+	 */
+	public static long decodeSortableLong(byte[] bytes) {
+		return getLong(bytes, 0) ^ Long.MIN_VALUE;
+	}
+
+	/**
+	 * Encodes the given float sortable with 4 bytes.
+	 * @param value float
+	 * @return bytes
+	 */
+	public static byte[] encodeSortableFloat(float value) {
+		int bits = Float.floatToIntBits(value);
+		return encodeInt(bits ^ ((bits >> 31) | Integer.MIN_VALUE));
+	}
+
+	/**
+	 * @param bytes bytes
+	 * @return float
+	 */
+	public static float decodeSortableFloat(byte[] bytes) {
+		int bits = getInt(bytes, 0);
+		return Float.intBitsToFloat(bits ^ (((~bits) >> 31) | Integer.MIN_VALUE));
+	}
+
+	/**
+	 * Encodes the given double sortable with 8 bytes.
+	 * @param value double
+	 * @return bytes
+	 */
+	public static byte[] encodeSortableDouble(double value) {
+		long bits = Double.doubleToLongBits(value);
+		return encodeLong(bits ^ ((bits >> 63) | Long.MIN_VALUE));
+	}
+
+	/**
+	 * @param bytes bytes
+	 * @return double
+	 */
+	public static double decodeSortableDouble(byte[] bytes) {
+		long bits = getLong(bytes, 0);
+		return Double.longBitsToDouble(bits ^ (((~bits) >> 63) | Long.MIN_VALUE));
+	}
+}
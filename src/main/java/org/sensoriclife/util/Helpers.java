@@ -193,7 +193,8 @@ public class Helpers {
 	}
 
 	/**
-	 * Converts the given object to a byte array.
+	 * Converts the given object to a byte array. For numbers use
+	 * {@link Codec}, which is much smaller and faster.
 	 * @param obj object
 	 * @return byte array
 	 * @throws IOException 
@@ -0,0 +1,75 @@
+package org.sensoriclife.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.MutationsRejectedException;
+import org.apache.accumulo.core.client.TableExistsException;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Test;
+import org.sensoriclife.db.metrics.Metrics;
+
+/**
+ *
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class AccumuloFactoryTest {
+	@Test
+	public void testFactory() throws AccumuloException, AccumuloSecurityException, InterruptedException, IOException, JMException, MutationsRejectedException, TableExistsException, TableNotFoundException {
+		Accumulo first = AccumuloFactory.getMockClient("factory_first");
+		Accumulo second = AccumuloFactory.getMockClient("factory_second");
+		assertSame(first, AccumuloFactory.getMockClient("factory_first"));
+		assertNotSame(first, second);
+		assertNotSame(Accumulo.getInstance(), first);
+
+		first.createTable("electricity_consumption");
+		second.createTable("electricity_consumption");
+		first.addMutation("electricity_consumption", "1", "electricity", "", 1, "5".getBytes());
+		second.addMutation("electricity_consumption", "2", "electricity", "", 1, "7".getBytes());
+		first.flushBashWriter("electricity_consumption");
+		second.flushBashWriter("electricity_consumption");
+
+		Iterator<Entry<Key, Value>> entries = first.scanAll("electricity_consumption");
+		assertEquals("1", entries.next().getKey().getRow().toString());
+		assertFalse(entries.hasNext());
+		entries = second.scanAll("electricity_consumption");
+		assertEquals("2", entries.next().getKey().getRow().toString());
+		assertFalse(entries.hasNext());
+		assertEquals(1, first.getMetrics().getTableMetrics("electricity_consumption").getMutations());
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = Metrics.getObjectName("TableMetrics", first.getName(), "electricity_consumption");
+		assertTrue(server.isRegistered(name));
+
+		AccumuloFactory.close(first);
+		assertFalse(first.isConnected());
+		assertTrue(second.isConnected());
+		assertFalse(server.isRegistered(name));
+
+		Accumulo third = AccumuloFactory.getMockClient("factory_first");
+		assertNotSame(first, third);
+		if ( !third.getConnector().tableOperations().exists("electricity_consumption") )
+			third.createTable("electricity_consumption");
+		third.addMutation("electricity_consumption", "1", "electricity", "", 1, "5".getBytes());
+		third.addMutation("electricity_consumption", "2", "electricity", "", 1, "5".getBytes());
+		assertEquals(2L, server.getAttribute(name, "Mutations"));
+
+		AccumuloFactory.closeAll();
+		assertFalse(second.isConnected());
+	}
+}
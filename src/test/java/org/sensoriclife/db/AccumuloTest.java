@@ -1,23 +1,60 @@
 package org.sensoriclife.db;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
 import org.apache.accumulo.core.client.AccumuloException;
 import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.BatchWriter;
+import org.apache.accumulo.core.client.BatchWriterConfig;
 import org.apache.accumulo.core.client.MutationsRejectedException;
 import org.apache.accumulo.core.client.TableExistsException;
 import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.client.security.SecurityErrorCode;
+import org.apache.accumulo.core.data.ConstraintViolationSummary;
 import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.KeyExtent;
+import org.apache.accumulo.core.data.Mutation;
 import org.apache.accumulo.core.data.Range;
 import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.apache.accumulo.core.security.VisibilityConstraint;
+import org.apache.hadoop.io.Text;
 import org.junit.BeforeClass;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.sensoriclife.Config;
 import org.sensoriclife.Logger;
+import org.sensoriclife.db.iterators.ValueEncoding;
+import org.sensoriclife.db.metrics.Metrics;
+import org.sensoriclife.db.metrics.MetricsReporter;
+import org.sensoriclife.db.metrics.TableMetrics;
+import org.sensoriclife.util.Codec;
 import org.sensoriclife.util.Helpers;
 
 /**
@@ -128,6 +165,37 @@ public class AccumuloTest {
 		accumulo.disconnect();
 	}
 
+	@Test
+	public void testBulkWriter() throws Exception {
+		Accumulo accumulo = Accumulo.getInstance();
+		accumulo.connect(this.tmpDirectory.newFolder(), "password");
+		accumulo.createTable("electricity_consumption", false);
+		Config.getInstance().getProperties().setProperty("accumulo.bulk_writer.max_memory", "10000");
+
+		String directory = this.tmpDirectory.getRoot().getAbsolutePath() + "/bulk";
+		try ( BulkWriter writer = accumulo.createBulkWriter("electricity_consumption", directory) ) {
+			for ( int i = 999; i >= 0; i-- )
+				writer.addMutation(String.format("%03d", i), "electricity", "", i, new Value(String.valueOf(i).getBytes()));
+			writer.addMutation(accumulo.newMutation("500", "water", "", 1, "3".getBytes()));
+		}
+		Config.getInstance().getProperties().setProperty("accumulo.bulk_writer.max_memory", "67108864");
+
+		int i = 0;
+		try ( ScanIterator entries = accumulo.scanAll("electricity_consumption") ) {
+			while ( entries.hasNext() ) {
+				Entry<Key, Value> entry = entries.next();
+				if ( entry.getKey().getColumnFamily().toString().equals("electricity") )
+					assertEquals(Integer.parseInt(entry.getKey().getRow().toString()), Integer.parseInt(entry.getValue().toString()));
+				i++;
+			}
+		}
+		assertEquals(1001, i);
+		assertFalse(new File(directory).exists());
+
+		accumulo.deleteTable("electricity_consumption");
+		accumulo.disconnect();
+	}
+
 	@Test
 	public void testAddMutation() throws AccumuloException, AccumuloSecurityException, IOException, InterruptedException, MutationsRejectedException, TableExistsException, TableNotFoundException {
 		Accumulo accumulo = Accumulo.getInstance();
@@ -163,4 +231,914 @@ public class AccumuloTest {
 		accumulo.deleteTable("test_batch");
 		accumulo.disconnect();
 	}
+
+	@Test
+	public void testMultiTableBatchWriter() throws AccumuloException, AccumuloSecurityException, IOException, InterruptedException, MutationsRejectedException, TableExistsException, TableNotFoundException {
+		Accumulo accumulo = Accumulo.getInstance();
+		accumulo.connect();
+		Config.getInstance().getProperties().setProperty("accumulo.batch_writer.multi_table", "true");
+
+		String[] tables = {"electricity_consumption", "water_consumption", "heat_consumption"};
+		for ( String table : tables ) {
+			accumulo.createTable(table);
+			accumulo.addMutation(table, "1", "consumption", "", 1, "5".getBytes());
+			accumulo.addMutation(table, "2", "consumption", "", 2, "7".getBytes());
+		}
+		accumulo.flushBashWriter("electricity_consumption");
+		for ( String table : tables )
+			assertEquals(0, accumulo.getMetrics().getTableMetrics(table).getBytesSinceFlush());
+
+		for ( String table : tables ) {
+			Iterator<Entry<Key, Value>> entries = accumulo.scanAll(table);
+			int i = 0;
+			while ( entries.hasNext() ) {
+				entries.next();
+				i++;
+			}
+			assertEquals(2, i);
+		}
+
+		accumulo.addMutation("water_consumption", "3", "consumption", "", 3, "1".getBytes());
+		accumulo.closeBashWriter("electricity_consumption");
+		accumulo.closeBashWriter("water_consumption");
+		accumulo.closeBashWriter("heat_consumption");
+
+		Iterator<Entry<Key, Value>> entries = accumulo.scanAll("water_consumption");
+		int i = 0;
+		while ( entries.hasNext() ) {
+			entries.next();
+			i++;
+		}
+		assertEquals(3, i);
+
+		for ( String table : tables )
+			accumulo.deleteTable(table);
+		Config.getInstance().getProperties().setProperty("accumulo.batch_writer.multi_table", "false");
+		accumulo.disconnect();
+	}
+
+	@Test
+	public void testScan() throws AccumuloException, AccumuloSecurityException, IOException, InterruptedException, MutationsRejectedException, TableExistsException, TableNotFoundException {
+		Accumulo accumulo = Accumulo.getInstance();
+		accumulo.connect();
+		accumulo.createTable("electricity_consumption");
+
+		for ( int i = 0; i < 1000; i++ ) {
+			accumulo.addMutation("electricity_consumption", String.format("%04d", i), "electricity", "", i, "5".getBytes());
+			accumulo.addMutation("electricity_consumption", String.format("%04d", i), "water", "", i, "1".getBytes());
+		}
+		accumulo.closeBashWriter("electricity_consumption");
+
+		int i = 0;
+		try ( ScanIterator entries = accumulo.scan("electricity_consumption", new Authorizations(), new Range("0100", "0199"), "electricity", null, 10) ) {
+			while ( entries.hasNext() ) {
+				assertEquals("electricity", entries.next().getKey().getColumnFamily().toString());
+				i++;
+			}
+			assertFalse(entries.hasNext());
+		}
+		assertEquals(100, i);
+
+		ScanIterator entries = accumulo.scanAll("electricity_consumption");
+		entries.next();
+		entries.close();
+		assertFalse(entries.hasNext());
+
+		accumulo.deleteTable("electricity_consumption");
+		accumulo.disconnect();
+	}
+
+	@Test
+	public void testBatchScan() throws AccumuloException, AccumuloSecurityException, IOException, InterruptedException, MutationsRejectedException, TableExistsException, TableNotFoundException {
+		Accumulo accumulo = Accumulo.getInstance();
+		accumulo.connect();
+		accumulo.createTable("electricity_consumption");
+
+		for ( int i = 0; i < 100; i++ ) {
+			accumulo.addMutation("electricity_consumption", String.format("%03d", i), "electricity", "", i, "5".getBytes());
+			accumulo.addMutation("electricity_consumption", String.format("%03d", i), "water", "", i, "1".getBytes());
+		}
+		accumulo.closeBashWriter("electricity_consumption");
+
+		List<Range> ranges = new ArrayList<>();
+		for ( int i = 0; i < 100; i += 10 )
+			ranges.add(new Range(String.format("%03d", i)));
+
+		Set<String> rows = new HashSet<>();
+		try ( ScanIterator entries = accumulo.batchScanByFamily("electricity_consumption", ranges, "water", new Authorizations()) ) {
+			while ( entries.hasNext() ) {
+				Entry<Key, Value> entry = entries.next();
+				assertEquals("water", entry.getKey().getColumnFamily().toString());
+				rows.add(entry.getKey().getRow().toString());
+			}
+		}
+		assertEquals(10, rows.size());
+
+		ScanIterator entries = accumulo.batchScan("electricity_consumption", new Authorizations(), ranges, null, null, 2);
+		int i = 0;
+		while ( entries.hasNext() ) {
+			entries.next();
+			i++;
+		}
+		assertEquals(20, i);
+
+		accumulo.deleteTable("electricity_consumption");
+		accumulo.disconnect();
+	}
+
+	@Test
+	public void testAggregation() throws AccumuloException, AccumuloSecurityException, IOException, InterruptedException, MutationsRejectedException, TableExistsException, TableNotFoundException {
+		Accumulo accumulo = Accumulo.getInstance();
+		accumulo.connect();
+
+		Map<String, Aggregation> aggregations = new LinkedHashMap<>();
+		aggregations.put("total", Aggregation.SUM);
+		aggregations.put("min", Aggregation.MIN);
+		aggregations.put("max", Aggregation.MAX);
+		aggregations.put("count", Aggregation.COUNT);
+		accumulo.createTable("electricity_consumption", aggregations);
+
+		long[] readings = {5, 13, 2, 8};
+		for ( int i = 0; i < readings.length; i++ )
+			for ( Map.Entry<String, Aggregation> aggregation : aggregations.entrySet() )
+				accumulo.addMutation("electricity_consumption", "1", aggregation.getKey(), "", i, aggregation.getValue().toValue(readings[i]));
+		accumulo.closeBashWriter("electricity_consumption");
+
+		Map<String, Long> result = new LinkedHashMap<>();
+		try ( ScanIterator entries = accumulo.scanAll("electricity_consumption") ) {
+			while ( entries.hasNext() ) {
+				Entry<Key, Value> entry = entries.next();
+				result.put(entry.getKey().getColumnFamily().toString(), Aggregation.decode(entry.getValue()));
+			}
+		}
+		assertEquals(4, result.size());
+		assertEquals(28l, (long)result.get("total"));
+		assertEquals(2l, (long)result.get("min"));
+		assertEquals(13l, (long)result.get("max"));
+		assertEquals(4l, (long)result.get("count"));
+
+		accumulo.deleteTable("electricity_consumption");
+		accumulo.disconnect();
+	}
+
+	@Test
+	public void testSaltedTable() throws AccumuloException, AccumuloSecurityException, IOException, InterruptedException, MutationsRejectedException, TableExistsException, TableNotFoundException {
+		Accumulo accumulo = Accumulo.getInstance();
+		accumulo.connect();
+
+		Salt salt = new Salt(12);
+		accumulo.createTable("electricity_consumption", salt);
+		Collection<Text> splits = accumulo.getConnector().tableOperations().listSplits("electricity_consumption");
+		assertEquals(11, splits.size());
+		assertEquals(new Text("01"), splits.iterator().next());
+
+		for ( int i = 0; i < 100; i++ )
+			accumulo.addMutation("electricity_consumption", salt.salt(String.format("%03d", i)), "electricity", "", i, "5".getBytes());
+		accumulo.closeBashWriter("electricity_consumption");
+
+		Set<Integer> buckets = new HashSet<>();
+		Set<String> rows = new HashSet<>();
+		try ( ScanIterator entries = accumulo.batchScanByKey("electricity_consumption", salt.getRanges("010", "019")) ) {
+			while ( entries.hasNext() ) {
+				String row = entries.next().getKey().getRow().toString();
+				buckets.add(Integer.valueOf(row.substring(0, 2)));
+				rows.add(salt.unsalt(row));
+			}
+		}
+		assertEquals(10, rows.size());
+		assertTrue(buckets.size() > 1);
+
+		accumulo.deleteTable("electricity_consumption");
+		accumulo.disconnect();
+	}
+
+	@Test
+	public void testBatchWriterConfig() {
+		Accumulo accumulo = Accumulo.getInstance();
+		Config.getInstance().getProperties().setProperty("accumulo.batch_writer.heat_consumption.max_memory", "1000000");
+		Config.getInstance().getProperties().setProperty("accumulo.batch_writer.heat_consumption.max_write_threads", "2");
+
+		BatchWriterConfig config = accumulo.getBatchWriterConfig("heat_consumption");
+		assertEquals(1000000, config.getMaxMemory());
+		assertEquals(2, config.getMaxWriteThreads());
+		assertEquals(Config.getLongProperty("accumulo.batch_writer.max_latency"), config.getMaxLatency(TimeUnit.MILLISECONDS));
+
+		config = accumulo.getBatchWriterConfig("water_consumption");
+		assertEquals(Config.getLongProperty("accumulo.batch_writer.max_memory"), config.getMaxMemory());
+		assertEquals(Config.getIntegerProperty("accumulo.batch_writer.max_write_threads"), config.getMaxWriteThreads());
+
+		Config.getInstance().getProperties().remove("accumulo.batch_writer.heat_consumption.max_memory");
+		Config.getInstance().getProperties().remove("accumulo.batch_writer.heat_consumption.max_write_threads");
+	}
+
+	@Test
+	public void testConcurrentAddMutation() throws AccumuloException, AccumuloSecurityException, IOException, InterruptedException, MutationsRejectedException, TableExistsException, TableNotFoundException {
+		Accumulo accumulo = Accumulo.getInstance();
+		accumulo.connect();
+
+		this.addMutations(accumulo, 4, 5000, false);
+		this.addMutations(accumulo, 4, 5000, true);
+
+		accumulo.disconnect();
+	}
+
+	@Test
+	public void testMetrics() throws AccumuloException, AccumuloSecurityException, InterruptedException, IOException, MalformedObjectNameException, MutationsRejectedException, TableExistsException, TableNotFoundException {
+		Accumulo accumulo = Accumulo.getInstance();
+		accumulo.connect();
+		accumulo.createTable("metrics");
+
+		final List<TableMetrics> reported = new ArrayList<>();
+		MetricsReporter reporter = new MetricsReporter() {
+			@Override
+			public void report(Collection<TableMetrics> metrics) {
+				reported.addAll(metrics);
+			}
+		};
+		accumulo.getMetrics().addReporter(reporter);
+
+		for ( int i = 0; i < 10; i++ )
+			accumulo.addMutation("metrics", String.valueOf(i), "electricity", "", i, "5".getBytes());
+
+		TableMetrics metrics = accumulo.getMetrics().getTableMetrics("metrics");
+		assertEquals(10, metrics.getMutations());
+		assertTrue(metrics.getBytesSinceFlush() > 0);
+		assertEquals(metrics.getBytesAdded(), metrics.getBytesSinceFlush());
+
+		accumulo.flushBashWriter("metrics");
+		assertEquals(1, metrics.getFlushes());
+		assertEquals(0, metrics.getBytesSinceFlush());
+
+		try ( ScanIterator entries = accumulo.scanAll("metrics") ) {
+			while ( entries.hasNext() )
+				entries.next();
+		}
+		assertEquals(1, metrics.getScans());
+		assertEquals(10, metrics.getScanEntries());
+		assertTrue(metrics.getScanBytes() > 0);
+		assertEquals(1, metrics.getTimeToFirstEntry().getCount());
+
+		assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(Metrics.getObjectName("TableMetrics", accumulo.getName(), "metrics")));
+
+		accumulo.getMetrics().report();
+		assertTrue(reported.contains(metrics));
+		accumulo.getMetrics().removeReporter(reporter);
+
+		accumulo.closeBashWriter("metrics");
+		accumulo.deleteTable("metrics");
+		accumulo.disconnect();
+		assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(Metrics.getObjectName("TableMetrics", accumulo.getName(), "metrics")));
+		assertTrue(accumulo.getMetrics().getTableMetrics().isEmpty());
+	}
+
+	@Test
+	public void testScanCache() throws AccumuloException, AccumuloSecurityException, InterruptedException, IOException, MutationsRejectedException, TableExistsException, TableNotFoundException {
+		Accumulo accumulo = Accumulo.getInstance();
+		accumulo.connect();
+		accumulo.setCache(new ScanCache(100, 1024 * 1024, 60000));
+		accumulo.createTable("cache");
+
+		TimeSeriesSchema schema = new TimeSeriesSchema(3600000);
+		accumulo.addMutation("cache", schema.getRowId("1", 1000), "electricity", schema.getColumnQualifier(1000), 1000, "5".getBytes());
+		accumulo.addMutation("cache", "2", "electricity", "", 1000, "7".getBytes());
+		accumulo.flushBashWriter("cache");
+
+		Range range = new Range("2");
+		for ( int i = 0; i < 2; i++ ) {
+			ScanIterator entries = accumulo.scanByKey("cache", range);
+			assertEquals("7", entries.next().getValue().toString());
+			assertFalse(entries.hasNext());
+		}
+		assertEquals(1, accumulo.getCache().getHits());
+
+		for ( int i = 0; i < 2; i++ )
+			assertEquals("5", accumulo.scanLatest("cache", new Authorizations(), schema, "1", "electricity").getValue().toString());
+		assertEquals(2, accumulo.getCache().getHits());
+
+		accumulo.addMutation("cache", "2", "electricity", "", 2000, "9".getBytes());
+		accumulo.flushBashWriter("cache");
+		ScanIterator entries = accumulo.scanByKey("cache", range);
+		assertEquals("9", entries.next().getValue().toString());
+		entries.close();
+		assertEquals(2, accumulo.getCache().getHits());
+		assertEquals(1, accumulo.getCache().getInvalidations());
+
+		accumulo.closeBashWriter("cache");
+		accumulo.deleteTable("cache");
+		assertEquals(0, accumulo.getCache().getSize());
+		accumulo.setCache(null);
+		accumulo.disconnect();
+	}
+
+	@Test
+	public void testRetry() throws AccumuloException, AccumuloSecurityException, IOException, InterruptedException, MutationsRejectedException, TableExistsException, TableNotFoundException {
+		Accumulo accumulo = new Accumulo();
+		accumulo.connect(this.tmpDirectory.newFolder(), "password");
+		accumulo.createTable("retry");
+		accumulo.getConnector().tableOperations().addConstraint("retry", VisibilityConstraint.class.getName());
+		Thread.sleep(2000);
+
+		final List<String> deadLetters = new ArrayList<>();
+		accumulo.setRetryPolicy(new RetryPolicy(3, 10, 100));
+		accumulo.setDeadLetterSink(new DeadLetterSink() {
+			@Override
+			public void accept(String table, Mutation mutation, Exception cause) {
+				deadLetters.add(new String(mutation.getRow()));
+			}
+		});
+
+		accumulo.addMutation("retry", "1", "electricity", "", 1, "5".getBytes());
+		accumulo.addMutation("retry", "2", "electricity", "", "secret", 1, new Value("7".getBytes()));
+		accumulo.addMutation("retry", "3", "electricity", "", 1, "9".getBytes());
+		accumulo.closeBashWriter("retry");
+
+		assertEquals("[2]", deadLetters.toString());
+		assertEquals(1, accumulo.getMetrics().getTableMetrics("retry").getDeadLetters());
+
+		Iterator<Entry<Key, Value>> entries = accumulo.scanAll("retry");
+		assertEquals("1", entries.next().getKey().getRow().toString());
+		assertEquals("3", entries.next().getKey().getRow().toString());
+		assertFalse(entries.hasNext());
+
+		accumulo.deleteTable("retry");
+		accumulo.disconnect();
+	}
+
+	@Test
+	public void testRecovery() throws AccumuloException, AccumuloSecurityException, IOException, InterruptedException, MutationsRejectedException, TableExistsException, TableNotFoundException {
+		final List<StubWriter> writers = new ArrayList<>();
+		final Accumulo accumulo = new Accumulo("recovery") {
+			@Override
+			protected BatchWriter createBatchWriter(String table) throws TableNotFoundException {
+				StubWriter writer = new StubWriter(super.createBatchWriter(table));
+				writers.add(writer);
+				return writer;
+			}
+		};
+		accumulo.connect();
+		accumulo.createTable("recovery");
+
+		final List<String> deadLetters = new ArrayList<>();
+		accumulo.setRetryPolicy(new RetryPolicy(3, 1, 10));
+		accumulo.setDeadLetterSink(new DeadLetterSink() {
+			@Override
+			public void accept(String table, Mutation mutation, Exception cause) {
+				deadLetters.add(new String(mutation.getRow()));
+			}
+		});
+
+		// the writer fails while it is flushed, a newer mutation goes to its replacement
+		accumulo.addMutation("recovery", "1", "electricity", "", 1, "5".getBytes());
+		writers.get(0).onFlush = new Runnable() {
+			@Override
+			public void run() {
+				writers.get(0).broken = true;
+				try {
+					accumulo.addMutation("recovery", "2", "electricity", "", 1, "7".getBytes());
+					accumulo.addMutation("recovery", "3", "electricity", "", 1, "9".getBytes());
+				}
+				catch ( MutationsRejectedException | TableNotFoundException e ) {
+					throw new IllegalStateException(e);
+				}
+			}
+		};
+		accumulo.flushBashWriter("recovery");
+		assertEquals(2, writers.size());
+
+		// the replacement fails as well and has to write the newer mutation again
+		writers.get(1).broken = true;
+		accumulo.flushBashWriter("recovery");
+
+		assertTrue(deadLetters.isEmpty());
+		assertEquals(2, accumulo.getMetrics().getTableMetrics("recovery").getRetries());
+		Iterator<Entry<Key, Value>> entries = accumulo.scanAll("recovery");
+		for ( String row : new String[]{"1", "2", "3"} )
+			assertEquals(row, entries.next().getKey().getRow().toString());
+		assertFalse(entries.hasNext());
+
+		accumulo.closeBashWriter("recovery");
+		accumulo.deleteTable("recovery");
+		accumulo.disconnect();
+	}
+
+	@Test
+	public void testDisconnectRecovery() throws AccumuloException, AccumuloSecurityException, IOException, InterruptedException, MutationsRejectedException, TableExistsException, TableNotFoundException {
+		final List<StubWriter> writers = new ArrayList<>();
+		Accumulo accumulo = new Accumulo("disconnect") {
+			@Override
+			protected BatchWriter createBatchWriter(String table) throws TableNotFoundException {
+				StubWriter writer = new StubWriter(super.createBatchWriter(table));
+				writers.add(writer);
+				return writer;
+			}
+		};
+		accumulo.connect("disconnect");
+		accumulo.createTable("disconnect");
+
+		final List<String> deadLetters = new ArrayList<>();
+		accumulo.setRetryPolicy(new RetryPolicy(3, 1, 10));
+		accumulo.setDeadLetterSink(new DeadLetterSink() {
+			@Override
+			public void accept(String table, Mutation mutation, Exception cause) {
+				deadLetters.add(new String(mutation.getRow()));
+			}
+		});
+
+		// the writer fails while it is closed, its replay buffer is written on disconnect
+		accumulo.addMutation("disconnect", "1", "electricity", "", 1, "5".getBytes());
+		accumulo.addMutation("disconnect", "2", "electricity", "", 1, "7".getBytes());
+		writers.get(0).broken = true;
+		accumulo.disconnect();
+
+		assertTrue(deadLetters.isEmpty());
+		accumulo.connect("disconnect");
+		assertEquals(2, this.count(accumulo.scanAll("disconnect")));
+		accumulo.deleteTable("disconnect");
+		accumulo.disconnect();
+	}
+
+	@Test
+	public void testFilters() throws AccumuloException, AccumuloSecurityException, IOException, InterruptedException, MutationsRejectedException, TableExistsException, TableNotFoundException {
+		Accumulo accumulo = Accumulo.getInstance();
+		accumulo.connect();
+		accumulo.createTable("filters", false);
+
+		for ( int i = 0; i < 3; i++ )
+			for ( int t = 1; t <= 4; t++ )
+				accumulo.addMutation("filters", "meter" + i, "electricity", "", t, String.valueOf(i * 10 + t).getBytes());
+		accumulo.addMutation("filters", "meter0", "water", "", 2, "3".getBytes());
+		accumulo.flushBashWriter("filters");
+
+		assertEquals(7, this.count(accumulo.scanByKey("filters", new Authorizations(), new Range(), Arrays.asList(Filters.timestampRange(2, 3)))));
+		assertEquals(4, this.count(accumulo.scanByKey("filters", new Authorizations(), new Range(), Arrays.asList(Filters.rowRegex("meter1")))));
+		assertEquals(1, this.count(accumulo.scanByKey("filters", new Authorizations(), new Range(), Arrays.asList(Filters.columnRegex("water", null)))));
+		assertEquals(4, this.count(accumulo.scanByKey("filters", new Authorizations(), new Range(), Arrays.asList(Filters.valueAbove(20)))));
+		assertEquals(6, this.count(accumulo.scanByKey("filters", new Authorizations(), new Range(), Arrays.asList(Filters.firstEntriesPerRow(2)))));
+		assertEquals(2, this.count(accumulo.scanByKey("filters", new Authorizations(), new Range(), Arrays.asList(Filters.valueAbove(10), Filters.since(4), Filters.firstEntriesPerRow(1)))));
+		assertEquals(2, this.count(accumulo.batchScan("filters", new Authorizations(), Arrays.asList(new Range("meter0"), new Range("meter2")), "electricity", null, 2, Arrays.asList(Filters.timestampRange(4, 4)))));
+
+		accumulo.closeBashWriter("filters");
+		accumulo.deleteTable("filters");
+		accumulo.disconnect();
+	}
+
+	@Test
+	public void testDownsampling() throws AccumuloException, AccumuloSecurityException, IOException, InterruptedException, MutationsRejectedException, TableExistsException, TableNotFoundException {
+		Accumulo accumulo = new Accumulo();
+		accumulo.connect(this.tmpDirectory.newFolder(), "password");
+		accumulo.createTable("downsampling", false);
+
+		TimeSeriesSchema schema = new TimeSeriesSchema(3600000);
+		for ( int i = 0; i < 180; i++ ) {
+			accumulo.addMutation("downsampling", "1", "electricity", "", i * 60000L, String.valueOf(i).getBytes());
+			accumulo.addMutation("downsampling", schema.getRowId("2", i * 60000L), "electricity", schema.getColumnQualifier(i * 60000L), i * 60000L, String.valueOf(i).getBytes());
+		}
+		accumulo.flushBashWriter("downsampling");
+
+		List<Downsample> windows = accumulo.downsample("downsampling", new Authorizations(), new Range("1"), "electricity", 3600000, ValueEncoding.STRING);
+		assertEquals(3, windows.size());
+		assertEquals(7200000, windows.get(0).getStart());
+		assertEquals(60, windows.get(0).getCount());
+		assertEquals(120, windows.get(0).getMin(), 0);
+		assertEquals(179, windows.get(0).getMax(), 0);
+		assertEquals(149.5, windows.get(0).getAvg(), 0);
+		assertEquals(0, windows.get(2).getStart());
+
+		windows = accumulo.downsampleTimeSeries("downsampling", new Authorizations(), schema, "2", 0, 179 * 60000L, "electricity", 7200000);
+		assertEquals(2, windows.size());
+		assertEquals(7200000, windows.get(0).getStart());
+		assertEquals(60, windows.get(0).getCount());
+		assertEquals(0, windows.get(1).getStart());
+		assertEquals(120, windows.get(1).getCount());
+		assertEquals(0, windows.get(1).getMin(), 0);
+		assertEquals(119, windows.get(1).getMax(), 0);
+
+		accumulo.closeBashWriter("downsampling");
+		accumulo.deleteTable("downsampling");
+		accumulo.disconnect();
+	}
+
+	@Test
+	public void testTableProfile() throws AccumuloException, AccumuloSecurityException, IOException, InterruptedException, MutationsRejectedException, TableExistsException, TableNotFoundException {
+		Config.getInstance().getProperties().setProperty("accumulo.table_profile.meters.locality_groups", "electricity; usage:water,heat");
+		Config.getInstance().getProperties().setProperty("accumulo.table_profile.meters.bloom_filter", "true");
+		Config.getInstance().getProperties().setProperty("accumulo.table_profile.meters.compression", "snappy");
+		Config.getInstance().getProperties().setProperty("accumulo.table_profile.meters.data_cache", "true");
+		Config.getInstance().getProperties().setProperty("accumulo.table_profile.meters.split_threshold", "512M");
+
+		Accumulo accumulo = Accumulo.getInstance();
+		accumulo.connect();
+		accumulo.createTable("profile", "meters");
+
+		Map<String, String> properties = new HashMap<>();
+		for ( Entry<String, String> property : accumulo.getConnector().tableOperations().getProperties("profile") )
+			properties.put(property.getKey(), property.getValue());
+		assertEquals("true", properties.get("table.bloom.enabled"));
+		assertEquals("snappy", properties.get("table.file.compress.type"));
+		assertEquals("true", properties.get("table.cache.block.enable"));
+		assertEquals("512M", properties.get("table.split.threshold"));
+
+		Map<String, Set<Text>> groups = accumulo.getConnector().tableOperations().getLocalityGroups("profile");
+		assertEquals(new HashSet<>(Arrays.asList(new Text("electricity"))), groups.get("electricity"));
+		assertEquals(new HashSet<>(Arrays.asList(new Text("water"), new Text("heat"))), groups.get("usage"));
+
+		accumulo.applyProfile("profile", new TableProfile("gas").setLocalityGroup("gas", "gas", "heat"));
+		groups = accumulo.getConnector().tableOperations().getLocalityGroups("profile");
+		assertEquals(3, groups.size());
+		assertEquals(new HashSet<>(Arrays.asList(new Text("water"))), groups.get("usage"));
+
+		for ( String key : new String[]{"locality_groups", "bloom_filter", "compression", "data_cache", "split_threshold"} )
+			Config.getInstance().getProperties().remove("accumulo.table_profile.meters." + key);
+		accumulo.deleteTable("profile");
+		accumulo.disconnect();
+	}
+
+	@Test
+	public void testRetention() throws AccumuloException, AccumuloSecurityException, IOException, InterruptedException, MutationsRejectedException, TableExistsException, TableNotFoundException {
+		Config.getInstance().getProperties().setProperty("accumulo.retention.retention.ttl", "86400000");
+		Config.getInstance().getProperties().setProperty("accumulo.retention.retention.family_ttl", "water:3600000");
+		Config.getInstance().getProperties().setProperty("accumulo.retention.retention.max_versions", "1");
+
+		Accumulo accumulo = Accumulo.getInstance();
+		accumulo.connect();
+		accumulo.createTable("retention", false);
+
+		long now = System.currentTimeMillis();
+		accumulo.addMutation("retention", "1", "electricity", "", now, "5".getBytes());
+		accumulo.addMutation("retention", "1", "electricity", "", now - 1000, "4".getBytes());
+		accumulo.addMutation("retention", "2", "electricity", "", now - 2 * 86400000L, "3".getBytes());
+		accumulo.addMutation("retention", "3", "water", "", now - 7200000, "2".getBytes());
+		accumulo.addMutation("retention", "4", "water", "", now, "1".getBytes());
+		accumulo.flushBashWriter("retention");
+		assertEquals(5, this.count(accumulo.scanAll("retention")));
+
+		accumulo.applyRetention("retention");
+		accumulo.applyRetention("retention");
+		ScanIterator entries = accumulo.scanAll("retention");
+		assertEquals("5", entries.next().getValue().toString());
+		assertEquals("1", entries.next().getValue().toString());
+		assertFalse(entries.hasNext());
+
+		// a lower policy without family time to lives drops the water filter
+		accumulo.applyRetention("retention", new RetentionPolicy().setTtl(3 * 3600000L));
+		assertEquals(3, this.count(accumulo.scanAll("retention")));
+		assertFalse(accumulo.getConnector().tableOperations().listIterators("retention").containsKey(RetentionPolicy.COLUMN_AGE_OFF));
+
+		accumulo.applyRetention("retention", new RetentionPolicy());
+		assertEquals(4, this.count(accumulo.scanAll("retention")));
+		assertFalse(accumulo.getConnector().tableOperations().listIterators("retention").containsKey(RetentionPolicy.AGE_OFF));
+
+		accumulo.compact("retention", null, null, true);
+		accumulo.scheduleCompaction("retention");
+		assertTrue(accumulo.getCompactionScheduler().isScheduled("retention"));
+
+		for ( String key : new String[]{"ttl", "family_ttl", "max_versions"} )
+			Config.getInstance().getProperties().remove("accumulo.retention.retention." + key);
+		accumulo.closeBashWriter("retention");
+		accumulo.deleteTable("retention");
+		assertFalse(accumulo.getCompactionScheduler().isScheduled("retention"));
+		accumulo.disconnect();
+	}
+
+	@Test
+	public void testIndex() throws AccumuloException, AccumuloSecurityException, IOException, InterruptedException, MutationsRejectedException, TableExistsException, TableNotFoundException {
+		Accumulo accumulo = Accumulo.getInstance();
+		accumulo.connect();
+		accumulo.createTable("meters");
+		accumulo.addIndex("meters", new IndexDefinition("building", "building", null, IndexDefinition.Source.VALUE, IndexDefinition.Type.TERM));
+		accumulo.addIndex("meters", new IndexDefinition("electricity", "electricity", "", IndexDefinition.Source.VALUE, IndexDefinition.Type.NUMBER));
+
+		String[] buildings = {"X", "X", "Y"};
+		for ( int i = 0; i < 3; i++ ) {
+			accumulo.addMutation("meters", String.valueOf(i), "building", "", 1, buildings[i].getBytes());
+			accumulo.addMutation("meters", String.valueOf(i), "electricity", "", 1, String.valueOf((int)Math.pow(10, i) * 5).getBytes());
+		}
+		accumulo.flushBashWriter("meters");
+		assertEquals(1, accumulo.getMetrics().getTableMetrics("meters_idx_building").getFlushes());
+		assertEquals(1, accumulo.getMetrics().getTableMetrics("meters_idx_electricity").getFlushes());
+
+		Set<String> rows = new HashSet<>();
+		ScanIterator entries = accumulo.queryIndex("meters", "building", new Authorizations(), "X");
+		while ( entries.hasNext() )
+			rows.add(entries.next().getKey().getRow().toString());
+		assertEquals(new HashSet<>(Arrays.asList("0", "1")), rows);
+
+		assertEquals(4, this.count(accumulo.queryIndex("meters", "electricity", new Authorizations(), 40, 1000)));
+		accumulo.addMutation("meters", "1", "electricity", "", 2, "7".getBytes());
+		accumulo.flushBashWriters();
+		entries = accumulo.queryIndex("meters", "electricity", new Authorizations(), 40, 1000);
+		assertEquals("2", entries.next().getKey().getRow().toString());
+		entries.next();
+		assertFalse(entries.hasNext());
+		assertEquals(0, this.count(accumulo.queryIndex("meters", "building", new Authorizations(), "Z")));
+
+		accumulo.closeBashWriters();
+		accumulo.deleteTable("meters");
+		assertFalse(accumulo.getConnector().tableOperations().exists("meters_idx_building"));
+		assertTrue(accumulo.getIndexes("meters").isEmpty());
+		accumulo.disconnect();
+	}
+
+	@Test
+	public void testIndexAutoFlush() throws AccumuloException, AccumuloSecurityException, IOException, InterruptedException, MutationsRejectedException, TableExistsException, TableNotFoundException {
+		// the table writer flushes on its own, the index writer only when asked
+		Accumulo accumulo = new Accumulo("autoflush") {
+			@Override
+			protected BatchWriter createBatchWriter(String table) throws TableNotFoundException {
+				BatchWriter writer = super.createBatchWriter(table);
+				return table.equals("autoflush") ? writer : new StubWriter(writer);
+			}
+		};
+		accumulo.connect();
+		accumulo.createTable("autoflush");
+		accumulo.addIndex("autoflush", new IndexDefinition("building", "building", null, IndexDefinition.Source.VALUE, IndexDefinition.Type.TERM));
+
+		accumulo.addMutation("autoflush", "1", "building", "", 1, "X".getBytes());
+		assertEquals(1, this.count(accumulo.scanAll("autoflush")));
+		assertEquals(0, this.count(accumulo.queryIndex("autoflush", "building", new Authorizations(), "X")));
+
+		accumulo.flushBashWriter("autoflush");
+		assertEquals(1, this.count(accumulo.queryIndex("autoflush", "building", new Authorizations(), "X")));
+
+		accumulo.closeBashWriters();
+		accumulo.deleteTable("autoflush");
+		accumulo.disconnect();
+	}
+
+	@Test
+	public void testRollup() throws AccumuloException, AccumuloSecurityException, IOException, InterruptedException, MutationsRejectedException, TableExistsException, TableNotFoundException {
+		Accumulo accumulo = Accumulo.getInstance();
+		accumulo.connect();
+		accumulo.createTable("consumption", false);
+		accumulo.addRollup("consumption", new RollupDefinition("electricity", EnumSet.of(Granularity.HOUR, Granularity.DAY), EnumSet.of(Aggregation.SUM, Aggregation.COUNT, Aggregation.MAX), null));
+
+		long minute = 60000, hour = 60 * minute, day = 24 * hour;
+		for ( int i = 0; i < 432; i++ )
+			accumulo.addMutation("consumption", "1", "electricity", "", i * 10 * minute, "2".getBytes());
+		accumulo.addMutation("consumption", "1", "electricity", "", day + 5 * minute, "9".getBytes());
+		accumulo.flushBashWriters();
+
+		assertEquals(873L, (long)accumulo.queryRollup("consumption", new Authorizations(), "1", "electricity", 0, 3 * day, Aggregation.SUM));
+		assertEquals(433L, (long)accumulo.queryRollup("consumption", new Authorizations(), "1", "electricity", 0, 3 * day, Aggregation.COUNT));
+		assertEquals(295L, (long)accumulo.queryRollup("consumption", new Authorizations(), "1", "electricity", 30 * minute, 2 * day + 90 * minute, Aggregation.COUNT));
+		assertEquals(2L, (long)accumulo.queryRollup("consumption", new Authorizations(), "1", "electricity", 2 * day + 15 * minute, 2 * day + 25 * minute, Aggregation.MAX));
+		assertEquals(9L, (long)accumulo.queryRollup("consumption", new Authorizations(), "1", "electricity", 0, 2 * day, Aggregation.MAX));
+		assertNull(accumulo.queryRollup("consumption", new Authorizations(), "2", "electricity", 0, 3 * day, Aggregation.SUM));
+
+		SortedMap<Long, Long> series = accumulo.queryRollupSeries("consumption", new Authorizations(), "1", "electricity", Granularity.DAY, 0, 3 * day, Aggregation.SUM);
+		assertEquals(3, series.size());
+		assertEquals(297L, (long)series.get(day));
+
+		// readings in kWh are rolled up in Wh, finer readings are rejected
+		accumulo.addRollup("consumption", new RollupDefinition("water", EnumSet.of(Granularity.HOUR), EnumSet.of(Aggregation.SUM), null, 1000));
+		accumulo.addMutation("consumption", "1", "water", "", 5 * minute, "0.5".getBytes());
+		accumulo.addMutation("consumption", "1", "water", "", 6 * minute, "1.25".getBytes());
+		try {
+			accumulo.addMutation("consumption", "1", "water", "", 7 * minute, "0.0005".getBytes());
+			fail("reading finer than the rollup unit not rejected");
+		}
+		catch ( IllegalArgumentException e ) {}
+		accumulo.flushBashWriters();
+		assertEquals(1750L, (long)accumulo.queryRollup("consumption", new Authorizations(), "1", "water", 0, hour, Aggregation.SUM));
+		assertEquals(2, this.count(accumulo.scan("consumption", new Authorizations(), new Range("1"), "water", null, 10)));
+
+		accumulo.createTable("versioned");
+		try {
+			accumulo.addRollup("versioned", new RollupDefinition("electricity", EnumSet.of(Granularity.HOUR), EnumSet.of(Aggregation.SUM), null));
+			fail("rollup on versioned table not rejected");
+		}
+		catch ( IllegalArgumentException e ) {}
+		assertTrue(accumulo.getRollups("versioned").isEmpty());
+		assertFalse(accumulo.getConnector().tableOperations().exists("versioned_rollup_electricity_hour"));
+		accumulo.deleteTable("versioned");
+
+		accumulo.closeBashWriters();
+		accumulo.deleteTable("consumption");
+		assertFalse(accumulo.getConnector().tableOperations().exists("consumption_rollup_electricity_day"));
+		accumulo.disconnect();
+	}
+
+	@Test
+	public void testBlocks() throws AccumuloException, AccumuloSecurityException, IOException, InterruptedException, MutationsRejectedException, TableExistsException, TableNotFoundException {
+		Accumulo accumulo = Accumulo.getInstance();
+		accumulo.connect();
+		accumulo.createTable("blocks");
+
+		long minute = 60000, hour = 60 * minute;
+		TimeSeriesSchema schema = new TimeSeriesSchema(24 * hour);
+		try ( BlockWriter writer = new BlockWriter(accumulo, "blocks", schema, "electricity_blocks", hour, 50) ) {
+			for ( int i = 0; i < 180; i++ ) {
+				writer.add("1", i * minute, i * 0.5);
+				writer.add("2", i * minute, -i);
+			}
+		}
+
+		assertEquals(12, this.count(accumulo.scanAll("blocks")));
+
+		List<Long> timestamps = new ArrayList<>();
+		try ( BlockReader reader = accumulo.scanBlocks("blocks", new Authorizations(), schema, "1", 30 * minute, 150 * minute, "electricity_blocks", hour) ) {
+			while ( reader.next() ) {
+				assertEquals("1", reader.getMeterId());
+				assertEquals(reader.getTimestamp() / minute * 0.5, reader.getValue(), 0);
+				timestamps.add(reader.getTimestamp());
+			}
+		}
+
+		assertEquals(121, timestamps.size());
+		assertTrue(timestamps.contains(30 * minute));
+		assertTrue(timestamps.contains(150 * minute));
+		assertEquals(120 * minute, (long)timestamps.get(0));
+
+		accumulo.closeBashWriter("blocks");
+		accumulo.deleteTable("blocks");
+		accumulo.disconnect();
+	}
+
+	@Test
+	public void testColumnBatches() throws AccumuloException, AccumuloSecurityException, IOException, InterruptedException, MutationsRejectedException, TableExistsException, TableNotFoundException {
+		Accumulo accumulo = Accumulo.getInstance();
+		accumulo.connect();
+		accumulo.createTable("columns");
+
+		long minute = 60000;
+		TimeSeriesSchema schema = new TimeSeriesSchema(60 * minute);
+		for ( int i = 0; i < 150; i++ ) {
+			accumulo.addMutation("columns", schema.getRowId("1", i * minute), "electricity", schema.getColumnQualifier(i * minute), i * minute, String.valueOf(i * 0.5).getBytes());
+			accumulo.addMutation("columns", schema.getRowId("2", i * minute), "electricity", schema.getColumnQualifier(i * minute), i * minute, String.valueOf(-i).getBytes());
+		}
+		accumulo.flushBashWriter("columns");
+
+		ColumnBatch batch = new ColumnBatch(32);
+		int readings = 0, batches = 0;
+		long last = Long.MAX_VALUE;
+		try ( ColumnReader reader = accumulo.scanTimeSeriesColumns("columns", new Authorizations(), schema, "1", 10 * minute, 109 * minute, "electricity", ValueEncoding.STRING) ) {
+			while ( reader.next(batch) ) {
+				batches++;
+				for ( int i = 0; i < batch.getSize(); i++ ) {
+					assertTrue(batch.getTimestamps()[i] < last);
+					last = batch.getTimestamps()[i];
+					assertEquals(last / minute * 0.5, batch.getValues()[i], 0);
+					assertEquals("1", schema.getMeterId(batch.getRow(i)));
+				}
+				readings += batch.getSize();
+			}
+			assertEquals(2, reader.getDictionary().size());
+		}
+		assertEquals(100, readings);
+		assertEquals(4, batches);
+		assertEquals(10 * minute, last);
+
+		double sum = 0;
+		Set<Integer> rows = new HashSet<>();
+		try ( ColumnReader reader = new ColumnReader(accumulo.scanAll("columns"), false, ValueEncoding.STRING) ) {
+			while ( reader.next(batch) ) {
+				for ( int i = 0; i < batch.getSize(); i++ ) {
+					sum += batch.getValues()[i];
+					rows.add(batch.getRows()[i]);
+				}
+			}
+			assertEquals(6, reader.getDictionary().size());
+		}
+		assertEquals(6, rows.size());
+		assertEquals(149 * 150 / 2 * 0.5 - 149 * 150 / 2, sum, 0);
+
+		// fixed width doubles, a value of the wrong length is no reading
+		accumulo.addMutation("columns", "3", "electricity", "a", 1, Codec.encodeDouble(0.1));
+		accumulo.addMutation("columns", "3", "electricity", "b", 1, Codec.encodeDouble(-2.5));
+		accumulo.addMutation("columns", "3", "electricity", "c", 1, Codec.encodeInt(7));
+		accumulo.flushBashWriter("columns");
+		try ( ColumnReader reader = new ColumnReader(accumulo.scanByKey("columns", new Authorizations(), new Range("3")), false, ValueEncoding.DOUBLE) ) {
+			assertTrue(reader.next(batch));
+			assertEquals(3, batch.getSize());
+			assertEquals(0.1, batch.getValues()[0], 0);
+			assertEquals(-2.5, batch.getValues()[1], 0);
+			assertTrue(Double.isNaN(batch.getValues()[2]));
+		}
+
+		accumulo.closeBashWriter("columns");
+		accumulo.deleteTable("columns");
+		accumulo.disconnect();
+	}
+
+	/**
+	 * Buffers mutations until it is flushed and, once broken, loses them and
+	 * fails like a writer whose tablet server died.
+	 */
+	private static class StubWriter implements BatchWriter {
+		private final BatchWriter writer;
+		private final List<Mutation> mutations = new ArrayList<>();
+		private boolean broken = false;
+		private Runnable onFlush = null;
+
+		private StubWriter(BatchWriter writer) {
+			this.writer = writer;
+		}
+
+		@Override
+		public void addMutation(Mutation m) throws MutationsRejectedException {
+			if ( this.broken )
+				throw failure();
+			this.mutations.add(m);
+		}
+
+		@Override
+		public void addMutations(Iterable<Mutation> iterable) throws MutationsRejectedException {
+			for ( Mutation m : iterable )
+				this.addMutation(m);
+		}
+
+		@Override
+		public void flush() throws MutationsRejectedException {
+			if ( this.broken ) {
+				this.mutations.clear();
+				throw failure();
+			}
+
+			this.writer.addMutations(this.mutations);
+			this.writer.flush();
+			this.mutations.clear();
+
+			Runnable r = this.onFlush;
+			this.onFlush = null;
+			if ( r != null )
+				r.run();
+		}
+
+		@Override
+		public void close() throws MutationsRejectedException {
+			if ( this.broken ) {
+				this.mutations.clear();
+				this.writer.close();
+				throw failure();
+			}
+
+			this.flush();
+			this.writer.close();
+		}
+
+		private static MutationsRejectedException failure() {
+			return new MutationsRejectedException(new ArrayList<ConstraintViolationSummary>(), new HashMap<KeyExtent, Set<SecurityErrorCode>>(), Arrays.asList("tserver"), 1, null);
+		}
+	}
+
+	private int count(ScanIterator entries) {
+		int i = 0;
+		while ( entries.hasNext() ) {
+			entries.next();
+			i++;
+		}
+		entries.close();
+		return i;
+	}
+
+	/**
+	 * Writes the given number of mutations per thread, each thread into its own
+	 * table or all into one, and checks after a flush that every mutation
+	 * arrived.
+	 */
+	private void addMutations(final Accumulo accumulo, int threads, final int mutations, boolean shared) throws AccumuloException, AccumuloSecurityException, InterruptedException, MutationsRejectedException, TableExistsException, TableNotFoundException {
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		final AtomicReference<Exception> error = new AtomicReference<>();
+
+		Set<String> tables = new HashSet<>();
+		for ( int t = 0; t < threads; t++ ) {
+			final String table = shared ? "concurrent" : "concurrent_" + t;
+			final String prefix = t + "_";
+			if ( tables.add(table) )
+				accumulo.createTable(table);
+
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for ( int i = 0; i < mutations; i++ )
+							accumulo.addMutation(table, prefix + i, "electricity", "", i, "5".getBytes());
+					}
+					catch ( InterruptedException | MutationsRejectedException | TableNotFoundException e ) {
+						error.set(e);
+					}
+					finally {
+						done.countDown();
+					}
+				}
+			}).start();
+		}
+
+		start.countDown();
+		done.await();
+		assertNull(error.get());
+
+		accumulo.flushBashWriters();
+		int rows = 0;
+		for ( String table : tables )
+			rows += this.count(accumulo.scanAll(table));
+		assertEquals(threads * mutations, rows);
+
+		for ( String table : tables ) {
+			accumulo.closeBashWriter(table);
+			accumulo.deleteTable(table);
+		}
+	}
 }
\ No newline at end of file
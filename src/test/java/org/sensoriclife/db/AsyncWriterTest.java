@@ -0,0 +1,140 @@
+package org.sensoriclife.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.MutationsRejectedException;
+import org.apache.accumulo.core.client.TableExistsException;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.accumulo.core.data.Value;
+import org.junit.Test;
+
+/**
+ *
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class AsyncWriterTest {
+	@Test
+	public void testAsyncWriter() throws AccumuloException, AccumuloSecurityException, ExecutionException, InterruptedException, IOException, MutationsRejectedException, TableExistsException, TableNotFoundException {
+		Accumulo accumulo = Accumulo.getInstance();
+		accumulo.connect();
+		accumulo.createTable("async");
+
+		final AtomicBoolean acknowledged = new AtomicBoolean(false);
+		try ( AsyncWriter writer = new AsyncWriter(accumulo, 100, 2, AsyncWriter.OverflowPolicy.BLOCK) ) {
+			for ( int i = 0; i < 1000; i++ ) {
+				Mutation m = new Mutation(String.format("%04d", i));
+				m.put("electricity", "", i, "5");
+				writer.addMutation("async", m);
+			}
+
+			writer.flush().addCallback(new AsyncWriter.Callback() {
+				@Override
+				public void onSuccess() {
+					acknowledged.set(true);
+				}
+
+				@Override
+				public void onFailure(Exception e) {}
+			}).get(10, TimeUnit.SECONDS);
+
+			assertTrue(acknowledged.get());
+			assertEquals(1000, writer.getWritten());
+			assertEquals(0, writer.getQueued());
+		}
+		catch ( TimeoutException e ) {
+			fail("flush timed out");
+		}
+
+		Iterator<Entry<Key, Value>> entries = accumulo.scanAll("async");
+		int i = 0;
+		while ( entries.hasNext() ) {
+			assertEquals(String.format("%04d", i++), entries.next().getKey().getRow().toString());
+		}
+		assertEquals(1000, i);
+
+		accumulo.closeBashWriter("async");
+		accumulo.deleteTable("async");
+		accumulo.disconnect();
+	}
+
+	@Test
+	public void testOverflowPolicies() throws ExecutionException, InterruptedException {
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<String> written = new ArrayList<>();
+
+		AsyncWriter writer = new AsyncWriter(Accumulo.getInstance(), 2, 1, AsyncWriter.OverflowPolicy.DROP_OLDEST) {
+			@Override
+			protected void write(String table, Mutation mutation) {
+				blocked.countDown();
+				try {
+					release.await();
+				}
+				catch ( InterruptedException e ) {
+					Thread.currentThread().interrupt();
+				}
+				synchronized ( written ) {
+					written.add(new String(mutation.getRow()));
+				}
+			}
+		};
+
+		writer.addMutation("t", new Mutation("0"));
+		blocked.await();
+		writer.addMutation("t", new Mutation("1"));
+		writer.addMutation("t", new Mutation("2"));
+		writer.addMutation("t", new Mutation("3"));
+		assertEquals(1, writer.getDropped());
+		assertEquals(2, writer.getQueued());
+
+		AsyncWriter.FlushFuture flush = writer.flush();
+		assertFalse(flush.isDone());
+		release.countDown();
+		writer.close();
+		assertTrue(flush.isDone());
+		assertEquals(3, writer.getWritten());
+		assertEquals("[0, 2, 3]", written.toString());
+
+		final CountDownLatch stall = new CountDownLatch(1);
+		writer = new AsyncWriter(Accumulo.getInstance(), 1, 1, AsyncWriter.OverflowPolicy.FAIL_FAST) {
+			@Override
+			protected void write(String table, Mutation mutation) {
+				try {
+					stall.await();
+				}
+				catch ( InterruptedException e ) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+
+		try {
+			for ( int i = 0; i < 3; i++ )
+				writer.addMutation("t", new Mutation(String.valueOf(i)));
+			fail("buffer overflow not rejected");
+		}
+		catch ( RejectedExecutionException e ) {}
+
+		stall.countDown();
+		writer.close();
+	}
+}
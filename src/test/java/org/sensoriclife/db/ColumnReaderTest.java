@@ -0,0 +1,35 @@
+package org.sensoriclife.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import org.apache.accumulo.core.data.ArrayByteSequence;
+import org.junit.Test;
+
+/**
+ *
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class ColumnReaderTest {
+	@Test
+	public void testParse() {
+		for ( String value : new String[]{"0", "-0", "5", "13.5", "-0.1", "+2.25", "0.3", "123456789.012345", "1234567890123456789", "1e3", "-2.5E-7", ".5", "7.", "0.000000000000000000000000123"} )
+			assertEquals(value, Double.doubleToLongBits(Double.parseDouble(value)), Double.doubleToLongBits(parseDouble(value)));
+
+		for ( String value : new String[]{"", "-", ".", "abc", "1.2.3", "--1"} )
+			assertTrue(value, Double.isNaN(parseDouble(value)));
+
+		assertEquals(Long.MAX_VALUE - 60000, ColumnReader.parseLong(new ArrayByteSequence(new TimeSeriesSchema(1000).getColumnQualifier(60000))));
+		assertEquals(-1, ColumnReader.parseLong(new ArrayByteSequence("")));
+		assertEquals(-1, ColumnReader.parseLong(new ArrayByteSequence("12a")));
+		assertEquals(Long.MAX_VALUE, ColumnReader.parseLong(new ArrayByteSequence(String.valueOf(Long.MAX_VALUE))));
+		assertEquals(-1, ColumnReader.parseLong(new ArrayByteSequence("9999999999999999999")));
+	}
+
+	private static double parseDouble(String value) {
+		byte[] bytes = ("#" + value + "#").getBytes(StandardCharsets.UTF_8);
+		return ColumnReader.parseDouble(bytes, 1, bytes.length - 2);
+	}
+}
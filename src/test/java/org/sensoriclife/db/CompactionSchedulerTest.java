@@ -0,0 +1,28 @@
+package org.sensoriclife.db;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Calendar;
+import org.junit.Test;
+
+/**
+ *
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class CompactionSchedulerTest {
+	@Test
+	public void testDelay() {
+		Calendar now = Calendar.getInstance();
+		now.set(2014, Calendar.MAY, 1, 1, 30, 0);
+		now.set(Calendar.MILLISECOND, 0);
+		assertEquals(90 * 60 * 1000, CompactionScheduler.getDelay(now, 3));
+
+		now.set(Calendar.HOUR_OF_DAY, 3);
+		now.set(Calendar.MINUTE, 0);
+		assertEquals(24 * 60 * 60 * 1000, CompactionScheduler.getDelay(now, 3));
+
+		now.set(Calendar.HOUR_OF_DAY, 22);
+		assertEquals(5 * 60 * 60 * 1000, CompactionScheduler.getDelay(now, 3));
+	}
+}
@@ -0,0 +1,36 @@
+package org.sensoriclife.db;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+import org.junit.Test;
+
+/**
+ *
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class GranularityTest {
+	@Test
+	public void testPeriods() {
+		Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+		calendar.clear();
+		calendar.set(2014, Calendar.FEBRUARY, 1);
+		long february = calendar.getTimeInMillis();
+		calendar.set(2014, Calendar.MARCH, 1);
+		long march = calendar.getTimeInMillis();
+		calendar.set(2014, Calendar.JANUARY, 1);
+		long year = calendar.getTimeInMillis();
+
+		long timestamp = february + 3 * 86400000L + 5 * 3600000L + 7;
+		assertEquals(february, Granularity.MONTH.getStart(timestamp));
+		assertEquals(march, Granularity.MONTH.getNext(timestamp));
+		assertEquals(march, Granularity.MONTH.getCeiling(timestamp));
+		assertEquals(february, Granularity.MONTH.getCeiling(february));
+		assertEquals(year, Granularity.YEAR.getStart(timestamp));
+		assertEquals(february + 3 * 86400000L, Granularity.DAY.getStart(timestamp));
+		assertEquals(february + 3 * 86400000L + 6 * 3600000L, Granularity.HOUR.getCeiling(timestamp));
+		assertEquals(-3600000L, Granularity.HOUR.getStart(-1));
+	}
+}
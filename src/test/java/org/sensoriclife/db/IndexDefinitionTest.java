@@ -0,0 +1,41 @@
+package org.sensoriclife.db;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import org.apache.accumulo.core.data.Mutation;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+import org.sensoriclife.util.Codec;
+
+/**
+ *
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class IndexDefinitionTest {
+	@Test
+	public void testEncodeNumber() {
+		double[] numbers = {Double.NEGATIVE_INFINITY, -10, -1.5, 0, 0.5, 10, 1e12};
+		for ( int i = 1; i < numbers.length; i++ )
+			assertTrue(new Text(IndexDefinition.encodeNumber(numbers[i - 1])).compareTo(new Text(IndexDefinition.encodeNumber(numbers[i]))) < 0);
+		assertEquals(new Text(IndexDefinition.encodeNumber(0.0)), new Text(IndexDefinition.encodeNumber(-0.0)));
+	}
+
+	@Test
+	public void testIndexMutations() {
+		IndexDefinition index = new IndexDefinition("electricity", "electricity", null, IndexDefinition.Source.VALUE, IndexDefinition.Type.NUMBER);
+		Mutation m = new Mutation("1");
+		m.put("electricity", "a", 1, "5");
+		m.put("electricity", "b", 1, "n/a");
+		m.put("water", "", 1, "7");
+		m.putDelete("electricity", "c");
+
+		List<Mutation> mutations = index.getIndexMutations(m);
+		assertEquals(1, mutations.size());
+		assertArrayEquals(Codec.encodeSortableDouble(5), mutations.get(0).getRow());
+		assertEquals("1", new String(mutations.get(0).getUpdates().get(0).getColumnFamily()));
+	}
+}
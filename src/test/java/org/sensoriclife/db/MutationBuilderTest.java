@@ -0,0 +1,61 @@
+package org.sensoriclife.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import org.apache.accumulo.core.data.ColumnUpdate;
+import org.apache.accumulo.core.data.Mutation;
+import org.junit.Test;
+import org.sensoriclife.util.Codec;
+
+/**
+ *
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class MutationBuilderTest {
+	@Test
+	public void testBuild() {
+		MutationBuilder builder = new MutationBuilder();
+		byte[] buffer = "xxelectricityxxtotalxx".getBytes();
+		byte[] value = Codec.encodeFloat(13.5f);
+		byte[] values = new byte[12];
+		Codec.putInt(values, 4, 42);
+
+		Mutation m = builder.row("meter1").timestamp(5)
+				.put("electricity", "", null, value)
+				.put(buffer, 2, 11, buffer, 15, 5, "public", values, 4, 4)
+				.timestamp(6)
+				.put(ByteBuffer.wrap("water".getBytes()), ByteBuffer.wrap(buffer, 15, 5), "", ByteBuffer.allocateDirect(4).putInt(0, 7))
+				.build();
+
+		assertEquals("meter1", new String(m.getRow()));
+		List<ColumnUpdate> updates = m.getUpdates();
+		assertEquals(3, updates.size());
+
+		assertEquals("electricity", new String(updates.get(0).getColumnFamily()));
+		assertEquals(5, updates.get(0).getTimestamp());
+		assertEquals(13.5f, Codec.decodeFloat(updates.get(0).getValue()), 0);
+
+		assertEquals("electricity", new String(updates.get(1).getColumnFamily()));
+		assertEquals("total", new String(updates.get(1).getColumnQualifier()));
+		assertEquals("public", new String(updates.get(1).getColumnVisibility()));
+		assertEquals(42, Codec.decodeInt(updates.get(1).getValue()));
+
+		assertEquals("water", new String(updates.get(2).getColumnFamily()));
+		assertEquals("total", new String(updates.get(2).getColumnQualifier()));
+		assertEquals(6, updates.get(2).getTimestamp());
+		assertEquals(7, Codec.decodeInt(updates.get(2).getValue()));
+	}
+
+	@Test
+	public void testColumnVisibility() {
+		assertSame(MutationBuilder.EMPTY_VISIBILITY, MutationBuilder.getColumnVisibility((String)null));
+		assertSame(MutationBuilder.EMPTY_VISIBILITY, MutationBuilder.getColumnVisibility(""));
+		assertSame(MutationBuilder.getColumnVisibility("public|private"), MutationBuilder.getColumnVisibility("public|private"));
+		assertSame(MutationBuilder.EMPTY_VISIBILITY, MutationBuilder.getColumnVisibility(new byte[0]));
+		assertSame(MutationBuilder.getColumnVisibility("public|private"), MutationBuilder.getColumnVisibility("public|private".getBytes()));
+	}
+}
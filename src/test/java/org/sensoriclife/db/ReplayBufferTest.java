@@ -0,0 +1,40 @@
+package org.sensoriclife.db;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import org.apache.accumulo.core.data.Mutation;
+import org.junit.Test;
+
+/**
+ *
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class ReplayBufferTest {
+	@Test
+	public void testTrim() {
+		ReplayBuffer buffer = new ReplayBuffer(1024 * 1024);
+		buffer.add(mutation("1"));
+		buffer.add(mutation("2"));
+		long mark = buffer.mark();
+		buffer.add(mutation("3"));
+		buffer.trim(mark);
+		assertEquals(1, buffer.size());
+
+		// mutations drained during a flush are not trimmed after it
+		mark = buffer.mark();
+		List<Mutation> drained = buffer.drain();
+		assertEquals(1, drained.size());
+		buffer.add(mutation("4"));
+		buffer.trim(mark);
+		assertEquals(1, buffer.size());
+		assertEquals("4", new String(buffer.drain().get(0).getRow()));
+	}
+
+	private static Mutation mutation(String row) {
+		Mutation m = new Mutation(row);
+		m.put("electricity", "", 1, "5");
+		return m;
+	}
+}
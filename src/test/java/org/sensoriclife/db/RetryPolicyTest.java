@@ -0,0 +1,28 @@
+package org.sensoriclife.db;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class RetryPolicyTest {
+	@Test
+	public void testBackoff() {
+		RetryPolicy policy = new RetryPolicy(5, 100, 1000);
+		assertEquals(5, policy.getMaxAttempts());
+		assertEquals(100, policy.getBackoff(1));
+		assertEquals(200, policy.getBackoff(2));
+		assertEquals(800, policy.getBackoff(4));
+		assertEquals(1000, policy.getBackoff(5));
+		assertEquals(1000, policy.getBackoff(50));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidAttempts() {
+		new RetryPolicy(0, 100, 1000);
+	}
+}
@@ -0,0 +1,39 @@
+package org.sensoriclife.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.EnumSet;
+import org.junit.Test;
+
+/**
+ *
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class RollupDefinitionTest {
+	@Test
+	public void testParse() {
+		RollupDefinition rollup = new RollupDefinition("electricity", EnumSet.of(Granularity.HOUR), EnumSet.of(Aggregation.SUM), null);
+		assertEquals(5L, (long)rollup.parse(" 5 ".getBytes()));
+		assertEquals(-3L, (long)rollup.parse("-3.0".getBytes()));
+		assertNull(rollup.parse("n/a".getBytes()));
+		this.assertRejected(rollup, "2.5");
+
+		RollupDefinition scaled = new RollupDefinition("electricity", EnumSet.of(Granularity.HOUR), EnumSet.of(Aggregation.SUM), null, 1000);
+		assertEquals(1100L, (long)scaled.parse("1.1".getBytes()));
+		assertEquals(5000L, (long)scaled.parse("5".getBytes()));
+		assertEquals(20L, (long)scaled.parse("2e-2".getBytes()));
+		this.assertRejected(scaled, "0.0005");
+		this.assertRejected(scaled, "1e20");
+	}
+
+	private void assertRejected(RollupDefinition rollup, String reading) {
+		try {
+			rollup.parse(reading.getBytes());
+			fail("reading " + reading + " not rejected");
+		}
+		catch ( IllegalArgumentException e ) {}
+	}
+}
@@ -0,0 +1,147 @@
+package org.sensoriclife.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.junit.Test;
+
+/**
+ *
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class ScanCacheTest {
+	@Test
+	public void testScanCache() throws InterruptedException {
+		ScanCache cache = new ScanCache(2, 1024 * 1024, 60000);
+		Authorizations auths = new Authorizations();
+
+		assertNull(cache.get("t", auths, new Range("a"), null, null, 0));
+		this.cache(cache, "t", new Range("a"), "a");
+		this.cache(cache, "t", new Range("b", "c"), "b");
+		assertNotNull(cache.get("t", auths, new Range("a"), null, null, 0));
+		assertNull(cache.get("t", auths, new Range("a"), "cf", null, 0));
+		assertNull(cache.get("t", new Authorizations("private"), new Range("a"), null, null, 0));
+		assertEquals(1, cache.getHits());
+		assertEquals(3, cache.getMisses());
+
+		// least recently used result is evicted
+		this.cache(cache, "t", new Range("d"), "d");
+		assertEquals(2, cache.getSize());
+		assertEquals(1, cache.getEvictions());
+		assertNull(cache.get("t", auths, new Range("b", "c"), null, null, 0));
+		assertNotNull(cache.get("t", auths, new Range("a"), null, null, 0));
+
+		// writes invalidate overlapping results only
+		cache.invalidate("t", "e".getBytes());
+		cache.invalidate("u", "a".getBytes());
+		assertEquals(2, cache.getSize());
+		cache.invalidate("t", "a".getBytes());
+		assertEquals(1, cache.getSize());
+		assertEquals(1, cache.getInvalidations());
+
+		// writes during a scan keep it from being cached
+		ScanCache.Recorder recorder = cache.record("t", auths, new Range("f", "h"), null, null, 0);
+		recorder.add(entry("g"));
+		cache.invalidate("t", "g".getBytes());
+		recorder.finish();
+		assertNull(cache.get("t", auths, new Range("f", "h"), null, null, 0));
+
+		cache.clear();
+		assertEquals(0, cache.getSize());
+		assertEquals(0, cache.getBytes());
+
+		// results expire
+		cache = new ScanCache(2, 1024 * 1024, 1);
+		this.cache(cache, "t", new Range("a"), "a");
+		Thread.sleep(5);
+		assertNull(cache.get("t", auths, new Range("a"), null, null, 0));
+		assertEquals(0, cache.getSize());
+	}
+
+	@Test
+	public void testPendingRows() {
+		ScanCache cache = new ScanCache(10, 1024 * 1024, 60000);
+		Authorizations auths = new Authorizations();
+
+		// a scan between a write and its flush caches the old state
+		cache.written("t", "a".getBytes());
+		this.cache(cache, "t", new Range("a"), "a");
+		this.cache(cache, "t", new Range("b"), "b");
+		assertNotNull(cache.get("t", auths, new Range("a"), null, null, 0));
+
+		ScanCache.PendingRows pending = cache.takePending("t");
+		assertNull(cache.takePending("t"));
+		cache.flushed("t", pending);
+		assertNull(cache.get("t", auths, new Range("a"), null, null, 0));
+		assertNotNull(cache.get("t", auths, new Range("b"), null, null, 0));
+
+		// too many pending rows invalidate the whole table
+		for ( int i = 0; i < 5000; i++ )
+			cache.written("u", String.valueOf(i).getBytes());
+		this.cache(cache, "u", new Range("x"), "x");
+		cache.flushed("u", cache.takePending().get("u"));
+		assertNull(cache.get("u", auths, new Range("x"), null, null, 0));
+		assertNotNull(cache.get("t", auths, new Range("b"), null, null, 0));
+	}
+
+	@Test
+	public void testConcurrentPendingRows() throws InterruptedException {
+		final ScanCache cache = new ScanCache(10, 1024 * 1024, 60000);
+		final int threads = 4;
+		final int rows = 1000;
+
+		// rows written while flushes take the pending rows end up in one of them
+		Thread[] writers = new Thread[threads];
+		for ( int t = 0; t < threads; t++ ) {
+			final int offset = t * rows;
+			writers[t] = new Thread() {
+				@Override
+				public void run() {
+					for ( int i = 0; i < rows; i++ )
+						cache.written("t", String.valueOf(offset + i).getBytes());
+				}
+			};
+			writers[t].start();
+		}
+
+		List<ScanCache.PendingRows> taken = new ArrayList<>();
+		boolean running = true;
+		while ( running ) {
+			running = false;
+			for ( Thread writer : writers )
+				running |= writer.isAlive();
+			taken.add(cache.takePending("t"));
+		}
+		for ( Thread writer : writers )
+			writer.join();
+		taken.add(cache.takePending("t"));
+
+		ScanCache flushed = new ScanCache(threads * rows, 64 * 1024 * 1024, 60000);
+		for ( int i = 0; i < threads * rows; i++ )
+			this.cache(flushed, "t", new Range(String.valueOf(i)), String.valueOf(i));
+		assertEquals(threads * rows, flushed.getSize());
+		for ( ScanCache.PendingRows pending : taken )
+			flushed.flushed("t", pending);
+		assertEquals(0, flushed.getSize());
+	}
+
+	private void cache(ScanCache cache, String table, Range range, String row) {
+		ScanCache.Recorder recorder = cache.record(table, new Authorizations(), range, null, null, 0);
+		recorder.add(entry(row));
+		recorder.finish();
+	}
+
+	private static Entry<Key, Value> entry(String row) {
+		return new SimpleImmutableEntry<>(new Key(row), new Value("5".getBytes()));
+	}
+}
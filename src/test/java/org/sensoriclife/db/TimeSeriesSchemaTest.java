@@ -0,0 +1,91 @@
+package org.sensoriclife.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map.Entry;
+import org.apache.accumulo.core.client.AccumuloException;
+import org.apache.accumulo.core.client.AccumuloSecurityException;
+import org.apache.accumulo.core.client.MutationsRejectedException;
+import org.apache.accumulo.core.client.TableExistsException;
+import org.apache.accumulo.core.client.TableNotFoundException;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.security.Authorizations;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.sensoriclife.Logger;
+
+/**
+ *
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class TimeSeriesSchemaTest {
+	private static final long HOUR = 3600000;
+
+	@BeforeClass
+	public static void setUp() {
+		Logger.getInstance();
+	}
+
+	@Test
+	public void testRowId() {
+		TimeSeriesSchema schema = new TimeSeriesSchema(HOUR, 16);
+		String newer = schema.getRowId("meter1", 5 * HOUR);
+		String older = schema.getRowId("meter1", 2 * HOUR + 5);
+
+		assertTrue(newer.compareTo(older) < 0);
+		assertEquals(schema.getRowId("meter1", 2 * HOUR), older);
+		assertEquals("meter1", schema.getMeterId(newer));
+		assertTrue(schema.getColumnQualifier(10).compareTo(schema.getColumnQualifier(9)) < 0);
+		assertEquals("meter1", new TimeSeriesSchema(HOUR).getMeterId(new TimeSeriesSchema(HOUR).getRowId("meter1", 0)));
+	}
+
+	@Test
+	public void testScanTimeSeries() throws AccumuloException, AccumuloSecurityException, IOException, InterruptedException, MutationsRejectedException, TableExistsException, TableNotFoundException {
+		TimeSeriesSchema schema = new TimeSeriesSchema(HOUR, 4);
+		Accumulo accumulo = Accumulo.getInstance();
+		accumulo.connect();
+		accumulo.createTable("electricity_consumption");
+
+		for ( String meter : Arrays.asList("1", "2", "11") )
+			for ( long t = 0; t < 10 * HOUR; t += HOUR / 4 ) {
+				accumulo.addMutation("electricity_consumption", schema.getRowId(meter, t), "electricity", schema.getColumnQualifier(t), t, String.valueOf(t).getBytes());
+				accumulo.addMutation("electricity_consumption", schema.getRowId(meter, t), "water", schema.getColumnQualifier(t), t, String.valueOf(t).getBytes());
+			}
+		accumulo.closeBashWriter("electricity_consumption");
+
+		long previous = Long.MAX_VALUE;
+		int i = 0;
+		try ( ScanIterator entries = accumulo.scanTimeSeries("electricity_consumption", new Authorizations(), schema, "1", HOUR + HOUR / 2, 3 * HOUR + HOUR / 4, "electricity") ) {
+			while ( entries.hasNext() ) {
+				Entry<Key, Value> entry = entries.next();
+				long timestamp = schema.getTimestamp(entry.getKey());
+				assertTrue(timestamp < previous);
+				assertEquals("1", schema.getMeterId(entry.getKey().getRow().toString()));
+				assertEquals("electricity", entry.getKey().getColumnFamily().toString());
+				previous = timestamp;
+				i++;
+			}
+		}
+		assertEquals(8, i);
+
+		i = 0;
+		try ( ScanIterator entries = accumulo.batchScanTimeSeries("electricity_consumption", new Authorizations(), schema, Arrays.asList("1", "11"), 0, HOUR - 1, "water") ) {
+			while ( entries.hasNext() ) {
+				entries.next();
+				i++;
+			}
+		}
+		assertEquals(8, i);
+
+		Entry<Key, Value> latest = accumulo.scanLatest("electricity_consumption", new Authorizations(), schema, "2", "electricity");
+		assertEquals(10 * HOUR - HOUR / 4, schema.getTimestamp(latest.getKey()));
+
+		accumulo.deleteTable("electricity_consumption");
+		accumulo.disconnect();
+	}
+}
@@ -0,0 +1,79 @@
+package org.sensoriclife.db.iterators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.TreeMap;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.junit.Test;
+import org.sensoriclife.db.Downsample;
+import org.sensoriclife.util.Codec;
+
+/**
+ *
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class DownsamplingIteratorTest {
+	@Test
+	public void testDownsampling() throws IOException {
+		TreeMap<Key, Value> data = new TreeMap<>();
+		for ( int t = 0; t < 10; t++ )
+			data.put(new Key("1", "electricity", "", t * 1000), new Value(String.valueOf(t).getBytes()));
+		data.put(new Key("1", "electricity", "", 10500), new Value("n/a".getBytes()));
+		data.put(new Key("2", "electricity", "", 0), new Value("7".getBytes()));
+
+		IteratorSetting setting = Downsample.getIteratorSetting(5000, false, ValueEncoding.STRING);
+		DownsamplingIterator iterator = new DownsamplingIterator();
+		iterator.init(new SortedMapIterator(data), setting.getOptions(), null);
+		iterator.seek(new Range(), Collections.<ByteSequence>emptySet(), false);
+
+		Downsample downsample = Downsample.decode(new AbstractMap.SimpleEntry<>(iterator.getTopKey(), iterator.getTopValue()));
+		assertEquals(5000, downsample.getStart());
+		assertEquals(5, downsample.getCount());
+		assertEquals(7, downsample.getAvg(), 0);
+		Key last = iterator.getTopKey();
+
+		iterator.next();
+		downsample = Downsample.decode(new AbstractMap.SimpleEntry<>(iterator.getTopKey(), iterator.getTopValue()));
+		assertEquals(0, downsample.getStart());
+		assertEquals(0, downsample.getMin(), 0);
+		assertEquals(4, downsample.getMax(), 0);
+
+		iterator.next();
+		assertEquals("2", iterator.getTopKey().getRow().toString());
+		iterator.next();
+		assertFalse(iterator.hasTop());
+
+		iterator.seek(new Range(last, false, null, true), Collections.<ByteSequence>emptySet(), false);
+		assertEquals(0, Downsample.decode(new AbstractMap.SimpleEntry<>(iterator.getTopKey(), iterator.getTopValue())).getStart());
+	}
+
+	@Test
+	public void testDoubleEncoding() throws IOException {
+		TreeMap<Key, Value> data = new TreeMap<>();
+		for ( int t = 0; t < 4; t++ )
+			data.put(new Key("1", "electricity", "", t * 1000), new Value(Codec.encodeDouble(t * 0.25)));
+		data.put(new Key("1", "electricity", "", 4000), new Value("4".getBytes()));
+
+		DownsamplingIterator iterator = new DownsamplingIterator();
+		iterator.init(new SortedMapIterator(data), Downsample.getIteratorSetting(5000, false, ValueEncoding.DOUBLE).getOptions(), null);
+		iterator.seek(new Range(), Collections.<ByteSequence>emptySet(), false);
+
+		Downsample downsample = Downsample.decode(new AbstractMap.SimpleEntry<>(iterator.getTopKey(), iterator.getTopValue()));
+		assertEquals(4, downsample.getCount());
+		assertEquals(0, downsample.getMin(), 0);
+		assertEquals(0.75, downsample.getMax(), 0);
+		assertEquals(1.5, downsample.getSum(), 0);
+		iterator.next();
+		assertFalse(iterator.hasTop());
+	}
+}
@@ -0,0 +1,46 @@
+package org.sensoriclife.db.iterators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.TreeMap;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.junit.Test;
+
+/**
+ *
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class FirstEntriesInRowIteratorTest {
+	@Test
+	public void testFirstEntries() throws IOException {
+		TreeMap<Key, Value> data = new TreeMap<>();
+		for ( int row = 0; row < 3; row++ )
+			for ( int t = 0; t < 5; t++ )
+				data.put(new Key("row" + row, "electricity", "", t), new Value(String.valueOf(t).getBytes()));
+
+		FirstEntriesInRowIterator iterator = new FirstEntriesInRowIterator();
+		iterator.init(new SortedMapIterator(data), Collections.singletonMap(FirstEntriesInRowIterator.ENTRIES, "2"), null);
+		iterator.seek(new Range(), Collections.<ByteSequence>emptySet(), false);
+
+		StringBuilder result = new StringBuilder();
+		while ( iterator.hasTop() ) {
+			result.append(iterator.getTopKey().getRow()).append(':').append(iterator.getTopValue()).append(' ');
+			iterator.next();
+		}
+		assertEquals("row0:4 row0:3 row1:4 row1:3 row2:4 row2:3 ", result.toString());
+
+		iterator.seek(new Range(new Key("row1", "electricity", "", 4), false, new Key("row2"), false), Collections.<ByteSequence>emptySet(), false);
+		assertEquals("row1", iterator.getTopKey().getRow().toString());
+		assertEquals(3, iterator.getTopKey().getTimestamp());
+		iterator.next();
+		assertFalse(iterator.hasTop());
+	}
+}
@@ -0,0 +1,68 @@
+package org.sensoriclife.db.iterators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.TreeMap;
+import org.apache.accumulo.core.client.IteratorSetting;
+import org.apache.accumulo.core.data.ByteSequence;
+import org.apache.accumulo.core.data.Key;
+import org.apache.accumulo.core.data.Range;
+import org.apache.accumulo.core.data.Value;
+import org.apache.accumulo.core.iterators.LongCombiner;
+import org.apache.accumulo.core.iterators.SortedMapIterator;
+import org.junit.Test;
+import org.sensoriclife.util.Codec;
+
+/**
+ *
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class ValueRangeFilterTest {
+	@Test
+	public void testEncodings() throws IOException {
+		TreeMap<Key, Value> strings = new TreeMap<>();
+		TreeMap<Key, Value> varlens = new TreeMap<>();
+		TreeMap<Key, Value> doubles = new TreeMap<>();
+		for ( int t = 0; t < 10; t++ ) {
+			strings.put(new Key("1", "electricity", "", t), new Value(String.valueOf(t * 1.5).getBytes()));
+			varlens.put(new Key("1", "electricity", "", t), new Value(LongCombiner.VAR_LEN_ENCODER.encode((long)t * 2)));
+			doubles.put(new Key("1", "electricity", "", t), new Value(Codec.encodeDouble(t * 1.5)));
+		}
+		doubles.put(new Key("1", "electricity", "", 10), new Value("5".getBytes()));
+
+		assertEquals(3, this.count(strings, ValueEncoding.STRING));
+		assertEquals(2, this.count(varlens, ValueEncoding.VARLEN));
+		assertEquals(3, this.count(doubles, ValueEncoding.DOUBLE));
+	}
+
+	@Test
+	public void testValidateOptions() {
+		IteratorSetting setting = new IteratorSetting(1, "value", ValueRangeFilter.class);
+		ValueRangeFilter.setRange(setting, 3, 6, ValueEncoding.DOUBLE);
+		assertEquals("double", setting.getOptions().get(ValueRangeFilter.ENCODING));
+		assertTrue(new ValueRangeFilter().validateOptions(setting.getOptions()));
+
+		setting.addOption(ValueRangeFilter.ENCODING, "float");
+		assertFalse(new ValueRangeFilter().validateOptions(setting.getOptions()));
+	}
+
+	private int count(TreeMap<Key, Value> data, ValueEncoding encoding) throws IOException {
+		IteratorSetting setting = new IteratorSetting(1, "value", ValueRangeFilter.class);
+		ValueRangeFilter.setRange(setting, 3, 6, encoding);
+		ValueRangeFilter filter = new ValueRangeFilter();
+		filter.init(new SortedMapIterator(data), setting.getOptions(), null);
+		filter.seek(new Range(), Collections.<ByteSequence>emptySet(), false);
+
+		int i = 0;
+		while ( filter.hasTop() ) {
+			i++;
+			filter.next();
+		}
+		return i;
+	}
+}
@@ -0,0 +1,36 @@
+package org.sensoriclife.db.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class HistogramTest {
+	@Test
+	public void testHistogram() {
+		Histogram histogram = new Histogram();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getPercentile(0.99));
+
+		for ( int i = 1; i <= 100; i++ )
+			histogram.record(i);
+
+		assertEquals(100, histogram.getCount());
+		assertEquals(50.5, histogram.getMean(), 0.001);
+		assertEquals(100, histogram.getMax());
+		assertEquals(64, histogram.getPercentile(0.5));
+		assertEquals(100, histogram.getPercentile(0.99));
+
+		histogram.record(0);
+		assertEquals(101, histogram.getCount());
+		assertEquals(1, histogram.getPercentile(0.001), 1);
+
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+	}
+}
@@ -0,0 +1,64 @@
+package org.sensoriclife.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ *
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class BlockEncoderTest {
+	@Test
+	public void testRoundTrip() {
+		long[] timestamps = {1400000000000l, 1400000000000l, 1400000060000l, 1400000120001l, 1400000119000l, 1400000500000l, 1400100000000l, Long.MAX_VALUE, -5};
+		double[] values = {0, 0, 13.5, -13.5, Double.NaN, Double.MAX_VALUE, Double.MIN_VALUE, 1.0 / 3, Double.NEGATIVE_INFINITY};
+
+		BlockEncoder encoder = new BlockEncoder();
+		for ( int i = 0; i < timestamps.length; i++ )
+			encoder.append(timestamps[i], values[i]);
+		assertEquals(timestamps.length, encoder.getCount());
+		assertEquals(timestamps[0], encoder.getFirstTimestamp());
+		assertEquals(-5, encoder.getLastTimestamp());
+
+		byte[] block = encoder.toByteArray();
+		assertEquals(encoder.getSize(), block.length);
+
+		BlockDecoder decoder = new BlockDecoder(block);
+		assertEquals(timestamps.length, decoder.getCount());
+		for ( int i = 0; i < timestamps.length; i++ ) {
+			assertTrue(decoder.next());
+			assertEquals(timestamps[i], decoder.getTimestamp());
+			assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(decoder.getValue()));
+		}
+		assertFalse(decoder.next());
+
+		encoder.reset();
+		encoder.append(7, 2.5);
+		decoder = new BlockDecoder(encoder.toByteArray());
+		assertTrue(decoder.next());
+		assertEquals(7, decoder.getTimestamp());
+		assertEquals(2.5, decoder.getValue(), 0);
+		assertFalse(decoder.next());
+	}
+
+	@Test
+	public void testCompression() {
+		BlockEncoder encoder = new BlockEncoder();
+		for ( int i = 0; i < 1000; i++ )
+			encoder.append(1400000000000l + i * 60000l + (i % 7 == 0 ? 3 : 0), 230 + (i % 10) * 0.5);
+
+		assertTrue(encoder.getSize() < 1000 * 3);
+
+		BlockDecoder decoder = new BlockDecoder(encoder.toByteArray());
+		for ( int i = 0; i < 1000; i++ ) {
+			assertTrue(decoder.next());
+			assertEquals(1400000000000l + i * 60000l + (i % 7 == 0 ? 3 : 0), decoder.getTimestamp());
+			assertEquals(230 + (i % 10) * 0.5, decoder.getValue(), 0);
+		}
+		assertFalse(decoder.next());
+	}
+}
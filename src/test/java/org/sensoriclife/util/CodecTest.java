@@ -0,0 +1,80 @@
+package org.sensoriclife.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import org.junit.Test;
+
+/**
+ *
+ * @author jnphilipp
+ * @version 0.0.1
+ */
+public class CodecTest {
+	@Test
+	public void testFixedWidth() throws IOException {
+		assertEquals(4, Codec.encodeFloat(13.5f).length);
+		assertTrue(Codec.encodeFloat(13.5f).length * 10 < Helpers.toByteArray(13.5f).length);
+
+		for ( int value : new int[]{0, 1, -1, Integer.MIN_VALUE, Integer.MAX_VALUE, 123456789} )
+			assertEquals(value, Codec.decodeInt(Codec.encodeInt(value)));
+		for ( long value : new long[]{0, 1, -1, Long.MIN_VALUE, Long.MAX_VALUE, 1234567890123l} )
+			assertEquals(value, Codec.decodeLong(Codec.encodeLong(value)));
+
+		assertEquals(13.5f, Codec.decodeFloat(Codec.encodeFloat(13.5f)), 0);
+		assertEquals(-0.1, Codec.decodeDouble(Codec.encodeDouble(-0.1)), 0);
+		assertEquals((byte)0x41, Codec.encodeFloat(13.5f)[0]);
+	}
+
+	@Test
+	public void testVarLong() {
+		assertEquals(1, Codec.encodeVarLong(0).length);
+		assertEquals(1, Codec.encodeVarLong(-64).length);
+		assertEquals(1, Codec.encodeVarLong(63).length);
+		assertEquals(2, Codec.encodeVarLong(64).length);
+		assertEquals(10, Codec.encodeVarLong(Long.MIN_VALUE).length);
+
+		byte[] bytes = new byte[20];
+		int offset = Codec.putVarLong(bytes, 0, -300);
+		offset = Codec.putVarLong(bytes, offset, Long.MAX_VALUE);
+		assertEquals(Codec.varLongSize(-300) + Codec.varLongSize(Long.MAX_VALUE), offset);
+		assertEquals(-300, Codec.getVarLong(bytes, 0));
+		assertEquals(Long.MAX_VALUE, Codec.getVarLong(bytes, Codec.varLongSize(-300)));
+
+		for ( long value : new long[]{0, 1, -1, 1000, -1000, Long.MIN_VALUE, Long.MAX_VALUE} )
+			assertEquals(value, Codec.decodeVarLong(Codec.encodeVarLong(value)));
+	}
+
+	@Test
+	public void testSortable() {
+		long[] longs = {Long.MIN_VALUE, -1000, -1, 0, 1, 1000, Long.MAX_VALUE};
+		for ( int i = 0; i < longs.length; i++ ) {
+			assertEquals(longs[i], Codec.decodeSortableLong(Codec.encodeSortableLong(longs[i])));
+			assertEquals((int)longs[i], Codec.decodeSortableInt(Codec.encodeSortableInt((int)longs[i])));
+			if ( i > 0 )
+				assertTrue(compare(Codec.encodeSortableLong(longs[i - 1]), Codec.encodeSortableLong(longs[i])) < 0);
+		}
+
+		double[] doubles = {Double.NEGATIVE_INFINITY, -1e10, -13.5, -0.1, 0, 0.1, 13.5, 1e10, Double.POSITIVE_INFINITY};
+		for ( int i = 0; i < doubles.length; i++ ) {
+			assertEquals(doubles[i], Codec.decodeSortableDouble(Codec.encodeSortableDouble(doubles[i])), 0);
+			assertEquals((float)doubles[i], Codec.decodeSortableFloat(Codec.encodeSortableFloat((float)doubles[i])), 0);
+			if ( i > 0 ) {
+				assertTrue(compare(Codec.encodeSortableDouble(doubles[i - 1]), Codec.encodeSortableDouble(doubles[i])) < 0);
+				assertTrue(compare(Codec.encodeSortableFloat((float)doubles[i - 1]), Codec.encodeSortableFloat((float)doubles[i])) < 0);
+			}
+		}
+	}
+
+	/**
+	 * Compares the given arrays in unsigned byte order.
+	 */
+	private static int compare(byte[] a, byte[] b) {
+		for ( int i = 0; i < Math.min(a.length, b.length); i++ )
+			if ( a[i] != b[i] )
+				return (a[i] & 0xff) - (b[i] & 0xff);
+
+		return a.length - b.length;
+	}
+}